@@ -9,14 +9,18 @@ import parser.Parser;
 import parser.AST;
 import semantic.SemanticAnalyzer;
 import ir.IRGenerator;
+import ir.Interpreter;
 import ir.ThreeAddressCode;
 import optimizer.Optimizer;
 import codegen.CodeGenerator;
+import codegen.JvmCodeGenerator;
 
 public class Main {
     public static void main(String[] args) {
-        if (args.length != 1) {
-            System.out.println("Usage: java compiler.Main <source-file>");
+        boolean run = args.length == 2 && args[1].equals("--run");
+        boolean runJvm = args.length == 2 && args[1].equals("--run-jvm");
+        if (args.length != 1 && !run && !runJvm) {
+            System.out.println("Usage: java compiler.Main <source-file> [--run | --run-jvm]");
             return;
         }
 
@@ -53,14 +57,12 @@ public class Main {
             
             // Phase 5: Code Optimization
             System.out.println("Phase 5: Code Optimization");
-            Optimizer optimizer = new Optimizer();
+            Optimizer optimizer = new Optimizer(System.getProperty("compiler.pipeline", Optimizer.DEFAULT_PIPELINE));
             ThreeAddressCode optimizedIR = optimizer.optimize(ir);
             System.out.println("Optimized IR:");
             for (ThreeAddressCode.Function func : optimizedIR.getFunctions()) {
                 System.out.println("Function: " + func.getName());
-                for (var inst : func.getInstructions()) {
-                    System.out.println(inst);
-                }
+                System.out.print(func);
             }
             
             // Phase 6: Code Generation
@@ -75,6 +77,21 @@ public class Main {
             
             System.out.println("Compilation completed successfully. Output written to " + outputFile);
             
+            // Optionally execute the optimized IR in-process
+            if (run) {
+                System.out.println("Running main");
+                Object result = new Interpreter(optimizedIR).invoke("main");
+                System.out.println("Program returned: " + result);
+            }
+            
+            // Or compile it to bytecode and run it in this JVM
+            if (runJvm) {
+                System.out.println("Running main as JVM bytecode");
+                Class<?> compiled = new JvmCodeGenerator().load(optimizedIR);
+                Object result = JvmCodeGenerator.invoke(compiled, "main");
+                System.out.println("Program returned: " + result);
+            }
+            
         } catch (IOException e) {
             System.err.println("Error reading source file: " + e.getMessage());
         } catch (Exception e) {
@@ -0,0 +1,430 @@
+package codegen;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Minimal writer for JVM class files (version 61): a constant pool, static methods and
+// their Code attributes with StackMapTable frames. Branches use 16-bit offsets, so a
+// method body is limited to 32 KB.
+public class ClassFileWriter {
+    public static final int ACC_PUBLIC = 0x0001;
+    public static final int ACC_STATIC = 0x0008;
+    public static final int ACC_FINAL = 0x0010;
+    public static final int ACC_SUPER = 0x0020;
+
+    // Opcodes used by the code generator
+    public static final int ACONST_NULL = 0x01, ICONST_0 = 0x03, FCONST_0 = 0x0b;
+    public static final int BIPUSH = 0x10, SIPUSH = 0x11, LDC = 0x12, LDC_W = 0x13;
+    public static final int ILOAD = 0x15, FLOAD = 0x17, ALOAD = 0x19;
+    public static final int ISTORE = 0x36, FSTORE = 0x38, ASTORE = 0x3a;
+    public static final int POP = 0x57;
+    public static final int IADD = 0x60, FADD = 0x62, ISUB = 0x64, FSUB = 0x66;
+    public static final int IMUL = 0x68, FMUL = 0x6a, IDIV = 0x6c, FDIV = 0x6e;
+    public static final int INEG = 0x74, FNEG = 0x76;
+    public static final int I2F = 0x86, F2I = 0x8b;
+    public static final int FCMPL = 0x95, FCMPG = 0x96;
+    public static final int IFEQ = 0x99, IFNE = 0x9a, IFLT = 0x9b, IFGE = 0x9c, IFGT = 0x9d, IFLE = 0x9e;
+    public static final int IF_ICMPEQ = 0x9f, IF_ICMPNE = 0xa0, IF_ICMPLT = 0xa1, IF_ICMPGE = 0xa2;
+    public static final int IF_ICMPGT = 0xa3, IF_ICMPLE = 0xa4, IF_ACMPEQ = 0xa5, IF_ACMPNE = 0xa6;
+    public static final int GOTO = 0xa7;
+    public static final int IRETURN = 0xac, FRETURN = 0xae, ARETURN = 0xb0, RETURN = 0xb1;
+    public static final int INVOKESTATIC = 0xb8;
+
+    private final String className;
+    private final ByteBuffer pool;
+    private final Map<String, Integer> poolIndex;
+    private int poolCount;
+    private final List<MethodWriter> methods;
+
+    // Growable byte array with big-endian writes and patching
+    static class ByteBuffer {
+        private byte[] data = new byte[256];
+        private int size;
+
+        void u1(int value) {
+            ensure(1);
+            data[size++] = (byte) value;
+        }
+
+        void u2(int value) {
+            ensure(2);
+            data[size++] = (byte) (value >>> 8);
+            data[size++] = (byte) value;
+        }
+
+        void u4(int value) {
+            u2(value >>> 16);
+            u2(value & 0xffff);
+        }
+
+        void bytes(byte[] bytes, int length) {
+            ensure(length);
+            System.arraycopy(bytes, 0, data, size, length);
+            size += length;
+        }
+
+        void append(ByteBuffer other) {
+            bytes(other.data, other.size);
+        }
+
+        void patchU2(int position, int value) {
+            data[position] = (byte) (value >>> 8);
+            data[position + 1] = (byte) value;
+        }
+
+        int size() {
+            return size;
+        }
+
+        byte[] toByteArray() {
+            byte[] result = new byte[size];
+            System.arraycopy(data, 0, result, 0, size);
+            return result;
+        }
+
+        private void ensure(int extra) {
+            if (size + extra > data.length) {
+                byte[] grown = new byte[Math.max(data.length * 2, size + extra)];
+                System.arraycopy(data, 0, grown, 0, size);
+                data = grown;
+            }
+        }
+    }
+
+    public ClassFileWriter(String className) {
+        this.className = className;
+        this.pool = new ByteBuffer();
+        this.poolIndex = new HashMap<>();
+        this.poolCount = 1;
+        this.methods = new ArrayList<>();
+    }
+
+    public String getClassName() {
+        return className;
+    }
+
+    // ---------------------------------------------------------------- constant pool
+
+    public int utf8(String value) {
+        Integer index = poolIndex.get("U" + value);
+        if (index != null) {
+            return index;
+        }
+        byte[] encoded = modifiedUtf8(value);
+        pool.u1(1);
+        pool.u2(encoded.length);
+        pool.bytes(encoded, encoded.length);
+        return register("U" + value);
+    }
+
+    public int classRef(String internalName) {
+        Integer index = poolIndex.get("C" + internalName);
+        if (index != null) {
+            return index;
+        }
+        int name = utf8(internalName);
+        pool.u1(7);
+        pool.u2(name);
+        return register("C" + internalName);
+    }
+
+    public int string(String value) {
+        Integer index = poolIndex.get("S" + value);
+        if (index != null) {
+            return index;
+        }
+        int utf = utf8(value);
+        pool.u1(8);
+        pool.u2(utf);
+        return register("S" + value);
+    }
+
+    public int integer(int value) {
+        Integer index = poolIndex.get("I" + value);
+        if (index != null) {
+            return index;
+        }
+        pool.u1(3);
+        pool.u4(value);
+        return register("I" + value);
+    }
+
+    public int floatConstant(float value) {
+        int bits = Float.floatToRawIntBits(value);
+        Integer index = poolIndex.get("F" + bits);
+        if (index != null) {
+            return index;
+        }
+        pool.u1(4);
+        pool.u4(bits);
+        return register("F" + bits);
+    }
+
+    public int methodRef(String owner, String name, String descriptor) {
+        String key = "M" + owner + "." + name + descriptor;
+        Integer index = poolIndex.get(key);
+        if (index != null) {
+            return index;
+        }
+        int ownerIndex = classRef(owner);
+        int nameAndType = nameAndType(name, descriptor);
+        pool.u1(10);
+        pool.u2(ownerIndex);
+        pool.u2(nameAndType);
+        return register(key);
+    }
+
+    private int nameAndType(String name, String descriptor) {
+        String key = "N" + name + ":" + descriptor;
+        Integer index = poolIndex.get(key);
+        if (index != null) {
+            return index;
+        }
+        int nameIndex = utf8(name);
+        int descriptorIndex = utf8(descriptor);
+        pool.u1(12);
+        pool.u2(nameIndex);
+        pool.u2(descriptorIndex);
+        return register(key);
+    }
+
+    private int register(String key) {
+        int index = poolCount++;
+        poolIndex.put(key, index);
+        return index;
+    }
+
+    private static byte[] modifiedUtf8(String value) {
+        ByteBuffer out = new ByteBuffer();
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c != 0 && c < 0x80) {
+                out.u1(c);
+            } else if (c < 0x800) {
+                out.u1(0xc0 | (c >> 6));
+                out.u1(0x80 | (c & 0x3f));
+            } else {
+                out.u1(0xe0 | (c >> 12));
+                out.u1(0x80 | ((c >> 6) & 0x3f));
+                out.u1(0x80 | (c & 0x3f));
+            }
+        }
+        return out.toByteArray();
+    }
+
+    // ---------------------------------------------------------------- methods
+
+    public MethodWriter addMethod(int access, String name, String descriptor) {
+        MethodWriter method = new MethodWriter(access, utf8(name), utf8(descriptor));
+        methods.add(method);
+        return method;
+    }
+
+    // Bytecode for one method. Every label placed with a frame carries the same locals
+    // (set with setFrameLocals) and an empty operand stack.
+    public class MethodWriter {
+        private final int access;
+        private final int nameIndex;
+        private final int descriptorIndex;
+        private final ByteBuffer code;
+        private final List<Integer> labelOffsets;
+        private final List<int[]> branches;   // [opcode offset, operand offset, label]
+        private final List<Integer> frameOffsets;
+        private List<String> frameLocals;
+        private int maxStack;
+        private int maxLocals;
+
+        private MethodWriter(int access, int nameIndex, int descriptorIndex) {
+            this.access = access;
+            this.nameIndex = nameIndex;
+            this.descriptorIndex = descriptorIndex;
+            this.code = new ByteBuffer();
+            this.labelOffsets = new ArrayList<>();
+            this.branches = new ArrayList<>();
+            this.frameOffsets = new ArrayList<>();
+            this.frameLocals = List.of();
+        }
+
+        public void op(int opcode) {
+            code.u1(opcode);
+        }
+
+        public void op(int opcode, int operand) {
+            code.u1(opcode);
+            if (opcode == LDC || opcode == BIPUSH) {
+                code.u1(operand);
+            } else {
+                code.u2(operand);
+            }
+        }
+
+        // Load or store of a local, widened when the index does not fit in a byte
+        public void local(int opcode, int index) {
+            if (index > 255) {
+                code.u1(0xc4); // wide
+                code.u1(opcode);
+                code.u2(index);
+            } else {
+                code.u1(opcode);
+                code.u1(index);
+            }
+        }
+
+        public void loadConstant(int poolIndex) {
+            if (poolIndex > 255) {
+                op(LDC_W, poolIndex);
+            } else {
+                op(LDC, poolIndex);
+            }
+        }
+
+        public int newLabel() {
+            labelOffsets.add(-1);
+            return labelOffsets.size() - 1;
+        }
+
+        // Binds the label to the current offset and records a stack map frame there
+        public void placeLabel(int label) {
+            labelOffsets.set(label, code.size());
+            if (frameOffsets.isEmpty() || frameOffsets.get(frameOffsets.size() - 1) != code.size()) {
+                frameOffsets.add(code.size());
+            }
+        }
+
+        public void branch(int opcode, int label) {
+            int start = code.size();
+            code.u1(opcode);
+            branches.add(new int[] { start, code.size(), label });
+            code.u2(0);
+        }
+
+        public int offset() {
+            return code.size();
+        }
+
+        // Verification types of the locals at every frame, as field descriptors
+        public void setFrameLocals(List<String> locals) {
+            this.frameLocals = new ArrayList<>(locals);
+        }
+
+        public void setMaxStack(int maxStack) {
+            this.maxStack = maxStack;
+        }
+
+        public void setMaxLocals(int maxLocals) {
+            this.maxLocals = maxLocals;
+        }
+
+        private void resolve() {
+            if (code.size() > 32767) {
+                throw new IllegalStateException("Method body too large for 16-bit branch offsets ("
+                        + code.size() + " bytes)");
+            }
+            for (int[] branch : branches) {
+                int target = labelOffsets.get(branch[2]);
+                if (target < 0) {
+                    throw new IllegalStateException("Branch to unplaced label");
+                }
+                code.patchU2(branch[1], target - branch[0]);
+            }
+        }
+
+        private void write(ByteBuffer out) {
+            resolve();
+            ByteBuffer attribute = new ByteBuffer();
+            attribute.u2(maxStack);
+            attribute.u2(maxLocals);
+            attribute.u4(code.size());
+            attribute.append(code);
+            attribute.u2(0); // exception table
+            if (frameOffsets.isEmpty()) {
+                attribute.u2(0);
+            } else {
+                attribute.u2(1);
+                attribute.u2(utf8("StackMapTable"));
+                ByteBuffer table = stackMapTable();
+                attribute.u4(table.size());
+                attribute.append(table);
+            }
+
+            out.u2(access);
+            out.u2(nameIndex);
+            out.u2(descriptorIndex);
+            out.u2(1);
+            out.u2(utf8("Code"));
+            out.u4(attribute.size());
+            out.append(attribute);
+        }
+
+        // A full frame first, then same_frame entries since the locals never change
+        private ByteBuffer stackMapTable() {
+            ByteBuffer table = new ByteBuffer();
+            table.u2(frameOffsets.size());
+            int previous = -1;
+            for (int i = 0; i < frameOffsets.size(); i++) {
+                int offset = frameOffsets.get(i);
+                int delta = i == 0 ? offset : offset - previous - 1;
+                if (i == 0) {
+                    table.u1(255);
+                    table.u2(delta);
+                    table.u2(frameLocals.size());
+                    for (String local : frameLocals) {
+                        verificationType(table, local);
+                    }
+                    table.u2(0);
+                } else if (delta < 64) {
+                    table.u1(delta);
+                } else {
+                    table.u1(251);
+                    table.u2(delta);
+                }
+                previous = offset;
+            }
+            return table;
+        }
+
+        private void verificationType(ByteBuffer table, String descriptor) {
+            switch (descriptor) {
+                case "I" -> table.u1(1);
+                case "F" -> table.u1(2);
+                default -> {
+                    table.u1(7);
+                    String name = descriptor.startsWith("L")
+                            ? descriptor.substring(1, descriptor.length() - 1)
+                            : descriptor;
+                    table.u2(classRef(name));
+                }
+            }
+        }
+    }
+
+    // ---------------------------------------------------------------- class file
+
+    public byte[] toByteArray() {
+        int thisClass = classRef(className);
+        int superClass = classRef("java/lang/Object");
+        // Method attributes add pool entries, so write the methods before the pool
+        ByteBuffer body = new ByteBuffer();
+        body.u2(ACC_PUBLIC | ACC_FINAL | ACC_SUPER);
+        body.u2(thisClass);
+        body.u2(superClass);
+        body.u2(0); // interfaces
+        body.u2(0); // fields
+        body.u2(methods.size());
+        for (MethodWriter method : methods) {
+            method.write(body);
+        }
+        body.u2(0); // class attributes
+
+        ByteBuffer out = new ByteBuffer();
+        out.u4(0xCAFEBABE);
+        out.u2(0);
+        out.u2(61);
+        out.u2(poolCount);
+        out.append(pool);
+        out.append(body);
+        return out.toByteArray();
+    }
+}
@@ -1,5 +1,7 @@
 package codegen;
 
+import ir.Operand;
+import ir.Operand.*;
 import ir.ThreeAddressCode;
 import ir.ThreeAddressCode.*;
 
@@ -10,15 +12,17 @@ import java.util.*;
 public class CodeGenerator {
     private StringBuilder assembly;
     private Map<String, Integer> variableOffsets;
-    private Map<String, String> stringLiterals;
+    private List<StringRef> stringLiterals;
     private int stackOffset;
     private int labelCounter;
     private Set<String> usedLabels;
+    private Function function;
+    private BasicBlock nextBlock; // block laid out after the one being generated
     
     public CodeGenerator() {
         this.assembly = new StringBuilder();
         this.variableOffsets = new HashMap<>();
-        this.stringLiterals = new HashMap<>();
+        this.stringLiterals = new ArrayList<>();
         this.stackOffset = 0;
         this.labelCounter = 0;
         this.usedLabels = new HashSet<>();
@@ -32,6 +36,7 @@ public class CodeGenerator {
         generateHeader();
         
         // Generate string literals section
+        stringLiterals.addAll(ir.getStrings());
         generateDataSection();
         
         // Generate code for each function
@@ -60,9 +65,9 @@ public class CodeGenerator {
     private void generateDataSection() {
         if (!stringLiterals.isEmpty()) {
             assembly.append(".section .rodata\n");
-            for (Map.Entry<String, String> entry : stringLiterals.entrySet()) {
-                assembly.append(entry.getKey()).append(": .asciz \"")
-                        .append(entry.getValue()).append("\"\n");
+            for (StringRef literal : stringLiterals) {
+                assembly.append(literal).append(": .asciz \"")
+                        .append(escapeString(literal.value())).append("\"\n");
             }
             assembly.append("\n.text\n");
         }
@@ -72,6 +77,7 @@ public class CodeGenerator {
         String funcName = function.getName();
         
         // Reset per-function state
+        this.function = function;
         variableOffsets.clear();
         stackOffset = 0;
         
@@ -86,10 +92,17 @@ public class CodeGenerator {
         // Allocate space for local variables
         allocateVariables(function);
         
-        // Generate code for each instruction
-        System.out.println("  [INSTRUCTIONS] Processing " + function.getInstructions().size() + " instructions");
-        for (Instruction instruction : function.getInstructions()) {
-            generateInstruction(instruction);
+        // Generate code for each block
+        List<BasicBlock> blocks = function.getBlocks();
+        System.out.println("  [BLOCKS] Processing " + blocks.size() + " basic blocks");
+        for (int i = 0; i < blocks.size(); i++) {
+            BasicBlock block = blocks.get(i);
+            nextBlock = i + 1 < blocks.size() ? blocks.get(i + 1) : null;
+            assembly.append(block.getLabel()).append(":\n");
+            usedLabels.add(block.getLabel().name());
+            for (Instruction instruction : block) {
+                generateInstruction(instruction);
+            }
         }
         
         // Function epilogue (if no explicit return was generated)
@@ -147,14 +160,14 @@ public class CodeGenerator {
         String instrType = instruction.getClass().getSimpleName();
         System.out.println("    [INSTR] Generating " + instrType);
         
-        // Handle labels
-        if (instruction.getLabel() != null) {
-            assembly.append(instruction.getLabel()).append(":\n");
-            usedLabels.add(instruction.getLabel());
-        }
-        
         if (instruction instanceof BinaryOperation) {
+            // A comparison feeding only the select after it becomes that select's cmp
+            if (instruction.getNext() instanceof Select select && fusedComparison(select) == instruction) {
+                return;
+            }
             generateBinaryOperation((BinaryOperation) instruction);
+        } else if (instruction instanceof Select) {
+            generateSelect((Select) instruction);
         } else if (instruction instanceof UnaryOperation) {
             generateUnaryOperation((UnaryOperation) instruction);
         } else if (instruction instanceof Copy) {
@@ -171,9 +184,9 @@ public class CodeGenerator {
     }
     
     private void generateBinaryOperation(BinaryOperation op) {
-        String result = op.getResult();
-        String left = op.getLeft();
-        String right = op.getRight();
+        Variable result = op.getResult();
+        Operand left = op.getLeft();
+        Operand right = op.getRight();
         String operator = op.getOperator();
         
         System.out.println("      [BINARY] " + result + " = " + left + " " + operator + " " + right);
@@ -227,7 +240,7 @@ public class CodeGenerator {
         storeFromRegister("rax", result);
     }
     
-    private void generateComparison(String operator, String right) {
+    private void generateComparison(String operator, Operand right) {
         if (isImmediate(right)) {
             assembly.append("    cmp rax, ").append(right).append("\n");
         } else {
@@ -250,8 +263,8 @@ public class CodeGenerator {
     }
     
     private void generateUnaryOperation(UnaryOperation op) {
-        String result = op.getResult();
-        String operand = op.getOperand();
+        Variable result = op.getResult();
+        Operand operand = op.getOperand();
         String operator = op.getOperator();
         
         System.out.println("      [UNARY] " + result + " = " + operator + " " + operand);
@@ -273,13 +286,8 @@ public class CodeGenerator {
     }
     
     private void generateCopy(Copy copy) {
-        String dest = copy.getDestination();
-        String src = copy.getSource();
-        
-        // Skip nop operations used for labels
-        if ("nop".equals(dest) && "nop".equals(src)) {
-            return;
-        }
+        Variable dest = copy.getDestination();
+        Operand src = copy.getSource();
         
         System.out.println("      [COPY] " + dest + " = " + src);
         
@@ -292,10 +300,59 @@ public class CodeGenerator {
         storeFromRegister("rax", dest);
     }
     
+    private void generateSelect(Select select) {
+        Variable result = select.getResult();
+        
+        System.out.println("      [SELECT] " + result + " = " + select.getCondition() + " ? "
+                + select.getIfTrue() + " : " + select.getIfFalse());
+        
+        loadToRegister(select.getIfFalse(), "rax");
+        loadToRegister(select.getIfTrue(), "rcx");
+        BinaryOperation comparison = fusedComparison(select);
+        String move;
+        if (comparison != null) {
+            loadToRegister(comparison.getLeft(), "rdx");
+            assembly.append("    cmp rdx, ").append(getOperandString(comparison.getRight())).append("\n");
+            switch (comparison.getOperator()) {
+                case "==": move = "cmove"; break;
+                case "!=": move = "cmovne"; break;
+                case "<":  move = "cmovl"; break;
+                case ">":  move = "cmovg"; break;
+                case "<=": move = "cmovle"; break;
+                default: move = "cmovge"; break;
+            }
+        } else {
+            loadToRegister(select.getCondition(), "rdx");
+            assembly.append("    test rdx, rdx\n");
+            move = "cmovnz";
+        }
+        assembly.append("    ").append(move).append(" rax, rcx\n");
+        
+        storeFromRegister("rax", result);
+    }
+    
+    // The comparison right before a select that computes its condition and nothing else.
+    // Only int comparisons fuse: `cmp` compares the integer bits of the operands.
+    private BinaryOperation fusedComparison(Select select) {
+        if (select.getPrevious() instanceof BinaryOperation comparison
+                && comparison.getResult().equals(select.getCondition())
+                && "int".equals(function.getType(comparison.getLeft()))
+                && "int".equals(function.getType(comparison.getRight()))
+                && function.getUses(comparison.getResult()).size() == 1
+                && !select.getIfTrue().equals(select.getCondition())
+                && !select.getIfFalse().equals(select.getCondition())) {
+            switch (comparison.getOperator()) {
+                case "==": case "!=": case "<": case ">": case "<=": case ">=":
+                    return comparison;
+            }
+        }
+        return null;
+    }
+    
     private void generateFunctionCall(FunctionCall call) {
-        String result = call.getResult();
+        Variable result = call.getResult();
         String function = call.getFunction();
-        List<String> arguments = call.getArguments();
+        List<Operand> arguments = call.getArguments();
         
         System.out.println("      [CALL] " + function + " with " + arguments.size() + " arguments");
         
@@ -307,37 +364,68 @@ public class CodeGenerator {
             loadToRegister(arguments.get(i), argRegs[i]);
         }
         
+        // A call whose result is returned right away tears the frame down first and
+        // jumps, so the callee returns straight to our caller
+        if (isSiblingCall(call)) {
+            System.out.println("      [TAILCALL] " + function);
+            assembly.append("    mov rsp, rbp\n");
+            assembly.append("    pop rbp\n");
+            assembly.append("    jmp ").append(function).append("\n");
+            return;
+        }
+        
         // Call function
         assembly.append("    call ").append(function).append("\n");
         
         // Store result if function returns a value
-        if (result != null && !result.equals("void")) {
+        if (result != null) {
             storeFromRegister("rax", result);
         }
     }
     
+    // All arguments travel in registers, so nothing of the frame is needed after the call
+    private boolean isSiblingCall(FunctionCall call) {
+        return call.getArguments().size() <= 6 && call.getNext() instanceof Return ret
+                && (ret.getValue() == null || ret.getValue().equals(call.getResult()));
+    }
+    
     private void generateJump(Jump jump) {
-        String target = jump.getTarget();
+        Label target = jump.getTarget();
         System.out.println("      [JUMP] goto " + target);
+        // A jump to the next block in the layout falls through
+        if (nextBlock != null && nextBlock.getLabel().equals(target)) {
+            return;
+        }
         assembly.append("    jmp ").append(target).append("\n");
     }
     
     private void generateConditionalJump(ConditionalJump condJump) {
-        String condition = condJump.getCondition();
-        String trueTarget = condJump.getTrueTarget();
-        String falseTarget = condJump.getFalseTarget();
+        Operand condition = condJump.getCondition();
+        Label trueTarget = condJump.getTrueTarget();
+        Label falseTarget = condJump.getFalseTarget();
         
         System.out.println("      [COND_JUMP] if " + condition + " goto " + trueTarget + " else goto " + falseTarget);
         
         // Load condition and test
         loadToRegister(condition, "rax");
         assembly.append("    test rax, rax\n");
+        // Whichever target is laid out next is reached by falling through
+        if (nextBlock != null && nextBlock.getLabel().equals(trueTarget)) {
+            assembly.append("    jz ").append(falseTarget).append("\n");
+            return;
+        }
         assembly.append("    jnz ").append(trueTarget).append("\n");
-        assembly.append("    jmp ").append(falseTarget).append("\n");
+        if (nextBlock == null || !nextBlock.getLabel().equals(falseTarget)) {
+            assembly.append("    jmp ").append(falseTarget).append("\n");
+        }
     }
     
     private void generateReturn(Return ret) {
-        String value = ret.getValue();
+        // A sibling call already left the function
+        if (ret.getPrevious() instanceof FunctionCall call && isSiblingCall(call)) {
+            return;
+        }
+        Operand value = ret.getValue();
         
         if (value != null) {
             System.out.println("      [RETURN] return " + value);
@@ -351,10 +439,10 @@ public class CodeGenerator {
         assembly.append("    ret\n");
     }
     
-    private void loadToRegister(String operand, String register) {
+    private void loadToRegister(Operand operand, String register) {
         if (isImmediate(operand)) {
             assembly.append("    mov ").append(register).append(", ").append(operand).append("\n");
-        } else if (operand.startsWith("str")) {
+        } else if (operand instanceof StringRef) {
             // String literal
             assembly.append("    lea ").append(register).append(", [").append(operand).append("]\n");
         } else {
@@ -364,17 +452,17 @@ public class CodeGenerator {
         }
     }
     
-    private void storeFromRegister(String register, String destination) {
+    private void storeFromRegister(String register, Variable destination) {
         String destStr = getOperandString(destination);
         assembly.append("    mov ").append(destStr).append(", ").append(register).append("\n");
     }
     
-    private String getOperandString(String operand) {
-        if (variableOffsets.containsKey(operand)) {
-            int offset = variableOffsets.get(operand);
+    private String getOperandString(Operand operand) {
+        if (operand instanceof Variable variable && variableOffsets.containsKey(variable.name())) {
+            int offset = variableOffsets.get(variable.name());
             return "[rbp" + (offset >= 0 ? "+" : "") + offset + "]";
-        } else if (operand.startsWith("str")) {
-            return operand;
+        } else if (operand instanceof StringRef || operand instanceof Constant) {
+            return operand.toString();
         } else {
             // If not found in variables, assume it's a temporary that should be on stack
             // This is a fallback - in a real compiler we'd track all temporaries
@@ -382,8 +470,23 @@ public class CodeGenerator {
         }
     }
     
-    private boolean isImmediate(String operand) {
-        return operand.matches("-?\\d+") || operand.matches("-?\\d+\\.\\d+");
+    private boolean isImmediate(Operand operand) {
+        return operand instanceof Constant;
+    }
+    
+    private String escapeString(String value) {
+        StringBuilder sb = new StringBuilder();
+        for (char c : value.toCharArray()) {
+            switch (c) {
+                case '"': sb.append("\\\""); break;
+                case '\\': sb.append("\\\\"); break;
+                case '\n': sb.append("\\n"); break;
+                case '\t': sb.append("\\t"); break;
+                case '\r': sb.append("\\r"); break;
+                default: sb.append(c);
+            }
+        }
+        return sb.toString();
     }
     
     private int getTypeSize(String type) {
@@ -0,0 +1,469 @@
+package codegen;
+
+import codegen.ClassFileWriter.MethodWriter;
+import ir.Operand;
+import ir.Operand.*;
+import ir.ThreeAddressCode;
+import ir.ThreeAddressCode.*;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static codegen.ClassFileWriter.*;
+
+// Second backend: lowers three-address code to a JVM class with one static method per
+// function. Every variable gets a local slot that is initialized at method entry, so all
+// locals have the same verification type at every branch target and each stack map
+// frame after the first is a one-byte same_frame. The operand stack is empty between
+// IR instructions.
+public class JvmCodeGenerator {
+    // Hidden classes must live in the package of the lookup that defines them
+    public static final String CLASS_NAME = "codegen/CompiledProgram";
+
+    private ClassFileWriter writer;
+    private Map<String, Function> functions;
+    private Function function;
+    private MethodWriter method;
+    private Map<Variable, Integer> locals;
+    private Map<Label, Integer> blockLabels;
+    private BasicBlock nextBlock; // block laid out after the one being generated
+
+    public byte[] generate(ThreeAddressCode ir) {
+        System.out.println("[JVM] Generating class " + CLASS_NAME + " for " + ir.getFunctions().size() + " functions");
+        writer = new ClassFileWriter(CLASS_NAME);
+        functions = new HashMap<>();
+        for (Function f : ir.getFunctions()) {
+            functions.put(f.getName(), f);
+        }
+        for (Function f : ir.getFunctions()) {
+            generateFunction(f);
+        }
+        return writer.toByteArray();
+    }
+
+    public void generateCode(ThreeAddressCode ir, String outputFile) throws IOException {
+        Files.write(Paths.get(outputFile), generate(ir));
+        System.out.println("[JVM] Class file written to: " + outputFile);
+    }
+
+    // Compiles the module and defines it as a hidden class in this JVM
+    public Class<?> load(ThreeAddressCode ir) {
+        try {
+            return MethodHandles.lookup().defineHiddenClass(generate(ir), true).lookupClass();
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException("Cannot define compiled class", e);
+        }
+    }
+
+    // Calls a compiled function; a String[] parameter left out receives an empty array
+    public static Object invoke(Class<?> compiled, String name, Object... arguments) {
+        for (Method m : compiled.getDeclaredMethods()) {
+            if (!m.getName().equals(name)) {
+                continue;
+            }
+            Class<?>[] types = m.getParameterTypes();
+            Object[] actual = new Object[types.length];
+            for (int i = 0; i < types.length; i++) {
+                if (i < arguments.length) {
+                    actual[i] = arguments[i];
+                } else if (types[i] == String[].class) {
+                    actual[i] = new String[0];
+                } else if (types[i] == float.class) {
+                    actual[i] = 0.0f;
+                } else if (types[i] == int.class) {
+                    actual[i] = 0;
+                }
+            }
+            try {
+                return m.invoke(null, actual);
+            } catch (IllegalAccessException e) {
+                throw new IllegalStateException(e);
+            } catch (InvocationTargetException e) {
+                throw new RuntimeException(e.getCause());
+            }
+        }
+        throw new IllegalArgumentException("No compiled function " + name);
+    }
+
+    // ---------------------------------------------------------------- types
+
+    private static String descriptor(String type) {
+        return switch (type) {
+            case "int" -> "I";
+            case "float" -> "F";
+            case "void" -> "V";
+            case "string", "String" -> "Ljava/lang/String;";
+            case "String[]" -> "[Ljava/lang/String;";
+            default -> throw new IllegalArgumentException("No JVM type for " + type);
+        };
+    }
+
+    private static String methodDescriptor(Function f) {
+        StringBuilder sb = new StringBuilder("(");
+        for (String param : f.getParameters()) {
+            sb.append(descriptor(f.getVariables().get(param)));
+        }
+        return sb.append(")").append(descriptor(f.getReturnType())).toString();
+    }
+
+    private String kind(Operand operand) {
+        String type = function.getType(operand);
+        if (type == null) {
+            throw new IllegalStateException("Unknown type for " + operand + " in " + function.getName());
+        }
+        return descriptor(type);
+    }
+
+    // ---------------------------------------------------------------- functions
+
+    private void generateFunction(Function f) {
+        System.out.println("[JVM] Generating method " + f.getName() + methodDescriptor(f));
+        function = f;
+        method = writer.addMethod(ACC_PUBLIC | ACC_STATIC, f.getName(), methodDescriptor(f));
+        locals = new HashMap<>();
+        blockLabels = new HashMap<>();
+
+        // Parameters occupy the first slots; every other variable is initialized here
+        List<String> frame = new ArrayList<>();
+        for (String param : f.getParameters()) {
+            locals.put(new Param(param), frame.size());
+            frame.add(descriptor(f.getVariables().get(param)));
+        }
+        for (BasicBlock block : f.getBlocks()) {
+            for (Instruction instruction : block) {
+                if (instruction instanceof Phi) {
+                    throw new IllegalArgumentException("Cannot generate code for SSA form in " + f.getName());
+                }
+                allocate(instruction.getDefinition(), frame);
+                for (Operand use : instruction.getUses()) {
+                    if (use instanceof Variable variable) {
+                        allocate(variable, frame);
+                    }
+                }
+            }
+        }
+        for (Map.Entry<Variable, Integer> entry : locals.entrySet()) {
+            if (entry.getKey() instanceof Param) {
+                continue;
+            }
+            String type = frame.get(entry.getValue());
+            switch (type) {
+                case "I" -> method.op(ICONST_0);
+                case "F" -> method.op(FCONST_0);
+                default -> method.op(ACONST_NULL);
+            }
+            method.local(storeOpcode(type), entry.getValue());
+        }
+        method.setFrameLocals(frame);
+        method.setMaxLocals(frame.size());
+
+        int maxArguments = 0;
+        for (BasicBlock block : f.getBlocks()) {
+            blockLabels.put(block.getLabel(), method.newLabel());
+            for (Instruction instruction : block) {
+                if (instruction instanceof FunctionCall call) {
+                    maxArguments = Math.max(maxArguments, call.getArguments().size());
+                }
+            }
+        }
+        method.setMaxStack(Math.max(2, maxArguments));
+
+        List<BasicBlock> blocks = f.getBlocks();
+        for (int i = 0; i < blocks.size(); i++) {
+            BasicBlock block = blocks.get(i);
+            nextBlock = i + 1 < blocks.size() ? blocks.get(i + 1) : null;
+            method.placeLabel(blockLabels.get(block.getLabel()));
+            for (Instruction instruction : block) {
+                generateInstruction(instruction);
+            }
+        }
+    }
+
+    private void allocate(Variable variable, List<String> frame) {
+        if (variable != null && !locals.containsKey(variable)) {
+            locals.put(variable, frame.size());
+            frame.add(kind(variable));
+        }
+    }
+
+    // ---------------------------------------------------------------- instructions
+
+    private void generateInstruction(Instruction instruction) {
+        if (instruction instanceof Copy copy) {
+            load(copy.getSource(), kind(copy.getDestination()));
+            store(copy.getDestination());
+        } else if (instruction instanceof BinaryOperation binOp) {
+            generateBinaryOperation(binOp);
+        } else if (instruction instanceof UnaryOperation unary) {
+            generateUnaryOperation(unary);
+        } else if (instruction instanceof Select select) {
+            generateSelect(select);
+        } else if (instruction instanceof FunctionCall call) {
+            generateFunctionCall(call);
+        } else if (instruction instanceof Jump jump) {
+            jumpTo(jump.getTarget());
+        } else if (instruction instanceof ConditionalJump cj) {
+            load(cj.getCondition(), "I");
+            method.branch(IFNE, blockLabels.get(cj.getTrueTarget()));
+            jumpTo(cj.getFalseTarget());
+        } else if (instruction instanceof Return ret) {
+            String type = descriptor(function.getReturnType());
+            if (type.equals("V")) {
+                method.op(RETURN);
+            } else {
+                // A bare return in a function with a result yields the zero value, as in
+                // the interpreter; the verifier rejects it even in unreachable code
+                if (ret.getValue() == null) {
+                    method.op(type.equals("I") ? ICONST_0 : type.equals("F") ? FCONST_0 : ACONST_NULL);
+                } else {
+                    load(ret.getValue(), type);
+                }
+                method.op(switch (type) {
+                    case "I" -> IRETURN;
+                    case "F" -> FRETURN;
+                    default -> ARETURN;
+                });
+            }
+        } else {
+            throw new IllegalArgumentException("Unsupported instruction " + instruction);
+        }
+    }
+
+    private void jumpTo(Label target) {
+        if (nextBlock == null || !nextBlock.getLabel().equals(target)) {
+            method.branch(GOTO, blockLabels.get(target));
+        }
+    }
+
+    private void generateBinaryOperation(BinaryOperation binOp) {
+        String operator = binOp.getOperator();
+        String leftKind = kind(binOp.getLeft());
+        String rightKind = kind(binOp.getRight());
+        switch (operator) {
+            case "+", "-", "*", "/" -> {
+                String type = kind(binOp.getResult());
+                load(binOp.getLeft(), type);
+                load(binOp.getRight(), type);
+                boolean isFloat = type.equals("F");
+                method.op(switch (operator) {
+                    case "+" -> isFloat ? FADD : IADD;
+                    case "-" -> isFloat ? FSUB : ISUB;
+                    case "*" -> isFloat ? FMUL : IMUL;
+                    default -> isFloat ? FDIV : IDIV;
+                });
+                store(binOp.getResult());
+            }
+            case "&&", "||" -> {
+                // Both operands are evaluated already; only the result needs branches
+                int shortCircuit = method.newLabel();
+                int end = method.newLabel();
+                int test = operator.equals("&&") ? IFEQ : IFNE;
+                load(binOp.getLeft(), "I");
+                method.branch(test, shortCircuit);
+                load(binOp.getRight(), "I");
+                method.branch(test, shortCircuit);
+                storeBoolean(binOp.getResult(), operator.equals("&&"), shortCircuit, end);
+            }
+            default -> {
+                int branch;
+                if (leftKind.equals("F") || rightKind.equals("F")) {
+                    // fcmpg makes NaN compare greater, fcmpl makes it compare less, so
+                    // every ordered comparison involving NaN is false
+                    load(binOp.getLeft(), "F");
+                    load(binOp.getRight(), "F");
+                    method.op(operator.equals("<") || operator.equals("<=") ? FCMPG : FCMPL);
+                    branch = switch (operator) {
+                        case "==" -> IFEQ;
+                        case "!=" -> IFNE;
+                        case "<" -> IFLT;
+                        case ">" -> IFGT;
+                        case "<=" -> IFLE;
+                        default -> IFGE;
+                    };
+                } else if (leftKind.equals("I")) {
+                    load(binOp.getLeft(), "I");
+                    load(binOp.getRight(), "I");
+                    branch = switch (operator) {
+                        case "==" -> IF_ICMPEQ;
+                        case "!=" -> IF_ICMPNE;
+                        case "<" -> IF_ICMPLT;
+                        case ">" -> IF_ICMPGT;
+                        case "<=" -> IF_ICMPLE;
+                        default -> IF_ICMPGE;
+                    };
+                } else {
+                    // Strings compare by identity, like pool indices in the interpreter
+                    load(binOp.getLeft(), leftKind);
+                    load(binOp.getRight(), rightKind);
+                    branch = operator.equals("!=") ? IF_ACMPNE : IF_ACMPEQ;
+                }
+                int isTrue = method.newLabel();
+                int end = method.newLabel();
+                method.branch(branch, isTrue);
+                storeBoolean(binOp.getResult(), false, isTrue, end);
+            }
+        }
+    }
+
+    // Falls through to store `fallthrough`; `other` stores the opposite value
+    private void storeBoolean(Variable result, boolean fallthrough, int other, int end) {
+        method.op(ICONST_0 + (fallthrough ? 1 : 0));
+        store(result);
+        method.branch(GOTO, end);
+        method.placeLabel(other);
+        method.op(ICONST_0 + (fallthrough ? 0 : 1));
+        store(result);
+        method.placeLabel(end);
+    }
+
+    private void generateUnaryOperation(UnaryOperation unary) {
+        String operandKind = kind(unary.getOperand());
+        switch (unary.getOperator()) {
+            case "-" -> {
+                load(unary.getOperand(), operandKind);
+                method.op(operandKind.equals("F") ? FNEG : INEG);
+                store(unary.getResult());
+            }
+            case "!" -> {
+                int isZero = method.newLabel();
+                int end = method.newLabel();
+                load(unary.getOperand(), "I");
+                method.branch(IFEQ, isZero);
+                storeBoolean(unary.getResult(), false, isZero, end);
+            }
+            case "(int)", "(float)" -> {
+                // load converts to the result's type
+                load(unary.getOperand(), kind(unary.getResult()));
+                store(unary.getResult());
+            }
+            default -> {
+                // A cast between types with one JVM type, such as a string literal to String,
+                // is a plain copy
+                String resultKind = kind(unary.getResult());
+                if (!unary.getOperator().startsWith("(") || !resultKind.equals(operandKind)) {
+                    throw new IllegalArgumentException("Unsupported unary operator " + unary.getOperator());
+                }
+                load(unary.getOperand(), resultKind);
+                store(unary.getResult());
+            }
+        }
+    }
+
+    // The stack is empty at both labels, so each branch stores its own value
+    private void generateSelect(Select select) {
+        String type = kind(select.getResult());
+        int isFalse = method.newLabel();
+        int end = method.newLabel();
+        load(select.getCondition(), "I");
+        method.branch(IFEQ, isFalse);
+        load(select.getIfTrue(), type);
+        store(select.getResult());
+        method.branch(GOTO, end);
+        method.placeLabel(isFalse);
+        load(select.getIfFalse(), type);
+        store(select.getResult());
+        method.placeLabel(end);
+    }
+
+    private void generateFunctionCall(FunctionCall call) {
+        Function callee = functions.get(call.getFunction());
+        if (callee == null) {
+            throw new IllegalArgumentException("Call to unknown function " + call.getFunction());
+        }
+        List<Operand> arguments = call.getArguments();
+        List<String> parameters = callee.getParameters();
+        for (int i = 0; i < parameters.size(); i++) {
+            String type = descriptor(callee.getVariables().get(parameters.get(i)));
+            if (i < arguments.size()) {
+                load(arguments.get(i), type);
+            } else {
+                method.op(type.equals("I") ? ICONST_0 : type.equals("F") ? FCONST_0 : ACONST_NULL);
+            }
+        }
+        method.op(INVOKESTATIC, writer.methodRef(CLASS_NAME, callee.getName(), methodDescriptor(callee)));
+        boolean returnsValue = !"void".equals(callee.getReturnType());
+        if (call.getResult() != null && returnsValue) {
+            String type = descriptor(callee.getReturnType());
+            convert(type, kind(call.getResult()));
+            store(call.getResult());
+        } else if (returnsValue) {
+            method.op(POP);
+        }
+    }
+
+    // ---------------------------------------------------------------- operands
+
+    // Pushes an operand converted to the wanted kind ("I", "F" or a reference)
+    private void load(Operand operand, String wanted) {
+        String actual;
+        if (operand instanceof IntConst c) {
+            pushInt(c.value());
+            actual = "I";
+        } else if (operand instanceof FloatConst c) {
+            float value = c.value();
+            if (Float.floatToRawIntBits(value) == 0 || value == 1.0f || value == 2.0f) {
+                method.op(FCONST_0 + (int) value);
+            } else {
+                method.loadConstant(writer.floatConstant(value));
+            }
+            actual = "F";
+        } else if (operand instanceof StringRef s) {
+            method.loadConstant(writer.string(s.value()));
+            actual = "Ljava/lang/String;";
+        } else if (operand instanceof Variable variable) {
+            actual = kind(variable);
+            method.local(loadOpcode(actual), locals.get(variable));
+        } else {
+            throw new IllegalArgumentException("Cannot load " + operand);
+        }
+        convert(actual, wanted);
+    }
+
+    private void convert(String from, String to) {
+        if (from.equals("I") && to.equals("F")) {
+            method.op(I2F);
+        } else if (from.equals("F") && to.equals("I")) {
+            method.op(F2I);
+        }
+    }
+
+    private void pushInt(int value) {
+        if (value >= -1 && value <= 5) {
+            method.op(ICONST_0 + value);
+        } else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+            method.op(BIPUSH, value);
+        } else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+            method.op(SIPUSH, value);
+        } else {
+            method.loadConstant(writer.integer(value));
+        }
+    }
+
+    private void store(Variable variable) {
+        method.local(storeOpcode(kind(variable)), locals.get(variable));
+    }
+
+    private static int loadOpcode(String kind) {
+        return switch (kind) {
+            case "I" -> ILOAD;
+            case "F" -> FLOAD;
+            default -> ALOAD;
+        };
+    }
+
+    private static int storeOpcode(String kind) {
+        return switch (kind) {
+            case "I" -> ISTORE;
+            case "F" -> FSTORE;
+            default -> ASTORE;
+        };
+    }
+}
@@ -0,0 +1,190 @@
+package ir;
+
+import ir.ThreeAddressCode.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// Dominator tree of the blocks reachable from a function's entry, computed with the
+// iterative algorithm of Cooper, Harvey and Kennedy ("A Simple, Fast Dominance
+// Algorithm") over reverse postorder numbers.
+public class DominatorTree {
+    private final Function function;
+    private final List<BasicBlock> reversePostOrder;
+    private final Map<BasicBlock, Integer> rpoNumber;
+    private final BasicBlock[] idom;          // indexed by RPO number
+    private final List<List<BasicBlock>> children;
+    private final int[] preorder;             // dominator-tree DFS numbering for O(1) queries
+    private final int[] postorder;
+    private List<Set<BasicBlock>> frontiers; // computed on first use
+
+    public DominatorTree(Function function) {
+        this.function = function;
+        this.reversePostOrder = function.computeReversePostOrder();
+        int n = reversePostOrder.size();
+        this.rpoNumber = new HashMap<>();
+        for (int i = 0; i < n; i++) {
+            rpoNumber.put(reversePostOrder.get(i), i);
+        }
+        this.idom = new BasicBlock[n];
+        this.children = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            children.add(new ArrayList<>());
+        }
+        this.preorder = new int[n];
+        this.postorder = new int[n];
+        if (n > 0) {
+            computeImmediateDominators();
+            numberTree();
+        }
+    }
+
+    private void computeImmediateDominators() {
+        idom[0] = reversePostOrder.get(0);
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int i = 1; i < reversePostOrder.size(); i++) {
+                BasicBlock block = reversePostOrder.get(i);
+                BasicBlock newIdom = null;
+                for (BasicBlock pred : block.getPredecessors()) {
+                    Integer p = rpoNumber.get(pred);
+                    if (p == null || idom[p] == null) {
+                        continue; // unreachable or not processed yet
+                    }
+                    newIdom = newIdom == null ? pred : intersect(pred, newIdom);
+                }
+                if (idom[i] != newIdom) {
+                    idom[i] = newIdom;
+                    changed = true;
+                }
+            }
+        }
+        for (int i = 1; i < reversePostOrder.size(); i++) {
+            children.get(rpoNumber.get(idom[i])).add(reversePostOrder.get(i));
+        }
+    }
+
+    private BasicBlock intersect(BasicBlock a, BasicBlock b) {
+        int finger1 = rpoNumber.get(a);
+        int finger2 = rpoNumber.get(b);
+        while (finger1 != finger2) {
+            while (finger1 > finger2) {
+                finger1 = rpoNumber.get(idom[finger1]);
+            }
+            while (finger2 > finger1) {
+                finger2 = rpoNumber.get(idom[finger2]);
+            }
+        }
+        return reversePostOrder.get(finger1);
+    }
+
+    private void numberTree() {
+        int counter = 0;
+        int[] stack = new int[reversePostOrder.size()];
+        int[] childIndex = new int[reversePostOrder.size()];
+        int top = 0;
+        stack[top++] = 0;
+        preorder[0] = counter++;
+        int post = 0;
+        while (top > 0) {
+            int node = stack[top - 1];
+            List<BasicBlock> kids = children.get(node);
+            if (childIndex[node] < kids.size()) {
+                int child = rpoNumber.get(kids.get(childIndex[node]++));
+                preorder[child] = counter++;
+                stack[top++] = child;
+            } else {
+                postorder[node] = post++;
+                top--;
+            }
+        }
+    }
+
+    public Function getFunction() {
+        return function;
+    }
+
+    // Reachable blocks in reverse postorder; the entry block comes first
+    public List<BasicBlock> getReversePostOrder() {
+        return Collections.unmodifiableList(reversePostOrder);
+    }
+
+    public boolean isReachable(BasicBlock block) {
+        return rpoNumber.containsKey(block);
+    }
+
+    // Null for the entry block and unreachable blocks
+    public BasicBlock getImmediateDominator(BasicBlock block) {
+        Integer i = rpoNumber.get(block);
+        return (i == null || i == 0) ? null : idom[i];
+    }
+
+    public List<BasicBlock> getChildren(BasicBlock block) {
+        Integer i = rpoNumber.get(block);
+        return i == null ? List.of() : Collections.unmodifiableList(children.get(i));
+    }
+
+    // True if every path from the entry to b passes through a (a block dominates itself)
+    public boolean dominates(BasicBlock a, BasicBlock b) {
+        Integer i = rpoNumber.get(a);
+        Integer j = rpoNumber.get(b);
+        if (i == null || j == null) {
+            return false;
+        }
+        return preorder[i] <= preorder[j] && postorder[j] <= postorder[i];
+    }
+
+    public boolean strictlyDominates(BasicBlock a, BasicBlock b) {
+        return a != b && dominates(a, b);
+    }
+
+    // Blocks where the dominance of `block` ends: join points with a predecessor it
+    // dominates, that it does not strictly dominate itself
+    public Set<BasicBlock> getDominanceFrontier(BasicBlock block) {
+        Integer i = rpoNumber.get(block);
+        if (i == null) {
+            return Set.of();
+        }
+        if (frontiers == null) {
+            computeFrontiers();
+        }
+        return Collections.unmodifiableSet(frontiers.get(i));
+    }
+
+    // Cooper-Harvey-Kennedy: from each predecessor of a join point, walk up the
+    // dominator tree to the join point's immediate dominator
+    private void computeFrontiers() {
+        frontiers = new ArrayList<>(reversePostOrder.size());
+        for (int i = 0; i < reversePostOrder.size(); i++) {
+            frontiers.add(new LinkedHashSet<>());
+        }
+        for (int i = 0; i < reversePostOrder.size(); i++) {
+            BasicBlock block = reversePostOrder.get(i);
+            List<BasicBlock> preds = block.getPredecessors();
+            if (preds.size() < 2) {
+                continue;
+            }
+            int stop = rpoNumber.get(idom[i]);
+            for (BasicBlock pred : preds) {
+                Integer start = rpoNumber.get(pred);
+                if (start == null) {
+                    continue; // unreachable predecessor
+                }
+                int runner = start;
+                while (runner != stop) {
+                    frontiers.get(runner).add(block);
+                    if (runner == 0) {
+                        break;
+                    }
+                    runner = rpoNumber.get(idom[runner]);
+                }
+            }
+        }
+    }
+}
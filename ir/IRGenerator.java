@@ -1,6 +1,8 @@
 package ir;
 
 import parser.AST.*;
+import ir.Operand.*;
+import ir.Operand.Variable;
 import ir.ThreeAddressCode.*;
 
 import java.util.ArrayList;
@@ -11,14 +13,12 @@ import java.util.Map;
 public class IRGenerator {
     private ThreeAddressCode ir;
     private Function currentFunction;
-    private Map<String, String> stringLiterals;
     private int labelCounter;
     private int tempVarCounter; // For tracking temporary variables
     private Map<String, String> symbolTable; // Track variable types across functions
     
     public IRGenerator() {
         this.ir = new ThreeAddressCode();
-        this.stringLiterals = new HashMap<>();
         this.symbolTable = new HashMap<>();
         this.labelCounter = 0;
         this.tempVarCounter = 0;
@@ -44,7 +44,7 @@ public class IRGenerator {
         
         System.out.println("\n[IR-GEN] IR generation completed");
         System.out.println("[IR-GEN] Generated " + ir.getFunctions().size() + " functions");
-        System.out.println("[IR-GEN] Generated " + stringLiterals.size() + " string literals");
+        System.out.println("[IR-GEN] Generated " + ir.getStrings().size() + " string literals");
         System.out.println("[IR-GEN] Generated " + tempVarCounter + " temporary variables");
         System.out.println("=== IR Generation Completed Successfully ===");
         
@@ -74,6 +74,13 @@ public class IRGenerator {
         System.out.println("  [BODY] Generating code for function body");
         generateBlock(functionDecl.getBody());
         
+        // Falling off the end of the body returns
+        List<BasicBlock> blocks = currentFunction.getBlocks();
+        if (blocks.isEmpty() || blocks.get(blocks.size() - 1).getTerminator() == null) {
+            currentFunction.addInstruction(new Return(null));
+            System.out.println("  [INSTR] Added implicit RETURN at end of function");
+        }
+        
         // Add function to IR
         ir.addFunction(currentFunction);
         System.out.println("  [COMPLETE] Function '" + name + "' IR generation completed with " + 
@@ -121,37 +128,37 @@ public class IRGenerator {
         System.out.println("        [VAR-DECL] Declaring variable '" + name + "' of type '" + type + "'");
         
         // Add variable to function and symbol table
-        currentFunction.addVariable(name, type);
+        Local variable = currentFunction.addVariable(name, type);
         symbolTable.put(currentFunction.getName() + "_" + name, type);
         
         // Generate initialization if present
         if (declaration.getInitialValue() != null) {
             System.out.println("        [VAR-INIT] Generating initializer for variable '" + name + "'");
-            String valueTemp = generateExpression(declaration.getInitialValue());
+            Operand valueTemp = generateValueExpression(declaration.getInitialValue());
             
             // Ensure proper type conversion if needed
-            if (!getType(valueTemp).equals(type) && !valueTemp.equals("void")) {
-                String convertedTemp = generateTypeConversion(valueTemp, getType(valueTemp), type);
-                currentFunction.addInstruction(new Copy(name, convertedTemp));
+            if (!getType(valueTemp).equals(type)) {
+                Operand convertedTemp = generateTypeConversion(valueTemp, getType(valueTemp), type);
+                currentFunction.addInstruction(new Copy(variable, convertedTemp));
                 System.out.println("        [INSTR] Added COPY with conversion: " + name + " = " + convertedTemp);
             } else {
-                currentFunction.addInstruction(new Copy(name, valueTemp));
+                currentFunction.addInstruction(new Copy(variable, valueTemp));
                 System.out.println("        [INSTR] Added COPY: " + name + " = " + valueTemp);
             }
         } else {
             // Initialize with default value
-            String defaultValue = getDefaultValue(type);
-            currentFunction.addInstruction(new Copy(name, defaultValue));
+            Operand defaultValue = getDefaultValue(type);
+            currentFunction.addInstruction(new Copy(variable, defaultValue));
             System.out.println("        [INSTR] Added default initialization: " + name + " = " + defaultValue);
         }
     }
     
     private void generateIfStatement(IfStatement statement) {
         System.out.println("        [IF] Generating condition for if statement");
-        String condition = generateExpression(statement.getCondition());
-        String trueLabel = generateLabel();
-        String falseLabel = statement.getElseBranch() != null ? generateLabel() : null;
-        String endLabel = generateLabel();
+        Operand condition = generateValueExpression(statement.getCondition());
+        Label trueLabel = generateLabel();
+        Label falseLabel = statement.getElseBranch() != null ? generateLabel() : null;
+        Label endLabel = generateLabel();
         
         System.out.println("        [IF] Created labels - true: " + trueLabel + 
                           (falseLabel != null ? ", false: " + falseLabel : "") + 
@@ -169,9 +176,7 @@ public class IRGenerator {
         }
         
         // Generate 'then' branch
-        Instruction trueLabelInst = new Copy("nop", "nop"); // Placeholder instruction
-        trueLabelInst.setLabel(trueLabel);
-        currentFunction.addInstruction(trueLabelInst);
+        currentFunction.placeLabel(trueLabel);
         System.out.println("        [LABEL] Added label: " + trueLabel);
         
         System.out.println("        [IF-THEN] Generating 'then' branch code");
@@ -182,9 +187,7 @@ public class IRGenerator {
         
         // Generate 'else' branch if it exists
         if (statement.getElseBranch() != null) {
-            Instruction falseLabelInst = new Copy("nop", "nop"); // Placeholder instruction
-            falseLabelInst.setLabel(falseLabel);
-            currentFunction.addInstruction(falseLabelInst);
+            currentFunction.placeLabel(falseLabel);
             System.out.println("        [LABEL] Added label: " + falseLabel);
             
             System.out.println("        [IF-ELSE] Generating 'else' branch code");
@@ -195,38 +198,32 @@ public class IRGenerator {
         }
         
         // End label
-        Instruction endLabelInst = new Copy("nop", "nop"); // Placeholder instruction
-        endLabelInst.setLabel(endLabel);
-        currentFunction.addInstruction(endLabelInst);
+        currentFunction.placeLabel(endLabel);
         System.out.println("        [LABEL] Added label: " + endLabel);
     }
     
     private void generateWhileStatement(WhileStatement statement) {
-        String startLabel = generateLabel();
-        String bodyLabel = generateLabel();
-        String endLabel = generateLabel();
+        Label startLabel = generateLabel();
+        Label bodyLabel = generateLabel();
+        Label endLabel = generateLabel();
         
         System.out.println("        [WHILE] Created labels - start: " + startLabel + 
                           ", body: " + bodyLabel + ", end: " + endLabel);
         
         // Start label
-        Instruction startLabelInst = new Copy("nop", "nop"); // Placeholder instruction
-        startLabelInst.setLabel(startLabel);
-        currentFunction.addInstruction(startLabelInst);
+        currentFunction.placeLabel(startLabel);
         System.out.println("        [LABEL] Added label: " + startLabel);
         
         // Generate condition and conditional jump
         System.out.println("        [WHILE] Generating condition expression");
-        String condition = generateExpression(statement.getCondition());
+        Operand condition = generateValueExpression(statement.getCondition());
         
         currentFunction.addInstruction(new ConditionalJump(condition, bodyLabel, endLabel));
         System.out.println("        [INSTR] Added COND_JUMP: if " + condition + " goto " + 
                           bodyLabel + " else goto " + endLabel);
         
         // Body label
-        Instruction bodyLabelInst = new Copy("nop", "nop"); // Placeholder instruction
-        bodyLabelInst.setLabel(bodyLabel);
-        currentFunction.addInstruction(bodyLabelInst);
+        currentFunction.placeLabel(bodyLabel);
         System.out.println("        [LABEL] Added label: " + bodyLabel);
         
         // Generate loop body
@@ -238,9 +235,7 @@ public class IRGenerator {
         System.out.println("        [INSTR] Added JUMP back to condition: " + startLabel);
         
         // End label
-        Instruction endLabelInst = new Copy("nop", "nop"); // Placeholder instruction
-        endLabelInst.setLabel(endLabel);
-        currentFunction.addInstruction(endLabelInst);
+        currentFunction.placeLabel(endLabel);
         System.out.println("        [LABEL] Added label: " + endLabel);
     }
     
@@ -249,14 +244,14 @@ public class IRGenerator {
         
         if (statement.getValue() != null) {
             System.out.println("        [RETURN] Return has value expression");
-            String valueTemp = generateExpression(statement.getValue());
+            Operand valueTemp = generateValueExpression(statement.getValue());
             
             // Ensure return value matches function return type
             String expectedType = currentFunction.getReturnType();
             String actualType = getType(valueTemp);
             
-            if (!actualType.equals(expectedType) && !valueTemp.equals("void")) {
-                String convertedTemp = generateTypeConversion(valueTemp, actualType, expectedType);
+            if (!actualType.equals(expectedType)) {
+                Operand convertedTemp = generateTypeConversion(valueTemp, actualType, expectedType);
                 currentFunction.addInstruction(new Return(convertedTemp));
                 System.out.println("        [INSTR] Added RETURN with converted value: " + convertedTemp);
             } else {
@@ -269,17 +264,27 @@ public class IRGenerator {
         }
     }
     
-    private String generateExpression(Expression expression) {
+    // Like generateExpression, for contexts that need a value
+    private Operand generateValueExpression(Expression expression) {
+        Operand value = generateExpression(expression);
+        if (value == null) {
+            throw new RuntimeException("Void value used in expression at line " + expression.getLine());
+        }
+        return value;
+    }
+    
+    // Returns the operand holding the expression's value, or null for a void call
+    private Operand generateExpression(Expression expression) {
         System.out.println("          [EXPR] Generating expression of type: " + expression.getClass().getSimpleName());
         
         if (expression instanceof BinaryExpression) {
             return generateBinaryExpression((BinaryExpression) expression);
         } else if (expression instanceof Assignment) {
             return generateAssignment((Assignment) expression);
-        } else if (expression instanceof Variable) {
-            String varName = ((Variable) expression).getName();
-            System.out.println("          [VAR] Variable reference: " + varName + " (type: " + getType(varName) + ")");
-            return varName;
+        } else if (expression instanceof parser.AST.Variable) {
+            Variable variable = currentFunction.getVariable(((parser.AST.Variable) expression).getName());
+            System.out.println("          [VAR] Variable reference: " + variable + " (type: " + getType(variable) + ")");
+            return variable;
         } else if (expression instanceof Literal) {
             return generateLiteral((Literal) expression);
         } else if (expression instanceof Call) {
@@ -290,15 +295,15 @@ public class IRGenerator {
         }
     }
     
-    private String generateBinaryExpression(BinaryExpression expression) {
+    private Operand generateBinaryExpression(BinaryExpression expression) {
         String operator = expression.getOperator();
         System.out.println("          [BINARY] Generating binary expression with operator: " + operator);
         
         System.out.println("          [BINARY] Generating left operand");
-        String left = generateExpression(expression.getLeft());
+        Operand left = generateValueExpression(expression.getLeft());
         
         System.out.println("          [BINARY] Generating right operand");
-        String right = generateExpression(expression.getRight());
+        Operand right = generateValueExpression(expression.getRight());
         
         // Get operand types for proper result type determination
         String leftType = getType(left);
@@ -319,7 +324,7 @@ public class IRGenerator {
             System.out.println("          [BINARY] Converted right operand to " + resultType + ": " + right);
         }
         
-        String result = generateTempVar(resultType);
+        Temp result = generateTempVar(resultType);
         System.out.println("          [TEMP] Created temporary variable for sum/operation: " + result + " of type " + resultType);
         
         currentFunction.addInstruction(new BinaryOperation(result, left, operator, right));
@@ -333,19 +338,19 @@ public class IRGenerator {
         return result;
     }
     
-    private String generateAssignment(Assignment assignment) {
-        String variable = assignment.getVariable();
+    private Operand generateAssignment(Assignment assignment) {
+        Variable variable = currentFunction.getVariable(assignment.getVariable());
         System.out.println("          [ASSIGN] Generating assignment to variable: " + variable);
         
         System.out.println("          [ASSIGN] Generating value expression");
-        String value = generateExpression(assignment.getValue());
+        Operand value = generateValueExpression(assignment.getValue());
         
         // Type checking and conversion
         String varType = getType(variable);
         String valueType = getType(value);
         
-        if (!varType.equals(valueType) && !value.equals("void")) {
-            String convertedValue = generateTypeConversion(value, valueType, varType);
+        if (!varType.equals(valueType)) {
+            Operand convertedValue = generateTypeConversion(value, valueType, varType);
             currentFunction.addInstruction(new Copy(variable, convertedValue));
             System.out.println("          [INSTR] Added COPY with conversion: " + variable + " = " + convertedValue);
             return variable;
@@ -356,30 +361,32 @@ public class IRGenerator {
         }
     }
     
-    private String generateLiteral(Literal literal) {
+    private Operand generateLiteral(Literal literal) {
         String type = literal.getType();
         Object value = literal.getValue();
         
         System.out.println("          [LITERAL] Processing literal of type '" + type + "' with value: " + value);
         
         if (type.equals("string")) {
-            // Handle string literals by assigning them a unique identifier
-            String stringId = "str" + stringLiterals.size();
-            stringLiterals.put(stringId, (String) value);
+            // Handle string literals by interning them in the module string pool
+            StringRef stringId = ir.addString((String) value);
             System.out.println("          [STRING] Created string literal: " + stringId + " = \"" + value + "\"");
             return stringId;
         } else {
             // For numeric literals, create a temporary variable
-            String temp = generateTempVar(type);
-            currentFunction.addInstruction(new Copy(temp, value.toString()));
+            Temp temp = generateTempVar(type);
+            Operand constant = type.equals("float")
+                    ? new FloatConst(((Number) value).floatValue())
+                    : new IntConst(((Number) value).intValue());
+            currentFunction.addInstruction(new Copy(temp, constant));
             System.out.println("          [LITERAL] Created temporary for " + type + " literal: " + temp + " = " + value);
             return temp;
         }
     }
     
-    private String generateCall(Call call) {
+    private Operand generateCall(Call call) {
         String functionName = call.getName();
-        List<String> arguments = new ArrayList<>();
+        List<Operand> arguments = new ArrayList<>();
         
         System.out.println("          [CALL] Generating call to function: " + functionName);
         System.out.println("          [CALL] Processing " + call.getArguments().size() + " arguments");
@@ -387,7 +394,7 @@ public class IRGenerator {
         // Generate code for each argument
         for (int i = 0; i < call.getArguments().size(); i++) {
             System.out.println("          [ARG-" + (i+1) + "] Generating argument expression");
-            String argTemp = generateExpression(call.getArguments().get(i));
+            Operand argTemp = generateValueExpression(call.getArguments().get(i));
             arguments.add(argTemp);
             System.out.println("          [ARG-" + (i+1) + "] Argument value: " + argTemp);
         }
@@ -395,7 +402,7 @@ public class IRGenerator {
         // Determine if the function has a return value
         String returnType = getFunctionReturnType(functionName);
         boolean hasReturnValue = !"void".equals(returnType);
-        String result = null;
+        Temp result = null;
         
         if (hasReturnValue) {
             result = generateTempVar(returnType);
@@ -407,39 +414,25 @@ public class IRGenerator {
         currentFunction.addInstruction(new FunctionCall(result, functionName, arguments));
         System.out.println("          [INSTR] Added CALL: " + 
                           (result != null ? result + " = " : "") + 
-                          functionName + "(" + String.join(", ", arguments) + ")");
+                          functionName + "(" + arguments + ")");
         
-        return result != null ? result : "void";
+        return result;
     }
     
-    private String getType(String variable) {
-        // Check if it's a temporary variable
-        if (variable.startsWith("t") && variable.matches("t\\d+")) {
-            // Look up in function's temporary variable registry
-            if (currentFunction.getVariables().containsKey(variable)) {
-                return currentFunction.getVariables().get(variable);
-            }
-        }
-        
-        // Check if it's a string literal
-        if (variable.startsWith("str")) {
-            return "string";
-        } 
-        
-        // Check if it's a numeric literal
-        if (variable.matches("-?\\d+")) {
-            return "int";
-        } else if (variable.matches("-?\\d+\\.\\d+")) {
-            return "float";
+    private String getType(Operand operand) {
+        // Constants and string-pool entries carry their type
+        if (!(operand instanceof Variable variable)) {
+            return currentFunction.getType(operand);
         }
         
-        // Check in local function variables
-        if (currentFunction.getVariables().containsKey(variable)) {
-            return currentFunction.getVariables().get(variable);
+        // Check in local function variables (including temporaries)
+        String type = currentFunction.getType(variable);
+        if (type != null) {
+            return type;
         }
         
         // Check in global symbol table
-        String funcVarKey = currentFunction.getName() + "_" + variable;
+        String funcVarKey = currentFunction.getName() + "_" + variable.name();
         if (symbolTable.containsKey(funcVarKey)) {
             return symbolTable.get(funcVarKey);
         }
@@ -463,14 +456,15 @@ public class IRGenerator {
         return "int";
     }
     
-    private String generateLabel() {
-        String label = "L" + labelCounter++;
+    private Label generateLabel() {
+        Label label = currentFunction.newLabel();
+        labelCounter++;
         System.out.println("          [LABEL] Generated new label: " + label);
         return label;
     }
     
-    private String generateTempVar(String type) {
-        String temp = currentFunction.generateTemp(type);
+    private Temp generateTempVar(String type) {
+        Temp temp = currentFunction.generateTemp(type);
         tempVarCounter++;
         System.out.println("          [TEMP-VAR] Generated temporary variable: " + temp + " of type " + type);
         return temp;
@@ -502,29 +496,30 @@ public class IRGenerator {
                operator.equals("*") || operator.equals("/");
     }
     
-    private String generateTypeConversion(String variable, String fromType, String toType) {
+    private Operand generateTypeConversion(Operand variable, String fromType, String toType) {
         if (fromType.equals(toType)) {
             return variable; // No conversion needed
         }
         
-        String temp = generateTempVar(toType);
+        Temp temp = generateTempVar(toType);
         // Add a conversion instruction (this would be handled by the backend)
-        currentFunction.addInstruction(new Copy(temp, "convert(" + variable + ", " + toType + ")"));
-        System.out.println("          [CONVERT] Added type conversion: " + temp + " = convert(" + variable + ", " + toType + ")");
+        String cast = "(" + toType + ")";
+        currentFunction.addInstruction(new UnaryOperation(temp, cast, variable));
+        System.out.println("          [CONVERT] Added type conversion: " + temp + " = " + cast + " " + variable);
         
         return temp;
     }
     
-    private String getDefaultValue(String type) {
+    private Operand getDefaultValue(String type) {
         switch (type) {
             case "int":
-                return "0";
+                return new IntConst(0);
             case "float":
-                return "0.0";
+                return new FloatConst(0.0f);
             case "string":
-                return "\"\"";
+                return ir.addString("");
             default:
-                return "0";
+                return new IntConst(0);
         }
     }
 }
\ No newline at end of file
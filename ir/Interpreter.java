@@ -0,0 +1,631 @@
+package ir;
+
+import ir.Operand.*;
+import ir.ThreeAddressCode.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Executes three-address code in-process. On its first call each function is packed
+// (see PackedFunction) and compiled from the packed records into a flat int[] of
+// fixed-size records whose operands are slot indices into a long[] frame; constants live
+// in preinitialized frame slots and labels are resolved to code offsets, so the dispatch
+// loop does no lookups. ints are stored sign-extended, floats as their
+// raw bits and strings as string-pool indices.
+//
+// The module is compiled as it is at the first call of each function; create a new
+// Interpreter after changing the IR.
+public class Interpreter {
+    // Opcodes; every record is [opcode, a, b, c]
+    private static final int MOV = 0;
+    private static final int IADD = 1, ISUB = 2, IMUL = 3, IDIV = 4;
+    private static final int FADD = 5, FSUB = 6, FMUL = 7, FDIV = 8;
+    private static final int IEQ = 9, INE = 10, ILT = 11, IGT = 12, ILE = 13, IGE = 14;
+    private static final int FEQ = 15, FNE = 16, FLT = 17, FGT = 18, FLE = 19, FGE = 20;
+    private static final int AND = 21, OR = 22;
+    private static final int INEG = 23, FNEG = 24, NOT = 25, I2F = 26, F2I = 27;
+    private static final int CALL = 28;     // a = result slot or -1, b = callee, c = argument table offset
+    private static final int JMP = 29;      // a = target
+    private static final int BR = 30;       // a = condition, b = true target, c = false target
+    private static final int RET = 31;      // a = value slot or -1
+    private static final int SEL = 32;      // a = result, b = condition, c = table offset of the two value slots
+
+    private static final int STRIDE = 4;
+    public static final int DEFAULT_MAX_DEPTH = 10_000;
+
+    private final ThreeAddressCode module;
+    private final Map<String, Integer> functionIndex;
+    private final List<Function> functions;
+    private final CompiledFunction[] compiled;
+    private long fuel;
+    private int maxDepth;
+
+    public static class ExecutionException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        public ExecutionException(String message) {
+            super(message);
+        }
+    }
+
+    // Thrown when the step budget set with setFuel runs out
+    public static class OutOfFuelException extends ExecutionException {
+        private static final long serialVersionUID = 1L;
+
+        public OutOfFuelException() {
+            super("Execution step limit exceeded");
+        }
+    }
+
+    private static class CompiledFunction {
+        private final String name;
+        private final int parameterCount;
+        private final int[] code;
+        private final int[] table;     // call arguments: count, then slots; select value slots
+        private final long[] frame;    // initial frame: constants in their slots, zero elsewhere
+
+        CompiledFunction(String name, int parameterCount, int[] code, int[] table, long[] frame) {
+            this.name = name;
+            this.parameterCount = parameterCount;
+            this.code = code;
+            this.table = table;
+            this.frame = frame;
+        }
+    }
+
+    public Interpreter(ThreeAddressCode module) {
+        this.module = module;
+        this.functionIndex = new HashMap<>();
+        this.functions = new ArrayList<>(module.getFunctions());
+        for (int i = 0; i < functions.size(); i++) {
+            functionIndex.put(functions.get(i).getName(), i);
+        }
+        this.compiled = new CompiledFunction[functions.size()];
+        this.fuel = Long.MAX_VALUE;
+        this.maxDepth = DEFAULT_MAX_DEPTH;
+    }
+
+    // Budget of branches and calls for the following invocations; each taken jump, branch
+    // and call costs one step, so any non-terminating run is cut off
+    public void setFuel(long fuel) {
+        this.fuel = fuel;
+    }
+
+    public long getFuel() {
+        return fuel;
+    }
+
+    public void setMaxDepth(int maxDepth) {
+        this.maxDepth = maxDepth;
+    }
+
+    // Calls a function with Integer/Float arguments (missing trailing arguments are zero) and
+    // returns an Integer, Float, String or null for void functions
+    public Object invoke(String name, Object... arguments) {
+        Function function = lookup(name);
+        long[] raw = new long[arguments.length];
+        for (int i = 0; i < arguments.length; i++) {
+            raw[i] = toRaw(arguments[i]);
+        }
+        long result = invokeRaw(name, raw);
+        String type = function.getReturnType();
+        if ("void".equals(type)) {
+            return null;
+        }
+        return fromRaw(result, type);
+    }
+
+    // Calls a function with arguments and result in the raw frame encoding
+    public long invokeRaw(String name, long... arguments) {
+        lookup(name);
+        CompiledFunction function = compiled(functionIndex.get(name));
+        long[] frame = function.frame.clone();
+        System.arraycopy(arguments, 0, frame, 0, Math.min(arguments.length, function.parameterCount));
+        return execute(function, frame);
+    }
+
+    public Object fromRaw(long value, String type) {
+        return switch (type) {
+            case "float" -> Float.intBitsToFloat((int) value);
+            case "string", "String" -> module.getStrings().get((int) value).value();
+            default -> (int) value;
+        };
+    }
+
+    public static long toRaw(Object value) {
+        if (value instanceof Float f) {
+            return Float.floatToRawIntBits(f);
+        } else if (value instanceof Number n) {
+            return n.intValue();
+        }
+        throw new IllegalArgumentException("Unsupported argument " + value);
+    }
+
+    private Function lookup(String name) {
+        Integer index = functionIndex.get(name);
+        if (index == null) {
+            throw new ExecutionException("Unknown function " + name);
+        }
+        return functions.get(index);
+    }
+
+    private CompiledFunction compiled(int index) {
+        CompiledFunction function = compiled[index];
+        if (function == null) {
+            function = new Compiler(functions.get(index)).compile();
+            compiled[index] = function;
+        }
+        return function;
+    }
+
+    // ---------------------------------------------------------------- execution
+
+    // Runs a call to completion. Suspended callers are kept on explicit stacks rather than
+    // the Java stack, so recursion is bounded by maxDepth alone, not by the thread's stack.
+    private long execute(CompiledFunction function, long[] frame) {
+        if (maxDepth < 1) {
+            throw new ExecutionException("Call depth limit of " + maxDepth + " exceeded in " + function.name);
+        }
+        CompiledFunction[] callers = new CompiledFunction[16];
+        long[][] callerFrames = new long[16][];
+        int[] callSites = new int[16];    // pc of the CALL each caller waits at
+        int depth = 0;                    // number of suspended callers
+        int[] code = function.code;
+        int[] table = function.table;
+        long steps = fuel;
+        int pc = 0;
+        try {
+            while (true) {
+                int a = code[pc + 1];
+                int b = code[pc + 2];
+                int c = code[pc + 3];
+                switch (code[pc]) {
+                    case MOV -> frame[a] = frame[b];
+                    case IADD -> frame[a] = (int) frame[b] + (int) frame[c];
+                    case ISUB -> frame[a] = (int) frame[b] - (int) frame[c];
+                    case IMUL -> frame[a] = (int) frame[b] * (int) frame[c];
+                    case IDIV -> {
+                        int divisor = (int) frame[c];
+                        if (divisor == 0) {
+                            throw new ExecutionException("Division by zero in " + function.name);
+                        }
+                        frame[a] = (int) frame[b] / divisor;
+                    }
+                    case FADD -> frame[a] = floatBits(asFloat(frame[b]) + asFloat(frame[c]));
+                    case FSUB -> frame[a] = floatBits(asFloat(frame[b]) - asFloat(frame[c]));
+                    case FMUL -> frame[a] = floatBits(asFloat(frame[b]) * asFloat(frame[c]));
+                    case FDIV -> frame[a] = floatBits(asFloat(frame[b]) / asFloat(frame[c]));
+                    case IEQ -> frame[a] = (int) frame[b] == (int) frame[c] ? 1 : 0;
+                    case INE -> frame[a] = (int) frame[b] != (int) frame[c] ? 1 : 0;
+                    case ILT -> frame[a] = (int) frame[b] < (int) frame[c] ? 1 : 0;
+                    case IGT -> frame[a] = (int) frame[b] > (int) frame[c] ? 1 : 0;
+                    case ILE -> frame[a] = (int) frame[b] <= (int) frame[c] ? 1 : 0;
+                    case IGE -> frame[a] = (int) frame[b] >= (int) frame[c] ? 1 : 0;
+                    case FEQ -> frame[a] = asFloat(frame[b]) == asFloat(frame[c]) ? 1 : 0;
+                    case FNE -> frame[a] = asFloat(frame[b]) != asFloat(frame[c]) ? 1 : 0;
+                    case FLT -> frame[a] = asFloat(frame[b]) < asFloat(frame[c]) ? 1 : 0;
+                    case FGT -> frame[a] = asFloat(frame[b]) > asFloat(frame[c]) ? 1 : 0;
+                    case FLE -> frame[a] = asFloat(frame[b]) <= asFloat(frame[c]) ? 1 : 0;
+                    case FGE -> frame[a] = asFloat(frame[b]) >= asFloat(frame[c]) ? 1 : 0;
+                    case AND -> frame[a] = (int) frame[b] != 0 && (int) frame[c] != 0 ? 1 : 0;
+                    case OR -> frame[a] = (int) frame[b] != 0 || (int) frame[c] != 0 ? 1 : 0;
+                    case INEG -> frame[a] = -(int) frame[b];
+                    case FNEG -> frame[a] = floatBits(-asFloat(frame[b]));
+                    case NOT -> frame[a] = (int) frame[b] == 0 ? 1 : 0;
+                    case I2F -> frame[a] = floatBits((float) (int) frame[b]);
+                    case SEL -> frame[a] = frame[table[(int) frame[b] != 0 ? c : c + 1]];
+                    case F2I -> frame[a] = (int) asFloat(frame[b]);
+                    case CALL -> {
+                        if (--steps < 0) {
+                            throw new OutOfFuelException();
+                        }
+                        CompiledFunction callee = compiled(b);
+                        if (depth + 2 > maxDepth) {
+                            throw new ExecutionException("Call depth limit of " + maxDepth + " exceeded in "
+                                    + callee.name);
+                        }
+                        long[] calleeFrame = callee.frame.clone();
+                        int count = table[c];
+                        for (int i = 0; i < count && i < callee.parameterCount; i++) {
+                            calleeFrame[i] = frame[table[c + 1 + i]];
+                        }
+                        if (depth == callers.length) {
+                            callers = Arrays.copyOf(callers, depth * 2);
+                            callerFrames = Arrays.copyOf(callerFrames, depth * 2);
+                            callSites = Arrays.copyOf(callSites, depth * 2);
+                        }
+                        callers[depth] = function;
+                        callerFrames[depth] = frame;
+                        callSites[depth] = pc;
+                        depth++;
+                        function = callee;
+                        frame = calleeFrame;
+                        code = callee.code;
+                        table = callee.table;
+                        pc = 0;
+                        continue;
+                    }
+                    case JMP -> {
+                        if (--steps < 0) {
+                            throw new OutOfFuelException();
+                        }
+                        pc = a;
+                        continue;
+                    }
+                    case BR -> {
+                        if (--steps < 0) {
+                            throw new OutOfFuelException();
+                        }
+                        pc = (int) frame[a] != 0 ? b : c;
+                        continue;
+                    }
+                    case RET -> {
+                        long result = a >= 0 ? frame[a] : 0;
+                        if (depth == 0) {
+                            return result;
+                        }
+                        depth--;
+                        function = callers[depth];
+                        frame = callerFrames[depth];
+                        callers[depth] = null;
+                        callerFrames[depth] = null;
+                        code = function.code;
+                        table = function.table;
+                        pc = callSites[depth];
+                        if (code[pc + 1] >= 0) {
+                            frame[code[pc + 1]] = result;
+                        }
+                    }
+                    default -> throw new IllegalStateException("Bad opcode " + code[pc]);
+                }
+                pc += STRIDE;
+            }
+        } finally {
+            fuel = steps;
+        }
+    }
+
+    private static float asFloat(long bits) {
+        return Float.intBitsToFloat((int) bits);
+    }
+
+    private static long floatBits(float value) {
+        return Float.floatToRawIntBits(value);
+    }
+
+    // Value representations: 'f' for float bits, 's' for string-pool indices, 'i' otherwise
+    private static char kind(String type) {
+        if ("float".equals(type)) {
+            return 'f';
+        }
+        return "string".equals(type) || "String".equals(type) ? 's' : 'i';
+    }
+
+    // ---------------------------------------------------------------- compilation
+
+    // Compiles from the packed form: operands are already interned into slots and
+    // instructions are int records, so compilation is a few passes over int arrays
+    private class Compiler {
+        private final PackedFunction packed;
+        private final int[] frameSlots;     // packed slot -> frame slot, -1 until assigned
+        private final int[] aliases;        // packed slot sharing another packed slot's frame slot, or -1
+        private final int[] definitions;    // per packed slot
+        private final int[] uses;
+        private final int[] labelOffsets;   // packed label slot -> code offset
+        private final List<Long> initialValues;
+        private final List<Integer> fixupOffsets;   // code positions holding a jump target
+        private final List<Integer> fixupLabels;
+        private int[] code;
+        private int codeSize;
+        private int[] table;
+        private int tableSize;
+
+        Compiler(Function function) {
+            if (SSA.isInSSA(function)) {
+                throw new ExecutionException("Cannot interpret SSA form; destruct " + function.getName() + " first");
+            }
+            this.packed = PackedFunction.pack(function);
+            int slotCount = packed.slotCount();
+            this.frameSlots = new int[slotCount];
+            this.aliases = new int[slotCount];
+            this.definitions = new int[slotCount];
+            this.uses = new int[slotCount];
+            this.labelOffsets = new int[slotCount];
+            Arrays.fill(frameSlots, -1);
+            Arrays.fill(aliases, -1);
+            Arrays.fill(labelOffsets, -1);
+            this.initialValues = new ArrayList<>();
+            this.fixupOffsets = new ArrayList<>();
+            this.fixupLabels = new ArrayList<>();
+            this.code = new int[STRIDE * 16];
+            this.table = new int[16];
+        }
+
+        CompiledFunction compile() {
+            for (int i = 0; i < packed.parameterCount(); i++) {
+                slot(packed.parameter(i));
+            }
+            countReferences();
+            // Temporaries holding a single constant share the constant's slot
+            for (int i = 0; i < packed.size(); i++) {
+                if (packed.opcode(i) == PackedFunction.OP_COPY) {
+                    int destination = packed.operand(i, 0);
+                    int source = packed.operand(i, 1);
+                    if (packed.slotKind(destination) == PackedFunction.KIND_TEMP && !isVariable(source)
+                            && definitions[destination] == 1) {
+                        aliases[destination] = source;
+                    }
+                }
+            }
+            for (int i = 0; i < packed.size(); i++) {
+                if (packed.opcode(i) == PackedFunction.OP_LABEL) {
+                    labelOffsets[packed.operand(i, 0)] = codeSize;
+                    continue;
+                }
+                // `t = op; x = t` with no other use of t computes straight into x, unless
+                // t already has a slot as the target of an earlier alias
+                int defined = definition(i);
+                if (defined != PackedFunction.NONE && packed.slotKind(defined) == PackedFunction.KIND_TEMP
+                        && frameSlots[defined] < 0 && i + 1 < packed.size()
+                        && packed.opcode(i + 1) == PackedFunction.OP_COPY && packed.operand(i + 1, 1) == defined
+                        && uses[defined] == 1 && definitions[defined] == 1) {
+                    aliases[defined] = packed.operand(i + 1, 0);
+                }
+                compile(i);
+            }
+            for (int i = 0; i < fixupOffsets.size(); i++) {
+                int target = labelOffsets[fixupLabels.get(i)];
+                if (target < 0) {
+                    throw new ExecutionException("Jump to undefined label " + packed.slotName(fixupLabels.get(i)));
+                }
+                code[fixupOffsets.get(i)] = target;
+            }
+            long[] frame = new long[initialValues.size()];
+            for (int i = 0; i < frame.length; i++) {
+                frame[i] = initialValues.get(i);
+            }
+            int[] finalCode = new int[codeSize];
+            System.arraycopy(code, 0, finalCode, 0, codeSize);
+            int[] finalTable = new int[tableSize];
+            System.arraycopy(table, 0, finalTable, 0, tableSize);
+            return new CompiledFunction(packed.getName(), packed.parameterCount(), finalCode, finalTable, frame);
+        }
+
+        // Definition and read counts of every variable slot
+        private void countReferences() {
+            for (int i = 0; i < packed.size(); i++) {
+                switch (packed.opcode(i)) {
+                    case PackedFunction.OP_BINARY -> {
+                        definitions[packed.operand(i, 0)]++;
+                        uses[packed.operand(i, 1)]++;
+                        uses[packed.operand(i, 2)]++;
+                    }
+                    case PackedFunction.OP_UNARY, PackedFunction.OP_COPY -> {
+                        definitions[packed.operand(i, 0)]++;
+                        uses[packed.operand(i, 1)]++;
+                    }
+                    case PackedFunction.OP_SELECT -> {
+                        definitions[packed.operand(i, 0)]++;
+                        uses[packed.operand(i, 1)]++;
+                        uses[packed.selectValue(i, true)]++;
+                        uses[packed.selectValue(i, false)]++;
+                    }
+                    case PackedFunction.OP_CALL -> {
+                        if (packed.operand(i, 0) != PackedFunction.NONE) {
+                            definitions[packed.operand(i, 0)]++;
+                        }
+                        for (int k = 0; k < packed.argumentCount(i); k++) {
+                            uses[packed.argument(i, k)]++;
+                        }
+                    }
+                    case PackedFunction.OP_COND_JUMP -> uses[packed.operand(i, 1)]++;
+                    case PackedFunction.OP_RETURN -> {
+                        if (packed.operand(i, 0) != PackedFunction.NONE) {
+                            uses[packed.operand(i, 0)]++;
+                        }
+                    }
+                    default -> {
+                    }
+                }
+            }
+        }
+
+        // Slot the instruction assigns, or NONE
+        private int definition(int i) {
+            return switch (packed.opcode(i)) {
+                case PackedFunction.OP_BINARY, PackedFunction.OP_UNARY, PackedFunction.OP_COPY,
+                        PackedFunction.OP_SELECT, PackedFunction.OP_CALL -> packed.operand(i, 0);
+                default -> PackedFunction.NONE;
+            };
+        }
+
+        private void compile(int i) {
+            switch (packed.opcode(i)) {
+                case PackedFunction.OP_COPY -> {
+                    int destination = slot(packed.operand(i, 0));
+                    int source = slot(packed.operand(i, 1));
+                    if (destination != source) {
+                        emit(MOV, destination, source, 0);
+                    }
+                }
+                case PackedFunction.OP_BINARY -> compileBinary(i);
+                case PackedFunction.OP_UNARY -> {
+                    boolean isFloat = isFloat(packed.operand(i, 1));
+                    int opcode = switch (packed.operator(i)) {
+                        case "-" -> isFloat ? FNEG : INEG;
+                        case "!" -> NOT;
+                        case "(float)" -> isFloat ? MOV : I2F;
+                        case "(int)" -> isFloat ? F2I : MOV;
+                        default -> {
+                            // Any other cast between types of one kind, such as a string
+                            // literal to String, leaves the value as it is
+                            String operator = packed.operator(i);
+                            if (!operator.startsWith("(") || kind(operator.substring(1, operator.length() - 1))
+                                    != kind(packed.slotType(packed.operand(i, 1)))) {
+                                throw new ExecutionException("Unsupported unary operator " + operator);
+                            }
+                            yield MOV;
+                        }
+                    };
+                    emit(opcode, slot(packed.operand(i, 0)), slot(packed.operand(i, 1)), 0);
+                }
+                case PackedFunction.OP_SELECT -> {
+                    int offset = tableSize;
+                    addToTable(slot(packed.selectValue(i, true)));
+                    addToTable(slot(packed.selectValue(i, false)));
+                    emit(SEL, slot(packed.operand(i, 0)), slot(packed.operand(i, 1)), offset);
+                }
+                case PackedFunction.OP_CALL -> {
+                    String name = packed.slotName(packed.operand(i, 1));
+                    Integer callee = functionIndex.get(name);
+                    if (callee == null) {
+                        throw new ExecutionException("Call to unknown function " + name + " in " + packed.getName());
+                    }
+                    // Arguments are converted to the parameter types, as the JVM does
+                    List<String> parameters = functions.get(callee).getParameters();
+                    int[] arguments = new int[packed.argumentCount(i)];
+                    for (int k = 0; k < arguments.length; k++) {
+                        int argument = packed.argument(i, k);
+                        arguments[k] = slot(argument);
+                        if (k < parameters.size()) {
+                            String type = functions.get(callee).getType(new Param(parameters.get(k)));
+                            arguments[k] = convert(arguments[k], packed.slotType(argument), type);
+                        }
+                    }
+                    int offset = tableSize;
+                    addToTable(arguments.length);
+                    for (int argument : arguments) {
+                        addToTable(argument);
+                    }
+                    int result = packed.operand(i, 0);
+                    emit(CALL, result == PackedFunction.NONE ? -1 : slot(result), callee, offset);
+                }
+                case PackedFunction.OP_JUMP -> {
+                    emit(JMP, 0, 0, 0);
+                    fixup(codeSize - STRIDE + 1, packed.operand(i, 0));
+                }
+                case PackedFunction.OP_COND_JUMP -> {
+                    emit(BR, slot(packed.operand(i, 1)), 0, 0);
+                    fixup(codeSize - STRIDE + 2, packed.operand(i, 0));
+                    fixup(codeSize - STRIDE + 3, packed.falseTarget(i));
+                }
+                case PackedFunction.OP_RETURN -> {
+                    int value = packed.operand(i, 0);
+                    emit(RET, value == PackedFunction.NONE ? -1 : slot(value), 0, 0);
+                }
+                default -> throw new ExecutionException("Unsupported instruction " + packed.opcode(i)
+                        + " in " + packed.getName());
+            }
+        }
+
+        private void compileBinary(int i) {
+            int result = slot(packed.operand(i, 0));
+            int left = slot(packed.operand(i, 1));
+            int right = slot(packed.operand(i, 2));
+            boolean leftFloat = isFloat(packed.operand(i, 1));
+            boolean rightFloat = isFloat(packed.operand(i, 2));
+            boolean isFloat = leftFloat || rightFloat;
+            // Comparisons of mixed operands are not converted by the generator
+            if (isFloat && !leftFloat) {
+                left = widen(left);
+            } else if (isFloat && !rightFloat) {
+                right = widen(right);
+            }
+            int opcode = switch (packed.operator(i)) {
+                case "+" -> isFloat ? FADD : IADD;
+                case "-" -> isFloat ? FSUB : ISUB;
+                case "*" -> isFloat ? FMUL : IMUL;
+                case "/" -> isFloat ? FDIV : IDIV;
+                case "==" -> isFloat ? FEQ : IEQ;
+                case "!=" -> isFloat ? FNE : INE;
+                case "<" -> isFloat ? FLT : ILT;
+                case ">" -> isFloat ? FGT : IGT;
+                case "<=" -> isFloat ? FLE : ILE;
+                case ">=" -> isFloat ? FGE : IGE;
+                case "&&" -> AND;
+                case "||" -> OR;
+                default -> throw new ExecutionException("Unsupported operator " + packed.operator(i));
+            };
+            emit(opcode, result, left, right);
+        }
+
+        // Converts an int slot to float into a scratch slot
+        private int widen(int slot) {
+            int scratch = newSlot(0);
+            emit(I2F, scratch, slot, 0);
+            return scratch;
+        }
+
+        // Converts between int and float into a scratch slot; any other value is passed as is
+        private int convert(int slot, String from, String to) {
+            if ("float".equals(to) && "int".equals(from)) {
+                return widen(slot);
+            } else if ("int".equals(to) && "float".equals(from)) {
+                int scratch = newSlot(0);
+                emit(F2I, scratch, slot, 0);
+                return scratch;
+            }
+            return slot;
+        }
+
+        private boolean isFloat(int slot) {
+            return "float".equals(packed.slotType(slot));
+        }
+
+        private boolean isVariable(int slot) {
+            byte kind = packed.slotKind(slot);
+            return kind == PackedFunction.KIND_TEMP || kind == PackedFunction.KIND_LOCAL
+                    || kind == PackedFunction.KIND_PARAM;
+        }
+
+        // Frame slot of a packed operand slot
+        private int slot(int operand) {
+            if (aliases[operand] >= 0) {
+                return slot(aliases[operand]);
+            }
+            if (frameSlots[operand] < 0) {
+                long initial = switch (packed.slotKind(operand)) {
+                    case PackedFunction.KIND_INT, PackedFunction.KIND_FLOAT, PackedFunction.KIND_STRING ->
+                            packed.slotValue(operand);
+                    default -> 0;
+                };
+                frameSlots[operand] = newSlot(initial);
+            }
+            return frameSlots[operand];
+        }
+
+        private int newSlot(long initial) {
+            initialValues.add(initial);
+            return initialValues.size() - 1;
+        }
+
+        private void emit(int opcode, int a, int b, int c) {
+            if (codeSize + STRIDE > code.length) {
+                int[] grown = new int[code.length * 2];
+                System.arraycopy(code, 0, grown, 0, codeSize);
+                code = grown;
+            }
+            code[codeSize++] = opcode;
+            code[codeSize++] = a;
+            code[codeSize++] = b;
+            code[codeSize++] = c;
+        }
+
+        private void addToTable(int value) {
+            if (tableSize == table.length) {
+                int[] grown = new int[table.length * 2];
+                System.arraycopy(table, 0, grown, 0, tableSize);
+                table = grown;
+            }
+            table[tableSize++] = value;
+        }
+
+        private void fixup(int codeIndex, int label) {
+            fixupOffsets.add(codeIndex);
+            fixupLabels.add(label);
+        }
+    }
+}
@@ -0,0 +1,189 @@
+package ir;
+
+import ir.ThreeAddressCode.*;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// Loop nest forest of a function. Every back edge (an edge whose target dominates its
+// source) defines a natural loop; loops sharing a header are merged, and loops are
+// nested by containment.
+public class LoopInfo {
+    private final List<Loop> topLevelLoops;
+    private final List<Loop> allLoops;           // inner loops before the loops containing them
+    private final Map<BasicBlock, Loop> innermostLoop;
+
+    public static class Loop {
+        private final BasicBlock header;
+        private final Set<BasicBlock> blocks;
+        private final List<BasicBlock> latches;
+        private final List<Loop> children;
+        private Loop parent;
+
+        private Loop(BasicBlock header) {
+            this.header = header;
+            this.blocks = new LinkedHashSet<>();
+            this.latches = new ArrayList<>();
+            this.children = new ArrayList<>();
+        }
+
+        public BasicBlock getHeader() {
+            return header;
+        }
+
+        // Includes the blocks of nested loops
+        public Set<BasicBlock> getBlocks() {
+            return Collections.unmodifiableSet(blocks);
+        }
+
+        public boolean contains(BasicBlock block) {
+            return blocks.contains(block);
+        }
+
+        // Blocks with a back edge to the header
+        public List<BasicBlock> getLatches() {
+            return Collections.unmodifiableList(latches);
+        }
+
+        public Loop getParent() {
+            return parent;
+        }
+
+        public List<Loop> getChildren() {
+            return Collections.unmodifiableList(children);
+        }
+
+        public int getDepth() {
+            int depth = 1;
+            for (Loop loop = parent; loop != null; loop = loop.parent) {
+                depth++;
+            }
+            return depth;
+        }
+
+        // Blocks outside the loop that are targets of edges leaving it
+        public List<BasicBlock> getExitBlocks() {
+            Set<BasicBlock> exits = new LinkedHashSet<>();
+            for (BasicBlock block : blocks) {
+                for (BasicBlock successor : block.getSuccessors()) {
+                    if (!blocks.contains(successor)) {
+                        exits.add(successor);
+                    }
+                }
+            }
+            return new ArrayList<>(exits);
+        }
+
+        // The unique predecessor of the header from outside the loop whose only
+        // successor is the header, or null if there is none
+        public BasicBlock getPreheader() {
+            BasicBlock candidate = null;
+            for (BasicBlock pred : header.getPredecessors()) {
+                if (blocks.contains(pred)) {
+                    continue;
+                }
+                if (candidate != null) {
+                    return null;
+                }
+                candidate = pred;
+            }
+            if (candidate == null || candidate.getSuccessors().size() != 1) {
+                return null;
+            }
+            return candidate;
+        }
+
+        @Override
+        public String toString() {
+            return "loop(" + header.getLabel() + ", " + blocks.size() + " blocks, depth " + getDepth() + ")";
+        }
+    }
+
+    public LoopInfo(DominatorTree dominators) {
+        this.topLevelLoops = new ArrayList<>();
+        this.allLoops = new ArrayList<>();
+        this.innermostLoop = new HashMap<>();
+
+        // Visit headers in postorder so inner loops are discovered before outer ones
+        List<BasicBlock> postOrder = new ArrayList<>(dominators.getReversePostOrder());
+        Collections.reverse(postOrder);
+        for (BasicBlock header : postOrder) {
+            Loop loop = null;
+            for (BasicBlock pred : header.getPredecessors()) {
+                if (dominators.dominates(header, pred)) {
+                    if (loop == null) {
+                        loop = new Loop(header);
+                    }
+                    loop.latches.add(pred);
+                }
+            }
+            if (loop != null) {
+                discoverBlocks(loop, dominators);
+                allLoops.add(loop);
+            }
+        }
+
+        // Inner loops come first in allLoops, so the first loop claiming a block is its innermost
+        for (Loop loop : allLoops) {
+            for (BasicBlock block : loop.blocks) {
+                innermostLoop.putIfAbsent(block, loop);
+            }
+        }
+        // Enclosing loops follow their inner loops, so the first later loop that
+        // contains the header is the parent
+        for (int i = 0; i < allLoops.size(); i++) {
+            Loop loop = allLoops.get(i);
+            Loop parent = null;
+            for (int j = i + 1; j < allLoops.size() && parent == null; j++) {
+                if (allLoops.get(j).blocks.contains(loop.header)) {
+                    parent = allLoops.get(j);
+                }
+            }
+            loop.parent = parent;
+            if (parent != null) {
+                parent.children.add(loop);
+            } else {
+                topLevelLoops.add(loop);
+            }
+        }
+    }
+
+    // Backward walk from the latches to the header
+    private void discoverBlocks(Loop loop, DominatorTree dominators) {
+        loop.blocks.add(loop.header);
+        Deque<BasicBlock> worklist = new ArrayDeque<>(loop.latches);
+        while (!worklist.isEmpty()) {
+            BasicBlock block = worklist.pop();
+            if (!dominators.isReachable(block) || !loop.blocks.add(block)) {
+                continue;
+            }
+            worklist.addAll(block.getPredecessors());
+        }
+    }
+
+    public List<Loop> getTopLevelLoops() {
+        return Collections.unmodifiableList(topLevelLoops);
+    }
+
+    // Every loop, innermost loops first
+    public List<Loop> getLoops() {
+        return Collections.unmodifiableList(allLoops);
+    }
+
+    // Innermost loop containing the block, or null
+    public Loop getLoopFor(BasicBlock block) {
+        return innermostLoop.get(block);
+    }
+
+    public int getLoopDepth(BasicBlock block) {
+        Loop loop = innermostLoop.get(block);
+        return loop == null ? 0 : loop.getDepth();
+    }
+}
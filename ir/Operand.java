@@ -0,0 +1,71 @@
+package ir;
+
+// Operands of three-address instructions. What an operand is (temporary, named variable,
+// constant, string-pool entry, label) is decided once, when the IR is generated, so passes
+// classify operands with a type test instead of inspecting their text.
+public sealed interface Operand
+        permits Operand.Variable, Operand.Constant, Operand.StringRef, Operand.Label {
+
+    // Anything that names a stack slot: temporaries, locals and parameters
+    sealed interface Variable extends Operand permits Temp, Local, Param {
+        String name();
+    }
+
+    sealed interface Constant extends Operand permits IntConst, FloatConst {
+    }
+
+    record Temp(int id) implements Variable {
+        @Override
+        public String name() {
+            return "t" + id;
+        }
+
+        @Override
+        public String toString() {
+            return name();
+        }
+    }
+
+    record Local(String name) implements Variable {
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+
+    record Param(String name) implements Variable {
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+
+    record IntConst(int value) implements Constant {
+        @Override
+        public String toString() {
+            return Integer.toString(value);
+        }
+    }
+
+    record FloatConst(float value) implements Constant {
+        @Override
+        public String toString() {
+            return Float.toString(value);
+        }
+    }
+
+    // Entry `index` of the module string pool
+    record StringRef(int index, String value) implements Operand {
+        @Override
+        public String toString() {
+            return "str" + index;
+        }
+    }
+
+    record Label(String name) implements Operand {
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+}
@@ -0,0 +1,418 @@
+package ir;
+
+import ir.Operand.*;
+import ir.ThreeAddressCode.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Compact encoding of a Function body. Every distinct operand is interned once into a
+// per-function operand table and instructions refer to it by int slot, so a body is a
+// handful of primitive arrays instead of one object (plus strings) per instruction.
+// The interpreter compiles functions from this form.
+//
+// Instruction layout in `code`, STRIDE ints per instruction:
+//   [0] opcode | (operator << 8), the operator being an index into `operators` plus one;
+//       an OP_LABEL record starts each basic block
+//   [1] result / destination / jump target / true target / return value slot
+//   [2] left / source / condition / callee slot
+//   [3] right slot, or an offset into `arguments` for calls (count, then argument slots),
+//       conditional jumps (false target slot) and selects (true and false value slots)
+// Unused fields are NONE.
+public class PackedFunction {
+    public static final int STRIDE = 4;
+    public static final int NONE = -1;
+
+    // Opcodes
+    public static final byte OP_BINARY = 0;
+    public static final byte OP_UNARY = 1;
+    public static final byte OP_COPY = 2;
+    public static final byte OP_CALL = 3;
+    public static final byte OP_JUMP = 4;
+    public static final byte OP_COND_JUMP = 5;
+    public static final byte OP_RETURN = 6;
+    public static final byte OP_LABEL = 7;
+    public static final byte OP_SELECT = 8;
+
+    // Operand kinds
+    public static final byte KIND_TEMP = 0;
+    public static final byte KIND_LOCAL = 1;
+    public static final byte KIND_PARAM = 2;
+    public static final byte KIND_INT = 3;
+    public static final byte KIND_FLOAT = 4;
+    public static final byte KIND_STRING = 5;
+    public static final byte KIND_LABEL = 6;
+    public static final byte KIND_FUNCTION = 7;
+
+    private final String name;
+    private final String returnType;
+    private final int[] parameters;     // operand slots, in declaration order
+    private final String[] variableNames;
+    private final String[] variableTypes;
+    private final int tempCounter;
+    private final int labelCounter;
+
+    private final int[] code;
+    private final int size;
+    private final int[] arguments;
+    private final String[] operators;   // distinct operators, casts included, in first-use order
+
+    private final byte[] slotKinds;
+    private final long[] slotValues;    // int value, float bits, temp number or string index
+    private final String[] slotNames;   // name or string value, null for temps and constants
+    private final String[] slotTypes;   // as Function.getType, null for labels and callees
+    private final int slotCount;
+
+    private PackedFunction(Encoder encoder, Function function) {
+        this.name = function.getName();
+        this.returnType = function.getReturnType();
+        this.parameters = encoder.parameters;
+        this.variableNames = encoder.variableNames;
+        this.variableTypes = encoder.variableTypes;
+        this.tempCounter = function.getTempCounter();
+        this.labelCounter = function.getLabelCounter();
+        this.code = Arrays.copyOf(encoder.code, encoder.size * STRIDE);
+        this.size = encoder.size;
+        this.arguments = Arrays.copyOf(encoder.arguments, encoder.argumentCount);
+        this.operators = encoder.operators.toArray(new String[0]);
+        this.slotKinds = Arrays.copyOf(encoder.slotKinds, encoder.slotCount);
+        this.slotValues = Arrays.copyOf(encoder.slotValues, encoder.slotCount);
+        this.slotNames = Arrays.copyOf(encoder.slotNames, encoder.slotCount);
+        this.slotTypes = Arrays.copyOf(encoder.slotTypes, encoder.slotCount);
+        this.slotCount = encoder.slotCount;
+    }
+
+    public static PackedFunction pack(Function function) {
+        Encoder encoder = new Encoder(function);
+        encoder.encode();
+        return new PackedFunction(encoder, function);
+    }
+
+    public Function unpack() {
+        Function function = new Function(name, returnType);
+        for (int slot : parameters) {
+            String param = slotNames[slot];
+            function.addParameter(param, typeOf(param));
+        }
+        for (int i = 0; i < variableNames.length; i++) {
+            function.addVariable(variableNames[i], variableTypes[i]);
+        }
+        function.setTempCounter(tempCounter);
+
+        function.setLabelCounter(labelCounter);
+
+        for (int i = 0; i < size; i++) {
+            if (opcode(i) == OP_LABEL) {
+                function.placeLabel((Label) slotOperand(operand(i, 0)));
+            } else {
+                function.addInstruction(decode(i));
+            }
+        }
+        return function;
+    }
+
+    private Instruction decode(int i) {
+        switch (opcode(i)) {
+            case OP_BINARY:
+                return new BinaryOperation(variable(operand(i, 0)), slotOperand(operand(i, 1)),
+                        operator(i), slotOperand(operand(i, 2)));
+            case OP_UNARY:
+                return new UnaryOperation(variable(operand(i, 0)), operator(i), slotOperand(operand(i, 1)));
+            case OP_COPY:
+                return new Copy(variable(operand(i, 0)), slotOperand(operand(i, 1)));
+            case OP_CALL: {
+                int count = argumentCount(i);
+                List<Operand> args = new ArrayList<>(count);
+                for (int k = 0; k < count; k++) {
+                    args.add(slotOperand(argument(i, k)));
+                }
+                return new FunctionCall(variable(operand(i, 0)), slotNames[operand(i, 1)], args);
+            }
+            case OP_JUMP:
+                return new Jump((Label) slotOperand(operand(i, 0)));
+            case OP_COND_JUMP:
+                return new ConditionalJump(slotOperand(operand(i, 1)), (Label) slotOperand(operand(i, 0)),
+                        (Label) slotOperand(falseTarget(i)));
+            case OP_RETURN:
+                return new Return(slotOperand(operand(i, 0)));
+            case OP_SELECT:
+                return new Select(variable(operand(i, 0)), slotOperand(operand(i, 1)),
+                        slotOperand(selectValue(i, true)), slotOperand(selectValue(i, false)));
+            default:
+                throw new IllegalStateException("Unknown opcode " + opcode(i) + " at " + i);
+        }
+    }
+
+    private Variable variable(int slot) {
+        return (Variable) slotOperand(slot);
+    }
+
+    private String typeOf(String variable) {
+        for (int i = 0; i < variableNames.length; i++) {
+            if (variableNames[i].equals(variable)) {
+                return variableTypes[i];
+            }
+        }
+        return null;
+    }
+
+    // --- Streaming accessors ---
+
+    public String getName() {
+        return name;
+    }
+
+    public String getReturnType() {
+        return returnType;
+    }
+
+    public int parameterCount() {
+        return parameters.length;
+    }
+
+    public int parameter(int index) {
+        return parameters[index];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public byte opcode(int instruction) {
+        return (byte) (code[instruction * STRIDE] & 0xFF);
+    }
+
+    public String operator(int instruction) {
+        int index = code[instruction * STRIDE] >>> 8;
+        return index == 0 ? null : operators[index - 1];
+    }
+
+    // field 0..2 maps to words 1..3 of the instruction record
+    public int operand(int instruction, int field) {
+        return code[instruction * STRIDE + 1 + field];
+    }
+
+    public int argumentCount(int instruction) {
+        return arguments[operand(instruction, 2)];
+    }
+
+    public int argument(int instruction, int index) {
+        return arguments[operand(instruction, 2) + 1 + index];
+    }
+
+    public int falseTarget(int instruction) {
+        return arguments[operand(instruction, 2)];
+    }
+
+    public int selectValue(int instruction, boolean ifTrue) {
+        return arguments[operand(instruction, 2) + (ifTrue ? 0 : 1)];
+    }
+
+    public int slotCount() {
+        return slotCount;
+    }
+
+    public byte slotKind(int slot) {
+        return slotKinds[slot];
+    }
+
+    public long slotValue(int slot) {
+        return slotValues[slot];
+    }
+
+    public String slotName(int slot) {
+        return slotNames[slot];
+    }
+
+    public String slotType(int slot) {
+        return slotTypes[slot];
+    }
+
+    // Rebuilds the operand held in a slot; KIND_FUNCTION slots have no operand form
+    public Operand slotOperand(int slot) {
+        if (slot == NONE) {
+            return null;
+        }
+        switch (slotKinds[slot]) {
+            case KIND_TEMP:
+                return new Temp((int) slotValues[slot]);
+            case KIND_LOCAL:
+                return new Local(slotNames[slot]);
+            case KIND_PARAM:
+                return new Param(slotNames[slot]);
+            case KIND_INT:
+                return new IntConst((int) slotValues[slot]);
+            case KIND_FLOAT:
+                return new FloatConst(Float.intBitsToFloat((int) slotValues[slot]));
+            case KIND_STRING:
+                return new StringRef((int) slotValues[slot], slotNames[slot]);
+            case KIND_LABEL:
+                return new Label(slotNames[slot]);
+            default:
+                throw new IllegalStateException("Slot " + slot + " is not an operand");
+        }
+    }
+
+    // Approximate retained size of the packed body, for comparing against the object IR
+    public long estimatedBytes() {
+        return 4L * code.length + 4L * arguments.length + slotKinds.length
+                + 8L * slotValues.length + 4L * slotNames.length + 4L * slotTypes.length;
+    }
+
+    private static class Encoder {
+        private final Function function;
+        // keyed by Operand, or by name for callee slots
+        private final Map<Object, Integer> slots = new HashMap<>();
+
+        private int[] code = new int[64];
+        private int size;
+        private int[] arguments = new int[16];
+        private int argumentCount;
+        private final List<String> operators = new ArrayList<>();
+
+        private byte[] slotKinds = new byte[32];
+        private long[] slotValues = new long[32];
+        private String[] slotNames = new String[32];
+        private String[] slotTypes = new String[32];
+        private int slotCount;
+
+        private int[] parameters;
+        private String[] variableNames;
+        private String[] variableTypes;
+
+        Encoder(Function function) {
+            this.function = function;
+        }
+
+        void encode() {
+            List<String> params = function.getParameters();
+            parameters = new int[params.size()];
+            for (int i = 0; i < params.size(); i++) {
+                parameters[i] = slot(new Param(params.get(i)));
+            }
+            Map<String, String> variables = function.getVariables();
+            variableNames = new String[variables.size()];
+            variableTypes = new String[variables.size()];
+            int v = 0;
+            for (Map.Entry<String, String> entry : variables.entrySet()) {
+                variableNames[v] = entry.getKey();
+                variableTypes[v] = entry.getValue();
+                v++;
+            }
+
+            for (BasicBlock block : function.getBlocks()) {
+                emit(OP_LABEL, 0, slot(block.getLabel()), NONE, NONE);
+                for (Instruction inst : block) {
+                    encode(inst);
+                }
+            }
+        }
+
+        private void encode(Instruction inst) {
+            if (inst instanceof BinaryOperation binOp) {
+                emit(OP_BINARY, operatorIndex(binOp.getOperator()), slot(binOp.getResult()),
+                        slot(binOp.getLeft()), slot(binOp.getRight()));
+            } else if (inst instanceof UnaryOperation unary) {
+                emit(OP_UNARY, operatorIndex(unary.getOperator()), slot(unary.getResult()),
+                        slot(unary.getOperand()), NONE);
+            } else if (inst instanceof Copy copy) {
+                emit(OP_COPY, 0, slot(copy.getDestination()), slot(copy.getSource()), NONE);
+            } else if (inst instanceof FunctionCall call) {
+                int offset = argumentCount;
+                pushArgument(call.getArguments().size());
+                for (Operand arg : call.getArguments()) {
+                    pushArgument(slot(arg));
+                }
+                emit(OP_CALL, 0, slot(call.getResult()), intern(call.getFunction(), KIND_FUNCTION, 0, call.getFunction()), offset);
+            } else if (inst instanceof Jump jump) {
+                emit(OP_JUMP, 0, slot(jump.getTarget()), NONE, NONE);
+            } else if (inst instanceof ConditionalJump cj) {
+                int offset = argumentCount;
+                pushArgument(slot(cj.getFalseTarget()));
+                emit(OP_COND_JUMP, 0, slot(cj.getTrueTarget()), slot(cj.getCondition()), offset);
+            } else if (inst instanceof Select select) {
+                int offset = argumentCount;
+                pushArgument(slot(select.getIfTrue()));
+                pushArgument(slot(select.getIfFalse()));
+                emit(OP_SELECT, 0, slot(select.getResult()), slot(select.getCondition()), offset);
+            } else if (inst instanceof Return ret) {
+                emit(OP_RETURN, 0, slot(ret.getValue()), NONE, NONE);
+            } else {
+                throw new IllegalArgumentException("Cannot pack instruction: " + inst);
+            }
+        }
+
+        private void emit(byte opcode, int operator, int a, int b, int c) {
+            if ((size + 1) * STRIDE > code.length) {
+                code = Arrays.copyOf(code, code.length * 2);
+            }
+            int base = size * STRIDE;
+            code[base] = opcode | (operator << 8);
+            code[base + 1] = a;
+            code[base + 2] = b;
+            code[base + 3] = c;
+            size++;
+        }
+
+        private void pushArgument(int value) {
+            if (argumentCount == arguments.length) {
+                arguments = Arrays.copyOf(arguments, arguments.length * 2);
+            }
+            arguments[argumentCount++] = value;
+        }
+
+        private int operatorIndex(String operator) {
+            int index = operators.indexOf(operator);
+            if (index < 0) {
+                operators.add(operator);
+                index = operators.size() - 1;
+            }
+            return index + 1;
+        }
+
+        private int slot(Operand operand) {
+            if (operand == null) {
+                return NONE;
+            }
+            if (operand instanceof Temp temp) {
+                return intern(operand, KIND_TEMP, temp.id(), null);
+            } else if (operand instanceof Local local) {
+                return intern(operand, KIND_LOCAL, 0, local.name());
+            } else if (operand instanceof Param param) {
+                return intern(operand, KIND_PARAM, 0, param.name());
+            } else if (operand instanceof IntConst constant) {
+                return intern(operand, KIND_INT, constant.value(), null);
+            } else if (operand instanceof FloatConst constant) {
+                return intern(operand, KIND_FLOAT, Float.floatToRawIntBits(constant.value()), null);
+            } else if (operand instanceof StringRef ref) {
+                return intern(operand, KIND_STRING, ref.index(), ref.value());
+            } else {
+                return intern(operand, KIND_LABEL, 0, ((Label) operand).name());
+            }
+        }
+
+        private int intern(Object key, byte kind, long value, String name) {
+            Integer existing = slots.get(key);
+            if (existing != null) {
+                return existing;
+            }
+            if (slotCount == slotKinds.length) {
+                int capacity = slotKinds.length * 2;
+                slotKinds = Arrays.copyOf(slotKinds, capacity);
+                slotValues = Arrays.copyOf(slotValues, capacity);
+                slotNames = Arrays.copyOf(slotNames, capacity);
+                slotTypes = Arrays.copyOf(slotTypes, capacity);
+            }
+            int slot = slotCount++;
+            slotKinds[slot] = kind;
+            slotValues[slot] = value;
+            slotNames[slot] = name;
+            slotTypes[slot] = key instanceof Operand operand ? function.getType(operand) : null;
+            slots.put(key, slot);
+            return slot;
+        }
+    }
+}
@@ -0,0 +1,398 @@
+package ir;
+
+import ir.Operand.*;
+import ir.ThreeAddressCode.*;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// Conversion of a Function into and out of static single assignment form.
+//
+// Construction builds pruned SSA: phis are placed on the iterated dominance frontier
+// of each variable's definitions, but only where the variable is live. Only variables
+// that are actually assigned more than once are renamed. Parameters and locals read
+// before any assignment count as defined on entry, and that entry value keeps the
+// original name. Every other definition gets a fresh version: a new temp for
+// temporaries, `name.N` for locals and parameters.
+//
+// Destruction replaces each phi with copies at the end of its predecessors, splitting
+// critical edges, and orders every parallel copy group so that no source is overwritten
+// before it is read.
+public class SSA {
+
+    private SSA() {
+    }
+
+    public static boolean isInSSA(Function function) {
+        for (BasicBlock block : function.getBlocks()) {
+            if (!block.getPhis().isEmpty()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public static void removeUnreachableBlocks(Function function) {
+        Set<BasicBlock> reachable = new HashSet<>(function.computeReversePostOrder());
+        for (BasicBlock block : new ArrayList<>(function.getBlocks())) {
+            if (!reachable.contains(block)) {
+                function.removeBlock(block);
+            }
+        }
+        // Drop phi inputs from predecessors that no longer exist
+        for (BasicBlock block : function.getBlocks()) {
+            for (Phi phi : block.getPhis()) {
+                for (Label label : new ArrayList<>(phi.getIncoming().keySet())) {
+                    if (function.getBlock(label) == null) {
+                        phi.removeIncoming(label);
+                    }
+                }
+            }
+        }
+    }
+
+    // ---------------------------------------------------------------- construction
+
+    public static void construct(Function function) {
+        if (isInSSA(function)) {
+            return;
+        }
+        removeUnreachableBlocks(function);
+        // Entry values need an edge of their own to flow into phis
+        if (function.getEntryBlock() != null && !function.getEntryBlock().getPredecessors().isEmpty()) {
+            function.createEntryBlock();
+        }
+        new Builder(function).build();
+    }
+
+    private static class Builder {
+        private final Function function;
+        private final DominatorTree dominators;
+        private final List<BasicBlock> blocks;
+        private final Map<BasicBlock, Integer> blockIndex = new HashMap<>();
+        private final Map<Variable, Integer> variableIndex = new HashMap<>();
+        private final List<Variable> variables = new ArrayList<>();
+        private final Map<Variable, Integer> versionCounters = new HashMap<>();
+
+        private BitSet[] liveIn;
+        private BitSet renamed;
+        private final Map<Phi, Integer> phiVariable = new HashMap<>();
+
+        Builder(Function function) {
+            this.function = function;
+            this.dominators = new DominatorTree(function);
+            this.blocks = dominators.getReversePostOrder();
+            for (int i = 0; i < blocks.size(); i++) {
+                blockIndex.put(blocks.get(i), i);
+            }
+        }
+
+        void build() {
+            for (String param : function.getParameters()) {
+                index(new Param(param));
+            }
+            for (BasicBlock block : blocks) {
+                for (Instruction inst : block) {
+                    for (Operand use : inst.getUses()) {
+                        if (use instanceof Variable variable) {
+                            index(variable);
+                        }
+                    }
+                    if (inst.getDefinition() != null) {
+                        index(inst.getDefinition());
+                    }
+                }
+            }
+            computeLiveness();
+            placePhis();
+            rename();
+        }
+
+        private int index(Variable variable) {
+            Integer i = variableIndex.get(variable);
+            if (i == null) {
+                i = variables.size();
+                variableIndex.put(variable, i);
+                variables.add(variable);
+            }
+            return i;
+        }
+
+        private void computeLiveness() {
+            int n = blocks.size();
+            BitSet[] uses = new BitSet[n];
+            BitSet[] defs = new BitSet[n];
+            liveIn = new BitSet[n];
+            for (int b = 0; b < n; b++) {
+                uses[b] = new BitSet();
+                defs[b] = new BitSet();
+                liveIn[b] = new BitSet();
+                for (Instruction inst : blocks.get(b)) {
+                    for (Operand use : inst.getUses()) {
+                        if (use instanceof Variable variable) {
+                            int v = variableIndex.get(variable);
+                            if (!defs[b].get(v)) {
+                                uses[b].set(v);
+                            }
+                        }
+                    }
+                    if (inst.getDefinition() != null) {
+                        defs[b].set(variableIndex.get(inst.getDefinition()));
+                    }
+                }
+            }
+            // Backward problem: iterate in postorder until nothing changes
+            boolean changed = true;
+            while (changed) {
+                changed = false;
+                for (int b = n - 1; b >= 0; b--) {
+                    BitSet out = new BitSet();
+                    for (BasicBlock successor : blocks.get(b).getSuccessors()) {
+                        out.or(liveIn[blockIndex.get(successor)]);
+                    }
+                    BitSet in = (BitSet) out.clone();
+                    in.andNot(defs[b]);
+                    in.or(uses[b]);
+                    if (!in.equals(liveIn[b])) {
+                        liveIn[b] = in;
+                        changed = true;
+                    }
+                }
+            }
+        }
+
+        private void placePhis() {
+            int count = variables.size();
+            List<List<BasicBlock>> defSites = new ArrayList<>(count);
+            int[] defCount = new int[count];
+            for (int v = 0; v < count; v++) {
+                defSites.add(new ArrayList<>());
+            }
+            for (BasicBlock block : blocks) {
+                for (Instruction inst : block) {
+                    if (inst.getDefinition() != null) {
+                        int v = variableIndex.get(inst.getDefinition());
+                        defCount[v]++;
+                        List<BasicBlock> sites = defSites.get(v);
+                        if (sites.isEmpty() || sites.get(sites.size() - 1) != block) {
+                            sites.add(block);
+                        }
+                    }
+                }
+            }
+
+            // Parameters and variables live on entry have an implicit definition there
+            BasicBlock entryBlock = blocks.get(0);
+            BitSet definedOnEntry = (BitSet) liveIn[0].clone();
+            for (String param : function.getParameters()) {
+                definedOnEntry.set(variableIndex.get(new Param(param)));
+            }
+
+            renamed = new BitSet();
+            Map<BasicBlock, List<Phi>> phis = new HashMap<>();
+            for (int v = 0; v < count; v++) {
+                int definitions = defCount[v] + (definedOnEntry.get(v) ? 1 : 0);
+                if (definitions < 2) {
+                    continue;
+                }
+                renamed.set(v);
+                Deque<BasicBlock> worklist = new ArrayDeque<>(defSites.get(v));
+                Set<BasicBlock> queued = new HashSet<>(defSites.get(v));
+                if (definedOnEntry.get(v) && queued.add(entryBlock)) {
+                    worklist.add(entryBlock);
+                }
+                Set<BasicBlock> hasPhi = new HashSet<>();
+                while (!worklist.isEmpty()) {
+                    BasicBlock block = worklist.pop();
+                    for (BasicBlock frontier : dominators.getDominanceFrontier(block)) {
+                        if (hasPhi.contains(frontier) || !liveIn[blockIndex.get(frontier)].get(v)) {
+                            continue;
+                        }
+                        hasPhi.add(frontier);
+                        Phi phi = new Phi(variables.get(v));
+                        phiVariable.put(phi, v);
+                        phis.computeIfAbsent(frontier, b -> new ArrayList<>()).add(phi);
+                        if (queued.add(frontier)) {
+                            worklist.add(frontier);
+                        }
+                    }
+                }
+            }
+
+            for (Map.Entry<BasicBlock, List<Phi>> entry : phis.entrySet()) {
+                BasicBlock block = entry.getKey();
+                Instruction first = block.getFirstInstruction();
+                for (Phi phi : entry.getValue()) {
+                    block.insertBefore(first, phi);
+                }
+            }
+        }
+
+        private void rename() {
+            int count = variables.size();
+            List<Deque<Operand>> stacks = new ArrayList<>(count);
+            for (int v = 0; v < count; v++) {
+                Deque<Operand> stack = new ArrayDeque<>();
+                // the entry value of a variable keeps its original name
+                stack.push(variables.get(v));
+                stacks.add(stack);
+            }
+
+            // Iterative preorder walk of the dominator tree
+            Deque<BasicBlock> walk = new ArrayDeque<>();
+            Deque<List<Integer>> pushedPerBlock = new ArrayDeque<>();
+            Deque<Integer> nextChild = new ArrayDeque<>();
+            walk.push(blocks.get(0));
+            pushedPerBlock.push(renameBlock(blocks.get(0), stacks));
+            nextChild.push(0);
+            while (!walk.isEmpty()) {
+                BasicBlock block = walk.peek();
+                int child = nextChild.pop();
+                List<BasicBlock> children = dominators.getChildren(block);
+                if (child < children.size()) {
+                    nextChild.push(child + 1);
+                    BasicBlock next = children.get(child);
+                    walk.push(next);
+                    pushedPerBlock.push(renameBlock(next, stacks));
+                    nextChild.push(0);
+                } else {
+                    walk.pop();
+                    for (int v : pushedPerBlock.pop()) {
+                        stacks.get(v).pop();
+                    }
+                }
+            }
+        }
+
+        // Renames one block and fills the matching phi inputs of its successors.
+        // Returns the variables whose stacks were pushed.
+        private List<Integer> renameBlock(BasicBlock block, List<Deque<Operand>> stacks) {
+            List<Integer> pushed = new ArrayList<>();
+            for (Instruction inst : block) {
+                if (!(inst instanceof Phi)) {
+                    inst.replaceUses(operand -> {
+                        if (operand instanceof Variable variable) {
+                            Integer v = variableIndex.get(variable);
+                            if (v != null && renamed.get(v)) {
+                                return stacks.get(v).peek();
+                            }
+                        }
+                        return operand;
+                    });
+                }
+                Variable def = inst.getDefinition();
+                if (def != null) {
+                    int v = inst instanceof Phi phi ? phiVariable.get(phi) : variableIndex.get(def);
+                    if (renamed.get(v)) {
+                        Variable version = newVersion(variables.get(v));
+                        inst.setDefinition(version);
+                        stacks.get(v).push(version);
+                        pushed.add(v);
+                    }
+                }
+            }
+            for (BasicBlock successor : block.getSuccessors()) {
+                for (Phi phi : successor.getPhis()) {
+                    Integer v = phiVariable.get(phi);
+                    if (v != null) {
+                        phi.setIncoming(block.getLabel(), stacks.get(v).peek());
+                    }
+                }
+            }
+            return pushed;
+        }
+
+        private Variable newVersion(Variable original) {
+            String type = function.getType(original);
+            if (original instanceof Temp) {
+                return function.generateTemp(type);
+            }
+            int n = versionCounters.getOrDefault(original, 0);
+            String name;
+            do {
+                name = original.name() + "." + (++n);
+            } while (function.getVariables().containsKey(name));
+            versionCounters.put(original, n);
+            return function.addVariable(name, type);
+        }
+    }
+
+    // ---------------------------------------------------------------- destruction
+
+    public static void destruct(Function function) {
+        for (BasicBlock block : new ArrayList<>(function.getBlocks())) {
+            List<Phi> phis = block.getPhis();
+            if (phis.isEmpty()) {
+                continue;
+            }
+            for (BasicBlock pred : new ArrayList<>(block.getPredecessors())) {
+                List<Variable> destinations = new ArrayList<>();
+                List<Operand> sources = new ArrayList<>();
+                for (Phi phi : phis) {
+                    Operand value = phi.getIncoming(pred.getLabel());
+                    if (value != null) {
+                        destinations.add(phi.getResult());
+                        sources.add(value);
+                    }
+                }
+                BasicBlock target = pred;
+                if (pred.getSuccessors().size() > 1) {
+                    // Critical edge: the copies get a block of their own
+                    target = function.createBlock();
+                    target.addInstruction(new Jump(block.getLabel()));
+                    pred.replaceSuccessor(block, target);
+                }
+                for (Instruction copy : sequentializeCopies(function, destinations, sources)) {
+                    target.insertBeforeTerminator(copy);
+                }
+            }
+            for (Phi phi : phis) {
+                block.removeInstruction(phi);
+            }
+        }
+    }
+
+    // Orders a parallel copy (all sources read before any destination is written) into
+    // sequential Copy instructions, breaking cycles with a fresh temporary
+    public static List<Instruction> sequentializeCopies(Function function, List<Variable> destinations,
+                                                        List<Operand> sources) {
+        List<Variable> dst = new ArrayList<>();
+        List<Operand> src = new ArrayList<>();
+        for (int i = 0; i < destinations.size(); i++) {
+            if (!destinations.get(i).equals(sources.get(i))) {
+                dst.add(destinations.get(i));
+                src.add(sources.get(i));
+            }
+        }
+        List<Instruction> copies = new ArrayList<>();
+        while (!dst.isEmpty()) {
+            int ready = -1;
+            for (int i = 0; i < dst.size() && ready < 0; i++) {
+                if (!src.contains(dst.get(i))) {
+                    ready = i;
+                }
+            }
+            if (ready >= 0) {
+                copies.add(new Copy(dst.remove(ready), src.remove(ready)));
+                continue;
+            }
+            // Every remaining destination is still needed as a source: save one first
+            Variable saved = dst.get(0);
+            Temp temp = function.generateTemp(function.getType(saved));
+            copies.add(new Copy(temp, saved));
+            for (int i = 0; i < src.size(); i++) {
+                if (src.get(i).equals(saved)) {
+                    src.set(i, temp);
+                }
+            }
+        }
+        return copies;
+    }
+}
@@ -1,59 +1,195 @@
 package ir;
 
+import ir.Operand.*;
+
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.function.UnaryOperator;
 
 public class ThreeAddressCode {
     private List<Function> functions;
+    private List<StringRef> strings;
+    private Map<String, StringRef> stringIndex;
     
     public ThreeAddressCode() {
         this.functions = new ArrayList<>();
+        this.strings = new ArrayList<>();
+        this.stringIndex = new HashMap<>();
     }
     
     public void addFunction(Function function) {
         functions.add(function);
     }
     
+    public void removeFunction(Function function) {
+        functions.remove(function);
+    }
+    
     public List<Function> getFunctions() {
         return functions;
     }
     
+    // Interns a string literal into the module string pool
+    public StringRef addString(String value) {
+        StringRef ref = stringIndex.get(value);
+        if (ref == null) {
+            ref = new StringRef(strings.size(), value);
+            strings.add(ref);
+            stringIndex.put(value, ref);
+        }
+        return ref;
+    }
+    
+    public List<StringRef> getStrings() {
+        return strings;
+    }
+    
     public static class Function {
         private String name;
         private String returnType;
         private List<String> parameters;
-        private List<Instruction> instructions;
+        private List<BasicBlock> blocks;         // layout order, entry block first
+        private Map<Label, BasicBlock> blockIndex;
         private Map<String, String> variables; // variable name -> type
+        private Map<Variable, Set<Instruction>> uses;        // def-use chains
+        private Map<Variable, Set<Instruction>> definitions; // use-def chains
         private int tempCounter;
+        private int labelCounter;
+        private boolean edgesValid;
         
         public Function(String name, String returnType) {
             this.name = name;
             this.returnType = returnType;
             this.parameters = new ArrayList<>();
-            this.instructions = new ArrayList<>();
+            this.blocks = new ArrayList<>();
+            this.blockIndex = new HashMap<>();
             this.variables = new HashMap<>();
+            this.uses = new HashMap<>();
+            this.definitions = new HashMap<>();
             this.tempCounter = 0;
+            this.labelCounter = 0;
         }
         
-        public void addParameter(String name, String type) {
+        public Param addParameter(String name, String type) {
             parameters.add(name);
             variables.put(name, type);
+            return new Param(name);
+        }
+        
+        // Drops a parameter that no instruction reads or writes
+        public void removeParameter(String name) {
+            if (isUsed(new Param(name)) || !getDefinitions(new Param(name)).isEmpty()) {
+                throw new IllegalStateException("Parameter " + name + " of " + this.name + " is still referenced");
+            }
+            parameters.remove(name);
+            variables.remove(name);
         }
         
-        public void addVariable(String name, String type) {
+        public Local addVariable(String name, String type) {
             variables.put(name, type);
+            return new Local(name);
         }
         
+        // Appends to the last block. Code following a terminator starts a new
+        // (unreachable) block, so every block keeps a single terminator at its end.
         public void addInstruction(Instruction instruction) {
-            instructions.add(instruction);
+            if (blocks.isEmpty() || getLastBlock().getTerminator() != null) {
+                appendBlock(newLabel());
+            }
+            getLastBlock().addInstruction(instruction);
         }
         
-        public String generateTemp(String type) {
-            String tempName = "t" + tempCounter++;
-            variables.put(tempName, type);
-            return tempName;
+        // Starts a new block. An unterminated block before it gets an explicit jump,
+        // so control never falls through between blocks.
+        public BasicBlock placeLabel(Label label) {
+            if (!blocks.isEmpty() && getLastBlock().getTerminator() == null) {
+                getLastBlock().addInstruction(new Jump(label));
+            }
+            return appendBlock(label);
+        }
+        
+        // Creates an empty block at the end of the layout; the caller must terminate it
+        public BasicBlock createBlock() {
+            return appendBlock(newLabel());
+        }
+        
+        // Creates an empty block laid out right before `block`; the caller must terminate it
+        public BasicBlock createBlockBefore(BasicBlock block) {
+            return insertBlock(blocks.indexOf(block), newLabel());
+        }
+
+        // Puts a new block in front of the entry block that jumps to it, so the function
+        // entry has no predecessors even when the first block is a loop header
+        public BasicBlock createEntryBlock() {
+            BasicBlock oldEntry = getEntryBlock();
+            BasicBlock block = insertBlock(0, newLabel());
+            block.addInstruction(new Jump(oldEntry.getLabel()));
+            return block;
+        }
+        
+        public void removeBlock(BasicBlock block) {
+            for (Instruction instruction : block) {
+                detach(instruction);
+            }
+            blocks.remove(block);
+            blockIndex.remove(block.getLabel());
+            invalidateControlFlow();
+        }
+        
+        private BasicBlock appendBlock(Label label) {
+            return insertBlock(blocks.size(), label);
+        }
+        
+        private BasicBlock insertBlock(int position, Label label) {
+            if (blockIndex.containsKey(label)) {
+                throw new IllegalStateException("Duplicate label " + label + " in function " + name);
+            }
+            BasicBlock block = new BasicBlock(this, label);
+            blocks.add(position, block);
+            blockIndex.put(label, block);
+            invalidateControlFlow();
+            return block;
+        }
+        
+        public Temp generateTemp(String type) {
+            Temp temp = new Temp(tempCounter++);
+            variables.put(temp.name(), type);
+            return temp;
+        }
+        
+        // Labels are qualified with the function name so they stay unique in the output
+        public Label newLabel() {
+            return new Label(name + ".L" + labelCounter++);
+        }
+        
+        // Operand for a named variable of this function
+        public Variable getVariable(String name) {
+            return parameters.contains(name) ? new Param(name) : new Local(name);
+        }
+        
+        // Declared type of an operand, or null for an unknown variable
+        public String getType(Operand operand) {
+            if (operand instanceof IntConst) {
+                return "int";
+            } else if (operand instanceof FloatConst) {
+                return "float";
+            } else if (operand instanceof StringRef) {
+                return "string";
+            } else if (operand instanceof Variable variable) {
+                return variables.get(variable.name());
+            }
+            return null;
         }
         
         public String getName() {
@@ -64,63 +200,616 @@ public class ThreeAddressCode {
             return returnType;
         }
         
+        public void setReturnType(String returnType) {
+            this.returnType = returnType;
+        }
+        
         public List<String> getParameters() {
             return parameters;
         }
         
+        public List<BasicBlock> getBlocks() {
+            return Collections.unmodifiableList(blocks);
+        }
+        
+        public BasicBlock getEntryBlock() {
+            return blocks.isEmpty() ? null : blocks.get(0);
+        }
+        
+        public BasicBlock getBlock(Label label) {
+            return blockIndex.get(label);
+        }
+        
+        private BasicBlock getLastBlock() {
+            return blocks.get(blocks.size() - 1);
+        }
+        
+        // Flattened copy of all instructions in layout order
         public List<Instruction> getInstructions() {
+            List<Instruction> instructions = new ArrayList<>();
+            for (BasicBlock block : blocks) {
+                for (Instruction instruction : block) {
+                    instructions.add(instruction);
+                }
+            }
             return instructions;
         }
         
+        public int getInstructionCount() {
+            int count = 0;
+            for (BasicBlock block : blocks) {
+                count += block.getInstructionCount();
+            }
+            return count;
+        }
+        
         public Map<String, String> getVariables() {
             return variables;
         }
+        
+        // Drops declared variables that no instruction reads or writes; parameters stay.
+        // Returns the number removed.
+        public int removeUnusedVariables() {
+            Set<String> referenced = new HashSet<>();
+            for (Map.Entry<Variable, Set<Instruction>> entry : uses.entrySet()) {
+                if (!entry.getValue().isEmpty()) {
+                    referenced.add(entry.getKey().name());
+                }
+            }
+            for (Map.Entry<Variable, Set<Instruction>> entry : definitions.entrySet()) {
+                if (!entry.getValue().isEmpty()) {
+                    referenced.add(entry.getKey().name());
+                }
+            }
+            int before = variables.size();
+            variables.keySet().removeIf(name -> !parameters.contains(name) && !referenced.contains(name));
+            return before - variables.size();
+        }
+        
+        public int getTempCounter() {
+            return tempCounter;
+        }
+        
+        void setTempCounter(int tempCounter) {
+            this.tempCounter = tempCounter;
+        }
+        
+        public int getLabelCounter() {
+            return labelCounter;
+        }
+        
+        void setLabelCounter(int labelCounter) {
+            this.labelCounter = labelCounter;
+        }
+        
+        // Instructions reading the variable
+        public Set<Instruction> getUses(Variable variable) {
+            Set<Instruction> users = uses.get(variable);
+            return users == null ? Set.of() : Collections.unmodifiableSet(users);
+        }
+        
+        // Instructions writing the variable; in SSA form there is at most one
+        public Set<Instruction> getDefinitions(Variable variable) {
+            Set<Instruction> defs = definitions.get(variable);
+            return defs == null ? Set.of() : Collections.unmodifiableSet(defs);
+        }
+        
+        // The only instruction writing the variable, or null if there are none or several
+        public Instruction getUniqueDefinition(Variable variable) {
+            Set<Instruction> defs = definitions.get(variable);
+            return defs == null || defs.size() != 1 ? null : defs.iterator().next();
+        }
+        
+        public boolean isUsed(Variable variable) {
+            Set<Instruction> users = uses.get(variable);
+            return users != null && !users.isEmpty();
+        }
+        
+        // Rewrites every read of `from` to read `replacement`; returns the number of
+        // instructions changed
+        public int replaceAllUsesWith(Variable from, Operand replacement) {
+            if (from.equals(replacement)) {
+                return 0;
+            }
+            List<Instruction> users = new ArrayList<>(getUses(from));
+            for (Instruction user : users) {
+                user.replaceUses(operand -> operand.equals(from) ? replacement : operand);
+            }
+            return users.size();
+        }
+        
+        // Registers an instruction entering one of this function's blocks
+        private void attach(Instruction instruction, BasicBlock block) {
+            if (instruction.block != null) {
+                throw new IllegalStateException("Instruction already belongs to block "
+                        + instruction.block.getLabel() + ": " + instruction);
+            }
+            instruction.block = block;
+            indexDefinition(instruction);
+            indexUses(instruction);
+        }
+        
+        private void detach(Instruction instruction) {
+            unindexDefinition(instruction);
+            unindexUses(instruction);
+            instruction.block = null;
+        }
+        
+        void indexUses(Instruction instruction) {
+            for (Operand operand : instruction.getUses()) {
+                if (operand instanceof Variable variable) {
+                    uses.computeIfAbsent(variable, v -> new LinkedHashSet<>()).add(instruction);
+                }
+            }
+        }
+        
+        void unindexUses(Instruction instruction) {
+            for (Operand operand : instruction.getUses()) {
+                if (operand instanceof Variable variable) {
+                    Set<Instruction> users = uses.get(variable);
+                    if (users != null) {
+                        users.remove(instruction);
+                    }
+                }
+            }
+        }
+        
+        void indexDefinition(Instruction instruction) {
+            Variable def = instruction.getDefinition();
+            if (def != null) {
+                definitions.computeIfAbsent(def, v -> new LinkedHashSet<>()).add(instruction);
+            }
+        }
+        
+        void unindexDefinition(Instruction instruction) {
+            Variable def = instruction.getDefinition();
+            if (def != null) {
+                Set<Instruction> defs = definitions.get(def);
+                if (defs != null) {
+                    defs.remove(instruction);
+                }
+            }
+        }
+        
+        // Called whenever a terminator or the block list changes
+        public void invalidateControlFlow() {
+            edgesValid = false;
+        }
+        
+        private void ensureEdges() {
+            if (edgesValid) {
+                return;
+            }
+            for (BasicBlock block : blocks) {
+                block.successors.clear();
+                block.predecessors.clear();
+            }
+            for (BasicBlock block : blocks) {
+                Instruction terminator = block.getTerminator();
+                if (terminator == null) {
+                    continue;
+                }
+                for (Label target : terminator.getTargets()) {
+                    BasicBlock successor = blockIndex.get(target);
+                    if (successor == null) {
+                        throw new IllegalStateException("Jump to undefined label " + target + " in " + name);
+                    }
+                    if (!block.successors.contains(successor)) {
+                        block.successors.add(successor);
+                        successor.predecessors.add(block);
+                    }
+                }
+            }
+            edgesValid = true;
+        }
+        
+        // Blocks reachable from the entry, in reverse postorder
+        public List<BasicBlock> computeReversePostOrder() {
+            List<BasicBlock> order = new ArrayList<>();
+            if (blocks.isEmpty()) {
+                return order;
+            }
+            Set<BasicBlock> visited = new HashSet<>();
+            Deque<BasicBlock> stack = new ArrayDeque<>();
+            Deque<Integer> nextSuccessor = new ArrayDeque<>();
+            stack.push(getEntryBlock());
+            nextSuccessor.push(0);
+            visited.add(getEntryBlock());
+            while (!stack.isEmpty()) {
+                BasicBlock block = stack.peek();
+                int index = nextSuccessor.pop();
+                List<BasicBlock> successors = block.getSuccessors();
+                if (index < successors.size()) {
+                    nextSuccessor.push(index + 1);
+                    BasicBlock successor = successors.get(index);
+                    if (visited.add(successor)) {
+                        stack.push(successor);
+                        nextSuccessor.push(0);
+                    }
+                } else {
+                    stack.pop();
+                    order.add(block);
+                }
+            }
+            Collections.reverse(order);
+            return order;
+        }
+        
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder();
+            for (BasicBlock block : blocks) {
+                sb.append(block);
+            }
+            return sb.toString();
+        }
     }
     
-    public static abstract class Instruction {
-        private String label;
+    // Straight-line code with a single terminator (Jump, ConditionalJump or Return) at its end.
+    // Instructions form an intrusive doubly linked list, so passes insert, remove and move
+    // them in place in O(1).
+    public static class BasicBlock implements Iterable<Instruction> {
+        private final Function function;
+        private final Label label;
+        private Instruction first;
+        private Instruction last;
+        private int size;
+        private final List<BasicBlock> successors;
+        private final List<BasicBlock> predecessors;
         
-        public Instruction() {
-            this.label = null;
+        private BasicBlock(Function function, Label label) {
+            this.function = function;
+            this.label = label;
+            this.successors = new ArrayList<>();
+            this.predecessors = new ArrayList<>();
         }
         
-        public void setLabel(String label) {
-            this.label = label;
+        public Function getFunction() {
+            return function;
         }
         
-        public String getLabel() {
+        public Label getLabel() {
             return label;
         }
         
-        // Modified toString: prepend label if set
+        // Copy of the instructions in order; passes walk the links instead
+        public List<Instruction> getInstructions() {
+            List<Instruction> instructions = new ArrayList<>(size);
+            for (Instruction instruction = first; instruction != null; instruction = instruction.next) {
+                instructions.add(instruction);
+            }
+            return instructions;
+        }
+        
+        // Iterates in order; removing the current instruction during iteration is allowed
+        @Override
+        public Iterator<Instruction> iterator() {
+            return new Iterator<>() {
+                private Instruction cursor = first;
+                
+                @Override
+                public boolean hasNext() {
+                    return cursor != null;
+                }
+                
+                @Override
+                public Instruction next() {
+                    if (cursor == null) {
+                        throw new NoSuchElementException();
+                    }
+                    Instruction current = cursor;
+                    cursor = current.next;
+                    return current;
+                }
+            };
+        }
+        
+        public Instruction getFirstInstruction() {
+            return first;
+        }
+        
+        public Instruction getLastInstruction() {
+            return last;
+        }
+        
+        public int getInstructionCount() {
+            return size;
+        }
+        
+        public boolean isEmpty() {
+            return size == 0;
+        }
+        
+        public Instruction getTerminator() {
+            return last != null && last.isTerminator() ? last : null;
+        }
+        
+        public void addInstruction(Instruction instruction) {
+            if (getTerminator() != null) {
+                throw new IllegalStateException("Block " + label + " is already terminated");
+            }
+            function.attach(instruction, this);
+            link(instruction, null);
+            if (instruction.isTerminator()) {
+                function.invalidateControlFlow();
+            }
+        }
+        
+        // Inserts a non-terminator right before `anchor`, which must be in this block
+        public void insertBefore(Instruction anchor, Instruction instruction) {
+            if (anchor.block != this || instruction.isTerminator()) {
+                throw new IllegalArgumentException("Cannot insert " + instruction + " before " + anchor + " in " + label);
+            }
+            function.attach(instruction, this);
+            link(instruction, anchor);
+        }
+        
+        // Inserts a non-terminator right after `anchor`, which must be a non-terminator in this block
+        public void insertAfter(Instruction anchor, Instruction instruction) {
+            if (anchor.block != this || anchor.isTerminator() || instruction.isTerminator()) {
+                throw new IllegalArgumentException("Cannot insert " + instruction + " after " + anchor + " in " + label);
+            }
+            function.attach(instruction, this);
+            link(instruction, anchor.next);
+        }
+        
+        // Inserts before the first instruction, or appends to an empty block
+        public void insertAtStart(Instruction instruction) {
+            if (first == null) {
+                addInstruction(instruction);
+            } else {
+                insertBefore(first, instruction);
+            }
+        }
+        
+        // Appends to the body, keeping the terminator last
+        public void insertBeforeTerminator(Instruction instruction) {
+            Instruction terminator = getTerminator();
+            if (terminator == null) {
+                addInstruction(instruction);
+            } else {
+                insertBefore(terminator, instruction);
+            }
+        }
+        
+        // Replaces the block's terminator, or terminates an open block
+        public void setTerminator(Instruction terminator) {
+            if (!terminator.isTerminator()) {
+                throw new IllegalArgumentException("Not a terminator: " + terminator);
+            }
+            Instruction old = getTerminator();
+            function.attach(terminator, this);
+            if (old != null) {
+                unlink(old);
+                function.detach(old);
+            }
+            link(terminator, null);
+            function.invalidateControlFlow();
+        }
+        
+        // Replaces the body (everything before the terminator). The new body may reuse
+        // instructions of the old one.
+        public void setBody(List<Instruction> body) {
+            Instruction terminator = getTerminator();
+            for (Instruction instruction = first; instruction != null && instruction != terminator; ) {
+                Instruction next = instruction.next;
+                unlink(instruction);
+                function.detach(instruction);
+                instruction = next;
+            }
+            for (Instruction instruction : body) {
+                function.attach(instruction, this);
+                link(instruction, terminator);
+            }
+        }
+        
+        // Removes a non-terminator instruction from the block
+        public void removeInstruction(Instruction instruction) {
+            if (instruction.block != this || instruction.isTerminator()) {
+                throw new IllegalArgumentException("Cannot remove " + instruction + " from " + label);
+            }
+            unlink(instruction);
+            function.detach(instruction);
+        }
+        
+        // Puts `replacement` in the position of `instruction`
+        public void replaceInstruction(Instruction instruction, Instruction replacement) {
+            if (instruction.isTerminator()) {
+                setTerminator(replacement);
+                return;
+            }
+            if (instruction.block != this || replacement.isTerminator()) {
+                throw new IllegalArgumentException("Cannot replace " + instruction + " in " + label);
+            }
+            function.attach(replacement, this);
+            link(replacement, instruction);
+            unlink(instruction);
+            function.detach(instruction);
+        }
+        
+        // Links `instruction` in before `successor`, or at the end when it is null
+        private void link(Instruction instruction, Instruction successor) {
+            Instruction predecessor = successor == null ? last : successor.previous;
+            instruction.previous = predecessor;
+            instruction.next = successor;
+            if (predecessor == null) {
+                first = instruction;
+            } else {
+                predecessor.next = instruction;
+            }
+            if (successor == null) {
+                last = instruction;
+            } else {
+                successor.previous = instruction;
+            }
+            size++;
+        }
+        
+        private void unlink(Instruction instruction) {
+            if (instruction.previous == null) {
+                first = instruction.next;
+            } else {
+                instruction.previous.next = instruction.next;
+            }
+            if (instruction.next == null) {
+                last = instruction.previous;
+            } else {
+                instruction.next.previous = instruction.previous;
+            }
+            instruction.previous = null;
+            instruction.next = null;
+            size--;
+        }
+        
+        // Redirects the terminator's edges to `from` so they go to `to`
+        public void replaceSuccessor(BasicBlock from, BasicBlock to) {
+            Instruction terminator = getTerminator();
+            Label old = from.getLabel();
+            Label target = to.getLabel();
+            if (terminator instanceof Jump jump && jump.getTarget().equals(old)) {
+                setTerminator(new Jump(target));
+            } else if (terminator instanceof ConditionalJump cj) {
+                setTerminator(new ConditionalJump(cj.getCondition(),
+                        cj.getTrueTarget().equals(old) ? target : cj.getTrueTarget(),
+                        cj.getFalseTarget().equals(old) ? target : cj.getFalseTarget()));
+            }
+        }
+        
+        // Leading phi instructions
+        public List<Phi> getPhis() {
+            List<Phi> phis = new ArrayList<>();
+            for (Instruction instruction = first; instruction != null; instruction = instruction.next) {
+                if (!(instruction instanceof Phi phi)) {
+                    break;
+                }
+                phis.add(phi);
+            }
+            return phis;
+        }
+        
+        public List<BasicBlock> getSuccessors() {
+            function.ensureEdges();
+            return Collections.unmodifiableList(successors);
+        }
+        
+        public List<BasicBlock> getPredecessors() {
+            function.ensureEdges();
+            return Collections.unmodifiableList(predecessors);
+        }
+        
         @Override
         public String toString() {
-            String labelStr = (label != null && !label.isEmpty()) ? (label + ": ") : "";
-            return labelStr + instructionToString();
+            StringBuilder sb = new StringBuilder();
+            sb.append(label).append(":\n");
+            for (Instruction instruction = first; instruction != null; instruction = instruction.next) {
+                sb.append("    ").append(instruction).append("\n");
+            }
+            return sb.toString();
+        }
+    }
+    
+    public static abstract class Instruction {
+        private BasicBlock block;
+        private Instruction previous;
+        private Instruction next;
+        
+        // Block holding this instruction, or null while it is detached
+        public BasicBlock getBlock() {
+            return block;
+        }
+        
+        // Neighbours within the block, or null at either end
+        public Instruction getPrevious() {
+            return previous;
+        }
+        
+        public Instruction getNext() {
+            return next;
+        }
+        
+        // Variable written by this instruction, or null
+        public Variable getDefinition() {
+            return null;
         }
         
+        // Operands read by this instruction (labels are not uses)
+        public abstract List<Operand> getUses();
+        
+        // Rewrites every use in place
+        public final void replaceUses(UnaryOperator<Operand> mapping) {
+            updateUses(() -> rewriteUses(mapping));
+        }
+        
+        // Runs a change to this instruction's operands, keeping the function's def-use index current
+        protected final void updateUses(Runnable change) {
+            Function function = block == null ? null : block.getFunction();
+            if (function != null) {
+                function.unindexUses(this);
+            }
+            change.run();
+            if (function != null) {
+                function.indexUses(this);
+            }
+        }
+        
+        public final void setDefinition(Variable variable) {
+            Function function = block == null ? null : block.getFunction();
+            if (function != null) {
+                function.unindexDefinition(this);
+            }
+            assignDefinition(variable);
+            if (function != null) {
+                function.indexDefinition(this);
+            }
+        }
+        
+        protected abstract void rewriteUses(UnaryOperator<Operand> mapping);
+        
+        protected void assignDefinition(Variable variable) {
+            throw new UnsupportedOperationException(getClass().getSimpleName() + " defines no variable");
+        }
+        
+        // Jump, ConditionalJump and Return end a basic block
+        public boolean isTerminator() {
+            return false;
+        }
+        
+        // Labels a terminator may transfer control to
+        public List<Label> getTargets() {
+            return List.of();
+        }
+        
+        @Override
+        public String toString() {
+            return instructionToString();
+        }
+        
+        // A detached copy that reads and writes `operands` applied to the original operands
+        // and branches to `labels` applied to the original targets
+        public abstract Instruction copy(UnaryOperator<Operand> operands, UnaryOperator<Label> labels);
+        
         // Subclasses override this to provide instruction-specific string
         protected abstract String instructionToString();
     }
     
     public static class BinaryOperation extends Instruction {
-        private String result;
-        private String left;
+        private Variable result;
+        private Operand left;
         private String operator;
-        private String right;
+        private Operand right;
         
-        public BinaryOperation(String result, String left, String operator, String right) {
+        public BinaryOperation(Variable result, Operand left, String operator, Operand right) {
             this.result = result;
             this.left = left;
             this.operator = operator;
             this.right = right;
         }
         
-        public String getResult() {
+        public Variable getResult() {
             return result;
         }
         
-        public String getLeft() {
+        public Operand getLeft() {
             return left;
         }
         
@@ -128,10 +817,37 @@ public class ThreeAddressCode {
             return operator;
         }
         
-        public String getRight() {
+        public Operand getRight() {
             return right;
         }
         
+        @Override
+        public Variable getDefinition() {
+            return result;
+        }
+        
+        @Override
+        public List<Operand> getUses() {
+            return List.of(left, right);
+        }
+        
+        @Override
+        protected void rewriteUses(UnaryOperator<Operand> mapping) {
+            left = mapping.apply(left);
+            right = mapping.apply(right);
+        }
+        
+        @Override
+        protected void assignDefinition(Variable variable) {
+            result = variable;
+        }
+        
+        @Override
+        public Instruction copy(UnaryOperator<Operand> operands, UnaryOperator<Label> labels) {
+            return new BinaryOperation((Variable) operands.apply(result), operands.apply(left), operator,
+                    operands.apply(right));
+        }
+        
         @Override
         protected String instructionToString() {
             return result + " = " + left + " " + operator + " " + right;
@@ -139,17 +855,17 @@ public class ThreeAddressCode {
     }
     
     public static class UnaryOperation extends Instruction {
-        private String result;
+        private Variable result;
         private String operator;
-        private String operand;
+        private Operand operand;
         
-        public UnaryOperation(String result, String operator, String operand) {
+        public UnaryOperation(Variable result, String operator, Operand operand) {
             this.result = result;
             this.operator = operator;
             this.operand = operand;
         }
         
-        public String getResult() {
+        public Variable getResult() {
             return result;
         }
         
@@ -157,10 +873,35 @@ public class ThreeAddressCode {
             return operator;
         }
         
-        public String getOperand() {
+        public Operand getOperand() {
             return operand;
         }
         
+        @Override
+        public Variable getDefinition() {
+            return result;
+        }
+        
+        @Override
+        public List<Operand> getUses() {
+            return List.of(operand);
+        }
+        
+        @Override
+        protected void rewriteUses(UnaryOperator<Operand> mapping) {
+            operand = mapping.apply(operand);
+        }
+        
+        @Override
+        protected void assignDefinition(Variable variable) {
+            result = variable;
+        }
+        
+        @Override
+        public Instruction copy(UnaryOperator<Operand> operands, UnaryOperator<Label> labels) {
+            return new UnaryOperation((Variable) operands.apply(result), operator, operands.apply(operand));
+        }
+        
         @Override
         protected String instructionToString() {
             return result + " = " + operator + " " + operand;
@@ -168,40 +909,129 @@ public class ThreeAddressCode {
     }
     
     public static class Copy extends Instruction {
-        private String destination;
-        private String source;
+        private Variable destination;
+        private Operand source;
         
-        public Copy(String destination, String source) {
+        public Copy(Variable destination, Operand source) {
             this.destination = destination;
             this.source = source;
         }
         
-        public String getDestination() {
+        public Variable getDestination() {
             return destination;
         }
         
-        public String getSource() {
+        public Operand getSource() {
             return source;
         }
         
+        @Override
+        public Variable getDefinition() {
+            return destination;
+        }
+        
+        @Override
+        public List<Operand> getUses() {
+            return List.of(source);
+        }
+        
+        @Override
+        protected void rewriteUses(UnaryOperator<Operand> mapping) {
+            source = mapping.apply(source);
+        }
+        
+        @Override
+        protected void assignDefinition(Variable variable) {
+            destination = variable;
+        }
+        
+        @Override
+        public Instruction copy(UnaryOperator<Operand> operands, UnaryOperator<Label> labels) {
+            return new Copy((Variable) operands.apply(destination), operands.apply(source));
+        }
+        
         @Override
         protected String instructionToString() {
             return destination + " = " + source;
         }
     }
     
+    // result = condition ? ifTrue : ifFalse, without branching; both values are evaluated
+    public static class Select extends Instruction {
+        private Variable result;
+        private Operand condition;
+        private Operand ifTrue;
+        private Operand ifFalse;
+        
+        public Select(Variable result, Operand condition, Operand ifTrue, Operand ifFalse) {
+            this.result = result;
+            this.condition = condition;
+            this.ifTrue = ifTrue;
+            this.ifFalse = ifFalse;
+        }
+        
+        public Variable getResult() {
+            return result;
+        }
+        
+        public Operand getCondition() {
+            return condition;
+        }
+        
+        public Operand getIfTrue() {
+            return ifTrue;
+        }
+        
+        public Operand getIfFalse() {
+            return ifFalse;
+        }
+        
+        @Override
+        public Variable getDefinition() {
+            return result;
+        }
+        
+        @Override
+        public List<Operand> getUses() {
+            return List.of(condition, ifTrue, ifFalse);
+        }
+        
+        @Override
+        protected void rewriteUses(UnaryOperator<Operand> mapping) {
+            condition = mapping.apply(condition);
+            ifTrue = mapping.apply(ifTrue);
+            ifFalse = mapping.apply(ifFalse);
+        }
+        
+        @Override
+        protected void assignDefinition(Variable variable) {
+            result = variable;
+        }
+        
+        @Override
+        public Instruction copy(UnaryOperator<Operand> operands, UnaryOperator<Label> labels) {
+            return new Select((Variable) operands.apply(result), operands.apply(condition), operands.apply(ifTrue),
+                    operands.apply(ifFalse));
+        }
+        
+        @Override
+        protected String instructionToString() {
+            return result + " = " + condition + " ? " + ifTrue + " : " + ifFalse;
+        }
+    }
+    
     public static class FunctionCall extends Instruction {
-        private String result;
+        private Variable result;
         private String function;
-        private List<String> arguments;
+        private List<Operand> arguments;
         
-        public FunctionCall(String result, String function, List<String> arguments) {
+        public FunctionCall(Variable result, String function, List<Operand> arguments) {
             this.result = result;
             this.function = function;
-            this.arguments = arguments;
+            this.arguments = new ArrayList<>(arguments);
         }
         
-        public String getResult() {
+        public Variable getResult() {
             return result;
         }
         
@@ -209,8 +1039,35 @@ public class ThreeAddressCode {
             return function;
         }
         
-        public List<String> getArguments() {
-            return arguments;
+        public List<Operand> getArguments() {
+            return Collections.unmodifiableList(arguments);
+        }
+        
+        @Override
+        public Variable getDefinition() {
+            return result;
+        }
+        
+        @Override
+        public List<Operand> getUses() {
+            return Collections.unmodifiableList(arguments);
+        }
+        
+        @Override
+        protected void rewriteUses(UnaryOperator<Operand> mapping) {
+            arguments.replaceAll(mapping);
+        }
+        
+        @Override
+        protected void assignDefinition(Variable variable) {
+            result = variable;
+        }
+        
+        @Override
+        public Instruction copy(UnaryOperator<Operand> operands, UnaryOperator<Label> labels) {
+            List<Operand> copied = new ArrayList<>(arguments);
+            copied.replaceAll(operands);
+            return new FunctionCall(result == null ? null : (Variable) operands.apply(result), function, copied);
         }
         
         @Override
@@ -232,16 +1089,40 @@ public class ThreeAddressCode {
     }
     
     public static class Jump extends Instruction {
-        private String target;
+        private Label target;
         
-        public Jump(String target) {
+        public Jump(Label target) {
             this.target = target;
         }
         
-        public String getTarget() {
+        public Label getTarget() {
             return target;
         }
         
+        @Override
+        public boolean isTerminator() {
+            return true;
+        }
+        
+        @Override
+        public List<Label> getTargets() {
+            return List.of(target);
+        }
+        
+        @Override
+        public List<Operand> getUses() {
+            return List.of();
+        }
+        
+        @Override
+        protected void rewriteUses(UnaryOperator<Operand> mapping) {
+        }
+        
+        @Override
+        public Instruction copy(UnaryOperator<Operand> operands, UnaryOperator<Label> labels) {
+            return new Jump(labels.apply(target));
+        }
+        
         @Override
         protected String instructionToString() {
             return "goto " + target;
@@ -249,28 +1130,53 @@ public class ThreeAddressCode {
     }
     
     public static class ConditionalJump extends Instruction {
-        private String condition;
-        private String trueTarget;
-        private String falseTarget;
+        private Operand condition;
+        private Label trueTarget;
+        private Label falseTarget;
         
-        public ConditionalJump(String condition, String trueTarget, String falseTarget) {
+        public ConditionalJump(Operand condition, Label trueTarget, Label falseTarget) {
             this.condition = condition;
             this.trueTarget = trueTarget;
             this.falseTarget = falseTarget;
         }
         
-        public String getCondition() {
+        public Operand getCondition() {
             return condition;
         }
         
-        public String getTrueTarget() {
+        public Label getTrueTarget() {
             return trueTarget;
         }
         
-        public String getFalseTarget() {
+        public Label getFalseTarget() {
             return falseTarget;
         }
         
+        @Override
+        public boolean isTerminator() {
+            return true;
+        }
+        
+        @Override
+        public List<Label> getTargets() {
+            return List.of(trueTarget, falseTarget);
+        }
+        
+        @Override
+        public List<Operand> getUses() {
+            return List.of(condition);
+        }
+        
+        @Override
+        protected void rewriteUses(UnaryOperator<Operand> mapping) {
+            condition = mapping.apply(condition);
+        }
+        
+        @Override
+        public Instruction copy(UnaryOperator<Operand> operands, UnaryOperator<Label> labels) {
+            return new ConditionalJump(operands.apply(condition), labels.apply(trueTarget), labels.apply(falseTarget));
+        }
+        
         @Override
         protected String instructionToString() {
             return "if " + condition + " goto " + trueTarget + " else goto " + falseTarget;
@@ -278,19 +1184,116 @@ public class ThreeAddressCode {
     }
     
     public static class Return extends Instruction {
-        private String value;
+        private Operand value;
         
-        public Return(String value) {
+        public Return(Operand value) {
             this.value = value;
         }
         
-        public String getValue() {
+        public Operand getValue() {
             return value;
         }
         
+        @Override
+        public boolean isTerminator() {
+            return true;
+        }
+        
+        @Override
+        public List<Operand> getUses() {
+            return value != null ? List.of(value) : List.of();
+        }
+        
+        @Override
+        protected void rewriteUses(UnaryOperator<Operand> mapping) {
+            if (value != null) {
+                value = mapping.apply(value);
+            }
+        }
+        
+        @Override
+        public Instruction copy(UnaryOperator<Operand> operands, UnaryOperator<Label> labels) {
+            return new Return(value == null ? null : operands.apply(value));
+        }
+        
         @Override
         protected String instructionToString() {
             return value != null ? "return " + value : "return";
         }
     }
+    
+    // SSA merge: takes the value flowing in from the predecessor block with the given label.
+    // Phis only appear at the start of a block while a function is in SSA form.
+    public static class Phi extends Instruction {
+        private Variable result;
+        private Map<Label, Operand> incoming;
+        
+        public Phi(Variable result) {
+            this.result = result;
+            this.incoming = new LinkedHashMap<>();
+        }
+        
+        public Variable getResult() {
+            return result;
+        }
+        
+        public Map<Label, Operand> getIncoming() {
+            return Collections.unmodifiableMap(incoming);
+        }
+        
+        public Operand getIncoming(Label predecessor) {
+            return incoming.get(predecessor);
+        }
+        
+        public void setIncoming(Label predecessor, Operand value) {
+            updateUses(() -> incoming.put(predecessor, value));
+        }
+        
+        public void removeIncoming(Label predecessor) {
+            updateUses(() -> incoming.remove(predecessor));
+        }
+        
+        @Override
+        public Variable getDefinition() {
+            return result;
+        }
+        
+        @Override
+        protected void assignDefinition(Variable variable) {
+            result = variable;
+        }
+        
+        @Override
+        public List<Operand> getUses() {
+            return new ArrayList<>(incoming.values());
+        }
+        
+        @Override
+        protected void rewriteUses(UnaryOperator<Operand> mapping) {
+            incoming.replaceAll((label, value) -> mapping.apply(value));
+        }
+        
+        @Override
+        public Instruction copy(UnaryOperator<Operand> operands, UnaryOperator<Label> labels) {
+            Phi copy = new Phi((Variable) operands.apply(result));
+            incoming.forEach((label, value) -> copy.incoming.put(labels.apply(label), operands.apply(value)));
+            return copy;
+        }
+        
+        @Override
+        protected String instructionToString() {
+            StringBuilder sb = new StringBuilder();
+            sb.append(result).append(" = phi(");
+            boolean first = true;
+            for (Map.Entry<Label, Operand> entry : incoming.entrySet()) {
+                if (!first) {
+                    sb.append(", ");
+                }
+                sb.append(entry.getKey()).append(": ").append(entry.getValue());
+                first = false;
+            }
+            sb.append(")");
+            return sb.toString();
+        }
+    }
 }
@@ -0,0 +1,70 @@
+package optimizer;
+
+import ir.DominatorTree;
+import ir.LoopInfo;
+import ir.ThreeAddressCode.Function;
+
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiFunction;
+
+// Per-function cache of analysis results. Passes ask for what they need; once a pass
+// changes a function, the pass manager drops every result the pass did not declare
+// preserved, so each analysis is computed at most once between changes.
+public class AnalysisCache {
+    // Analyses that depend only on the shape of the CFG
+    public static final Set<Class<?>> CONTROL_FLOW = Set.of(DominatorTree.class, LoopInfo.class);
+
+    private final Map<Function, Map<Class<?>, Object>> results;
+    private final Map<Class<?>, BiFunction<Function, AnalysisCache, ?>> factories;
+    private int computations;
+
+    public AnalysisCache() {
+        this.results = new IdentityHashMap<>();
+        this.factories = new HashMap<>();
+        register(DominatorTree.class, (function, analyses) -> new DominatorTree(function));
+        register(LoopInfo.class, (function, analyses) -> new LoopInfo(analyses.get(DominatorTree.class, function)));
+        register(Liveness.class, (function, analyses) -> new Liveness(function));
+        register(ReachingDefinitions.class, (function, analyses) -> new ReachingDefinitions(function));
+        register(AvailableExpressions.class, (function, analyses) -> new AvailableExpressions(function));
+        register(AvailableCopies.class, (function, analyses) -> new AvailableCopies(function));
+    }
+
+    public <T> void register(Class<T> type, BiFunction<Function, AnalysisCache, T> factory) {
+        factories.put(type, factory);
+    }
+
+    public <T> T get(Class<T> type, Function function) {
+        Map<Class<?>, Object> cached = results.computeIfAbsent(function, f -> new HashMap<>());
+        Object result = cached.get(type);
+        if (result == null) {
+            BiFunction<Function, AnalysisCache, ?> factory = factories.get(type);
+            if (factory == null) {
+                throw new IllegalArgumentException("No analysis registered for " + type.getSimpleName());
+            }
+            result = factory.apply(function, this);
+            computations++;
+            cached.put(type, result);
+        }
+        return type.cast(result);
+    }
+
+    // Drops the function's results except the preserved ones
+    public void invalidate(Function function, Set<Class<?>> preserved) {
+        Map<Class<?>, Object> cached = results.get(function);
+        if (cached != null) {
+            cached.keySet().retainAll(preserved);
+        }
+    }
+
+    public void invalidateAll() {
+        results.clear();
+    }
+
+    // Number of analysis results computed so far
+    public int getComputations() {
+        return computations;
+    }
+}
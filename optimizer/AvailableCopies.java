@@ -0,0 +1,141 @@
+package optimizer;
+
+import ir.Operand;
+import ir.Operand.*;
+import ir.ThreeAddressCode.*;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+// Available copies: a copy `d = s` is available at a point if every path to it executes
+// the copy and neither d nor s is assigned afterwards, so d can be read as s there.
+// Forward, intersection. Only copies of variables and numeric constants are tracked,
+// and only if the destination is read in some other block or by another copy, which
+// may carry it on: a copy read only where it is made is handled by the scan within the
+// block, and leaving it out keeps the sets small in functions full of single-block
+// temporaries. Copies of variables read all over a large function still make the sets
+// grow with blocks times copies.
+public class AvailableCopies extends DataflowAnalysis {
+    public record Assignment(Variable destination, Operand source) {
+        // The assignment a copy performs, or null if it is not tracked. A copy between
+        // different types converts, so its destination cannot stand for its source.
+        public static Assignment of(Instruction instruction) {
+            if (!(instruction instanceof Copy copy) || copy.getDestination().equals(copy.getSource())
+                    || !(copy.getSource() instanceof Variable || copy.getSource() instanceof IntConst
+                            || copy.getSource() instanceof FloatConst)) {
+                return null;
+            }
+            Function function = copy.getBlock().getFunction();
+            if (!Objects.equals(function.getType(copy.getDestination()), function.getType(copy.getSource()))) {
+                return null;
+            }
+            return new Assignment(copy.getDestination(), copy.getSource());
+        }
+
+        @Override
+        public String toString() {
+            return destination + " = " + source;
+        }
+    }
+
+    private final List<Assignment> assignments;
+    private final Map<Assignment, Integer> assignmentIndex;
+    private final Map<Variable, List<Integer>> assignmentsInvolving;
+
+    public AvailableCopies(Function function) {
+        super(function, Direction.FORWARD, Meet.INTERSECTION);
+        this.assignments = new ArrayList<>();
+        this.assignmentIndex = new HashMap<>();
+        this.assignmentsInvolving = new HashMap<>();
+        for (BasicBlock block : function.getBlocks()) {
+            for (Instruction instruction : block) {
+                Assignment assignment = Assignment.of(instruction);
+                if (assignment != null && !assignmentIndex.containsKey(assignment)
+                        && isReadAcrossBlocks(function, assignment.destination(), block)) {
+                    assignmentIndex.put(assignment, assignments.size());
+                    assignments.add(assignment);
+                }
+            }
+        }
+        for (int i = 0; i < assignments.size(); i++) {
+            Assignment assignment = assignments.get(i);
+            assignmentsInvolving.computeIfAbsent(assignment.destination(), v -> new ArrayList<>()).add(i);
+            if (assignment.source() instanceof Variable source) {
+                assignmentsInvolving.computeIfAbsent(source, v -> new ArrayList<>()).add(i);
+            }
+        }
+        solve();
+    }
+
+    private static boolean isReadAcrossBlocks(Function function, Variable variable, BasicBlock block) {
+        for (Instruction use : function.getUses(variable)) {
+            if (use instanceof Copy || use.getBlock() != block) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    protected int universeSize() {
+        return assignments.size();
+    }
+
+    @Override
+    protected void initializeBlock(BasicBlock block, long[] gen, long[] kill) {
+        // A variable assigned over and over is part of as many copies, so the kill set is
+        // built once per assigned variable and gen only revisits copies generated here
+        Set<Variable> assigned = new HashSet<>();
+        Map<Variable, List<Integer>> generatedInvolving = new HashMap<>();
+        for (Instruction instruction : block) {
+            Variable def = instruction.getDefinition();
+            if (def != null) {
+                assigned.add(def);
+                for (int i : generatedInvolving.getOrDefault(def, List.of())) {
+                    clear(gen, i);
+                }
+                generatedInvolving.remove(def);
+            }
+            Assignment assignment = Assignment.of(instruction);
+            Integer i = assignment == null ? null : assignmentIndex.get(assignment);
+            if (i != null) {
+                set(gen, i);
+                generatedInvolving.computeIfAbsent(assignment.destination(), v -> new ArrayList<>()).add(i);
+                if (assignment.source() instanceof Variable source) {
+                    generatedInvolving.computeIfAbsent(source, v -> new ArrayList<>()).add(i);
+                }
+            }
+        }
+        for (Variable variable : assigned) {
+            for (int i : assignmentsInvolving.getOrDefault(variable, List.of())) {
+                set(kill, i);
+            }
+        }
+    }
+
+    // Destination to source for the copies available at the block's entry
+    public Map<Variable, Operand> getAvailableIn(BasicBlock block) {
+        return toMap(blockIn(block));
+    }
+
+    public Map<Variable, Operand> getAvailableOut(BasicBlock block) {
+        return toMap(blockOut(block));
+    }
+
+    // A destination has at most one available source: its last assignment killed the others
+    private Map<Variable, Operand> toMap(long[] facts) {
+        Map<Variable, Operand> result = new LinkedHashMap<>();
+        if (facts != null) {
+            for (int i = nextSetBit(facts, 0); i >= 0; i = nextSetBit(facts, i + 1)) {
+                result.put(assignments.get(i).destination(), assignments.get(i).source());
+            }
+        }
+        return result;
+    }
+}
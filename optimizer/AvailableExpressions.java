@@ -0,0 +1,117 @@
+package optimizer;
+
+import ir.Operand;
+import ir.Operand.Variable;
+import ir.ThreeAddressCode.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// Available expressions: an expression is available at a point if every path to it
+// computes the expression and none of its operands is redefined afterwards. Forward,
+// intersection. Calls cannot write locals in this language, so only definitions kill.
+public class AvailableExpressions extends DataflowAnalysis {
+    // Right is null for unary operators
+    public record Expression(String operator, Operand left, Operand right) {
+        // The expression an instruction computes, or null if it is not a pure computation
+        public static Expression of(Instruction instruction) {
+            if (instruction instanceof BinaryOperation binOp) {
+                return new Expression(binOp.getOperator(), binOp.getLeft(), binOp.getRight());
+            } else if (instruction instanceof UnaryOperation unary) {
+                return new Expression(unary.getOperator(), unary.getOperand(), null);
+            }
+            return null;
+        }
+
+        public boolean uses(Variable variable) {
+            return variable.equals(left) || variable.equals(right);
+        }
+
+        @Override
+        public String toString() {
+            return right == null ? operator + left : left + " " + operator + " " + right;
+        }
+    }
+
+    private final List<Expression> expressions;
+    private final Map<Expression, Integer> expressionIndex;
+    private final Map<Variable, long[]> expressionsUsing;
+
+    public AvailableExpressions(Function function) {
+        super(function, Direction.FORWARD, Meet.INTERSECTION);
+        this.expressions = new ArrayList<>();
+        this.expressionIndex = new HashMap<>();
+        this.expressionsUsing = new HashMap<>();
+        for (BasicBlock block : function.getBlocks()) {
+            for (Instruction instruction : block) {
+                Expression expression = Expression.of(instruction);
+                if (expression != null && !expressionIndex.containsKey(expression)) {
+                    expressionIndex.put(expression, expressions.size());
+                    expressions.add(expression);
+                }
+            }
+        }
+        for (int i = 0; i < expressions.size(); i++) {
+            Expression expression = expressions.get(i);
+            for (Operand operand : new Operand[] { expression.left(), expression.right() }) {
+                if (operand instanceof Variable variable) {
+                    set(expressionsUsing.computeIfAbsent(variable, v -> newSet()), i);
+                }
+            }
+        }
+        solve();
+    }
+
+    @Override
+    protected int universeSize() {
+        return expressions.size();
+    }
+
+    @Override
+    protected void initializeBlock(BasicBlock block, long[] gen, long[] kill) {
+        for (Instruction instruction : block) {
+            Expression expression = Expression.of(instruction);
+            if (expression != null) {
+                set(gen, expressionIndex.get(expression));
+            }
+            Variable def = instruction.getDefinition();
+            if (def != null && expressionsUsing.containsKey(def)) {
+                long[] killed = expressionsUsing.get(def);
+                for (int w = 0; w < gen.length; w++) {
+                    gen[w] &= ~killed[w];
+                    kill[w] |= killed[w];
+                }
+            }
+        }
+    }
+
+    public Set<Expression> getAvailableIn(BasicBlock block) {
+        return toSet(blockIn(block));
+    }
+
+    public Set<Expression> getAvailableOut(BasicBlock block) {
+        return toSet(blockOut(block));
+    }
+
+    public boolean isAvailableIn(BasicBlock block, Expression expression) {
+        long[] facts = blockIn(block);
+        Integer i = expressionIndex.get(expression);
+        return facts != null && i != null && get(facts, i);
+    }
+
+    private Set<Expression> toSet(long[] facts) {
+        if (facts == null) {
+            return Set.of();
+        }
+        Set<Expression> result = new LinkedHashSet<>();
+        for (int i = nextSetBit(facts, 0); i >= 0; i = nextSetBit(facts, i + 1)) {
+            result.add(expressions.get(i));
+        }
+        return Collections.unmodifiableSet(result);
+    }
+}
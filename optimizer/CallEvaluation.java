@@ -0,0 +1,133 @@
+package optimizer;
+
+import ir.Interpreter;
+import ir.Operand;
+import ir.Operand.*;
+import ir.ThreeAddressCode;
+import ir.ThreeAddressCode.*;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Compile-time evaluation of calls. A call to a pure function whose arguments are all
+// constants is run in the interpreter, and the call is replaced by a copy of the result,
+// or dropped if it has none. Every evaluation gets `fuel` steps and `depth` nested calls,
+// which default to the system properties compiler.evalcalls.fuel and
+// compiler.evalcalls.depth; a call that runs out, or fails at run time, stays. Results
+// are cached, so repeated calls with the same arguments are run once.
+public class CallEvaluation implements ModulePass {
+    public static final int DEFAULT_FUEL = 100_000;
+    public static final int DEFAULT_DEPTH = 1_000;
+
+    // A call by value; the arguments are in the interpreter's raw encoding
+    private record Key(String function, List<Long> arguments) {
+    }
+
+    private final int fuel;
+    private final int depth;
+
+    public CallEvaluation() {
+        this(Integer.getInteger("compiler.evalcalls.fuel", DEFAULT_FUEL),
+                Integer.getInteger("compiler.evalcalls.depth", DEFAULT_DEPTH));
+    }
+
+    public CallEvaluation(int fuel, int depth) {
+        this.fuel = fuel;
+        this.depth = depth;
+    }
+
+    @Override
+    public String getName() {
+        return "evalcalls";
+    }
+
+    @Override
+    public boolean run(ThreeAddressCode module, AnalysisCache analyses) {
+        CallGraph graph = new CallGraph(module);
+        Purity purity = new Purity(graph);
+        List<FunctionCall> calls = new ArrayList<>();
+        for (Function caller : module.getFunctions()) {
+            for (BasicBlock block : caller.getBlocks()) {
+                for (Instruction inst : block) {
+                    if (inst instanceof FunctionCall call && graph.getFunction(call.getFunction()) != null
+                            && purity.isPure(graph.getFunction(call.getFunction()))
+                            && isEvaluable(caller, graph.getFunction(call.getFunction()), call)) {
+                        calls.add(call);
+                    }
+                }
+            }
+        }
+        if (calls.isEmpty()) {
+            return false;
+        }
+
+        // Every call is evaluated before any is replaced, so the interpreter sees the
+        // module it was created for
+        Interpreter interpreter = new Interpreter(module);
+        interpreter.setMaxDepth(depth);
+        Map<Key, Long> results = new HashMap<>();
+        Map<FunctionCall, Long> evaluated = new LinkedHashMap<>();
+        for (FunctionCall call : calls) {
+            List<Long> arguments = new ArrayList<>();
+            for (Operand argument : call.getArguments()) {
+                arguments.add(argument instanceof IntConst c
+                        ? Interpreter.toRaw(c.value())
+                        : Interpreter.toRaw(((FloatConst) argument).value()));
+            }
+            Key key = new Key(call.getFunction(), arguments);
+            if (!results.containsKey(key)) {
+                results.put(key, evaluate(interpreter, key));
+            }
+            if (results.get(key) != null) {
+                evaluated.put(call, results.get(key));
+            }
+        }
+
+        for (Map.Entry<FunctionCall, Long> entry : evaluated.entrySet()) {
+            FunctionCall call = entry.getKey();
+            BasicBlock block = call.getBlock();
+            if (call.getResult() == null) {
+                block.removeInstruction(call);
+                continue;
+            }
+            Function callee = graph.getFunction(call.getFunction());
+            Constant value = callee.getReturnType().equals("float")
+                    ? new FloatConst((Float) interpreter.fromRaw(entry.getValue(), "float"))
+                    : new IntConst((Integer) interpreter.fromRaw(entry.getValue(), "int"));
+            block.replaceInstruction(call, new Copy(call.getResult(), value));
+        }
+        return !evaluated.isEmpty();
+    }
+
+    // Constant arguments matching the parameters, and a result of the returned type
+    private static boolean isEvaluable(Function caller, Function callee, FunctionCall call) {
+        if (!CallGraph.matchesParameters(caller, callee, call)) {
+            return false;
+        }
+        for (Operand argument : call.getArguments()) {
+            if (!(argument instanceof Constant)) {
+                return false;
+            }
+        }
+        String type = callee.getReturnType();
+        return call.getResult() == null
+                || (type.equals("int") || type.equals("float")) && type.equals(caller.getType(call.getResult()));
+    }
+
+    // The raw result, or null if the run fails or exceeds its budget
+    private Long evaluate(Interpreter interpreter, Key key) {
+        interpreter.setFuel(fuel);
+        long[] arguments = new long[key.arguments().size()];
+        for (int i = 0; i < arguments.length; i++) {
+            arguments[i] = key.arguments().get(i);
+        }
+        try {
+            return interpreter.invokeRaw(key.function(), arguments);
+        } catch (Interpreter.ExecutionException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package optimizer;
+
+import ir.Operand;
+import ir.ThreeAddressCode;
+import ir.ThreeAddressCode.*;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// Direct calls between the functions of a module, as of construction. Calls to names the
+// module does not define, such as println, are not edges.
+public class CallGraph {
+    private final Map<String, Function> functions;
+    private final Map<Function, Set<Function>> callees;
+    private final Map<Function, List<FunctionCall>> callSites;
+    private List<List<Function>> components;
+
+    public CallGraph(ThreeAddressCode module) {
+        this.functions = new LinkedHashMap<>();
+        this.callees = new HashMap<>();
+        this.callSites = new HashMap<>();
+        for (Function function : module.getFunctions()) {
+            functions.put(function.getName(), function);
+            callees.put(function, new LinkedHashSet<>());
+            callSites.put(function, new ArrayList<>());
+        }
+        for (Function function : module.getFunctions()) {
+            for (BasicBlock block : function.getBlocks()) {
+                for (Instruction inst : block) {
+                    if (inst instanceof FunctionCall call && functions.containsKey(call.getFunction())) {
+                        Function callee = functions.get(call.getFunction());
+                        callees.get(function).add(callee);
+                        callSites.get(callee).add(call);
+                    }
+                }
+            }
+        }
+    }
+
+    // The module's function with this name, or null
+    public Function getFunction(String name) {
+        return functions.get(name);
+    }
+
+    public Set<Function> getCallees(Function function) {
+        return callees.get(function);
+    }
+
+    // Every call to the function in the module
+    public List<FunctionCall> getCallSites(Function function) {
+        return callSites.get(function);
+    }
+
+    // Functions reachable from `root` through calls, including itself
+    public Set<Function> getReachable(Function root) {
+        Set<Function> reached = new LinkedHashSet<>();
+        Deque<Function> worklist = new ArrayDeque<>();
+        reached.add(root);
+        worklist.add(root);
+        while (!worklist.isEmpty()) {
+            for (Function callee : callees.get(worklist.poll())) {
+                if (reached.add(callee)) {
+                    worklist.add(callee);
+                }
+            }
+        }
+        return reached;
+    }
+
+    // True if the call passes as many arguments as the callee has parameters, each of
+    // the parameter's type. Passes that rewrite a call in terms of the callee's body
+    // leave any other call alone.
+    public static boolean matchesParameters(Function caller, Function callee, FunctionCall call) {
+        List<String> parameters = callee.getParameters();
+        List<Operand> arguments = call.getArguments();
+        if (arguments.size() != parameters.size()) {
+            return false;
+        }
+        for (int i = 0; i < arguments.size(); i++) {
+            if (!callee.getVariables().get(parameters.get(i)).equals(caller.getType(arguments.get(i)))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // True if the function can reach itself through calls
+    public boolean isRecursive(Function function) {
+        for (List<Function> component : getStronglyConnectedComponents()) {
+            if (component.contains(function)) {
+                return component.size() > 1 || callees.get(function).contains(function);
+            }
+        }
+        return false;
+    }
+
+    // Strongly connected components (Tarjan), each one after every component it calls
+    // into, so walking the list visits callees before their callers
+    public List<List<Function>> getStronglyConnectedComponents() {
+        if (components == null) {
+            components = new ArrayList<>();
+            Map<Function, Integer> index = new HashMap<>();
+            Map<Function, Integer> lowLink = new HashMap<>();
+            Deque<Function> stack = new ArrayDeque<>();
+            Set<Function> onStack = new HashSet<>();
+            for (Function function : functions.values()) {
+                if (!index.containsKey(function)) {
+                    connect(function, index, lowLink, stack, onStack);
+                }
+            }
+        }
+        return components;
+    }
+
+    private void connect(Function function, Map<Function, Integer> index, Map<Function, Integer> lowLink,
+            Deque<Function> stack, Set<Function> onStack) {
+        index.put(function, index.size());
+        lowLink.put(function, index.get(function));
+        stack.push(function);
+        onStack.add(function);
+        for (Function callee : callees.get(function)) {
+            if (!index.containsKey(callee)) {
+                connect(callee, index, lowLink, stack, onStack);
+                lowLink.put(function, Math.min(lowLink.get(function), lowLink.get(callee)));
+            } else if (onStack.contains(callee)) {
+                lowLink.put(function, Math.min(lowLink.get(function), index.get(callee)));
+            }
+        }
+        if (lowLink.get(function).equals(index.get(function))) {
+            List<Function> component = new ArrayList<>();
+            Function member;
+            do {
+                member = stack.pop();
+                onStack.remove(member);
+                component.add(member);
+            } while (member != function);
+            components.add(component);
+        }
+    }
+}
@@ -0,0 +1,579 @@
+package optimizer;
+
+import ir.DominatorTree;
+import ir.Operand;
+import ir.Operand.*;
+import ir.SSA;
+import ir.ThreeAddressCode.*;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// Sparse conditional constant propagation (Wegman and Zadeck). Every definition has a
+// lattice value: unknown (not evaluated on an executable path yet), a single int or
+// float constant, or overdefined. Blocks are only evaluated once an executable edge
+// reaches them, and a conditional jump on a constant makes just one of its edges
+// executable, so definitions on paths that can never run do not spoil the merge.
+//
+// Values travel along def-use chains, so the work is proportional to the code and its
+// chains rather than to blocks times variables. The function need not be in SSA form:
+// where definitions of a variable that is read across blocks meet, at the iterated
+// dominance frontier of its definitions, a merge stands in for the phi SSA form would
+// have, and every read sees the nearest definition or merge that dominates it. A merge,
+// like a phi, meets the values its executable incoming edges carry. A variable's entry
+// value, such as a parameter's, is overdefined.
+//
+// Afterwards every use of a constant variable is replaced by the constant, constant
+// results become copies, conditional jumps on constants become jumps, and blocks that
+// were never reached are deleted. Integer division by zero is left to trap at run time,
+// and float results that are not finite are not folded.
+public class ConditionalConstantPropagation implements FunctionPass {
+    private static final Object BOTTOM = new Object(); // overdefined; unknown is null
+    // The definition a read sees before any assignment
+    private static final Object ENTRY = new Object();
+
+    private record Edge(BasicBlock from, BasicBlock to) {
+    }
+
+    // Where definitions of a variable meet, as a phi would in SSA form
+    private static final class Merge {
+        private final Variable variable;
+        private final BasicBlock block;
+        // The definition seen at the end of each predecessor
+        private final Map<BasicBlock, Object> incoming = new HashMap<>();
+
+        Merge(Variable variable, BasicBlock block) {
+            this.variable = variable;
+            this.block = block;
+        }
+    }
+
+    private Function function;
+    // Def-use chains; a definition is an instruction, a merge or ENTRY. A phi reads its
+    // operands at the end of each predecessor.
+    private Map<Instruction, Map<Variable, Object>> reaching;
+    private Map<Phi, Map<BasicBlock, Object>> incomingDefinitions;
+    private Map<Object, List<Object>> readers;
+    private Map<BasicBlock, List<Merge>> merges;
+
+    private Map<Object, Object> values;
+    private Set<BasicBlock> executable;
+    private Set<Edge> executableEdges;
+    private Deque<BasicBlock> flowWorklist;
+    private Deque<Object> ssaWorklist;
+    private Set<Object> queued;
+
+    @Override
+    public String getName() {
+        return "ccp";
+    }
+
+    @Override
+    public boolean run(Function func, AnalysisCache analyses) {
+        if (func.getEntryBlock() == null) {
+            return false;
+        }
+        function = func;
+        buildChains(analyses.get(DominatorTree.class, func));
+        solve();
+
+        boolean changed = false;
+        for (BasicBlock block : func.getBlocks()) {
+            if (executable.contains(block)) {
+                changed |= rewrite(block);
+            }
+        }
+        int blockCount = func.getBlocks().size();
+        SSA.removeUnreachableBlocks(func);
+        return changed || func.getBlocks().size() != blockCount;
+    }
+
+    // ---------------------------------------------------------------- def-use chains
+
+    private void buildChains(DominatorTree dominators) {
+        reaching = new HashMap<>();
+        incomingDefinitions = new HashMap<>();
+        readers = new HashMap<>();
+        merges = new HashMap<>();
+        values = new HashMap<>();
+        values.put(ENTRY, BOTTOM);
+        placeMerges(dominators);
+
+        // Preorder walk of the dominator tree, keeping the visible definition of each
+        // variable on a stack
+        Map<Variable, Deque<Object>> stacks = new HashMap<>();
+        Deque<BasicBlock> walk = new ArrayDeque<>();
+        Deque<List<Variable>> pushedPerBlock = new ArrayDeque<>();
+        Deque<Integer> nextChild = new ArrayDeque<>();
+        BasicBlock entry = function.getEntryBlock();
+        walk.push(entry);
+        pushedPerBlock.push(linkBlock(entry, stacks));
+        nextChild.push(0);
+        while (!walk.isEmpty()) {
+            BasicBlock block = walk.peek();
+            int child = nextChild.pop();
+            List<BasicBlock> children = dominators.getChildren(block);
+            if (child < children.size()) {
+                nextChild.push(child + 1);
+                BasicBlock next = children.get(child);
+                walk.push(next);
+                pushedPerBlock.push(linkBlock(next, stacks));
+                nextChild.push(0);
+            } else {
+                walk.pop();
+                for (Variable variable : pushedPerBlock.pop()) {
+                    stacks.get(variable).pop();
+                }
+            }
+        }
+    }
+
+    // Places a merge wherever the definitions of a variable read across blocks meet:
+    // the iterated dominance frontier of its defining blocks and the entry
+    private void placeMerges(DominatorTree dominators) {
+        Map<Variable, Set<BasicBlock>> definingBlocks = new HashMap<>();
+        Set<Variable> global = new HashSet<>();
+        for (BasicBlock block : dominators.getReversePostOrder()) {
+            Set<Variable> defined = new HashSet<>();
+            for (Instruction inst : block) {
+                if (inst instanceof Phi phi) {
+                    for (Operand operand : phi.getIncoming().values()) {
+                        if (operand instanceof Variable variable) {
+                            global.add(variable);
+                        }
+                    }
+                } else {
+                    for (Operand operand : inst.getUses()) {
+                        if (operand instanceof Variable variable && !defined.contains(variable)) {
+                            global.add(variable);
+                        }
+                    }
+                }
+                if (inst.getDefinition() != null) {
+                    defined.add(inst.getDefinition());
+                    definingBlocks.computeIfAbsent(inst.getDefinition(), k -> new HashSet<>()).add(block);
+                }
+            }
+        }
+        for (Variable variable : global) {
+            Set<BasicBlock> blocks = definingBlocks.get(variable);
+            if (blocks == null) {
+                continue;
+            }
+            Deque<BasicBlock> worklist = new ArrayDeque<>(blocks);
+            Set<BasicBlock> seen = new HashSet<>(blocks);
+            if (seen.add(function.getEntryBlock())) {
+                worklist.add(function.getEntryBlock());
+            }
+            Set<BasicBlock> merged = new HashSet<>();
+            while (!worklist.isEmpty()) {
+                for (BasicBlock frontier : dominators.getDominanceFrontier(worklist.poll())) {
+                    if (merged.add(frontier)) {
+                        merges.computeIfAbsent(frontier, k -> new ArrayList<>()).add(new Merge(variable, frontier));
+                        if (seen.add(frontier)) {
+                            worklist.add(frontier);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    // Links the reads of one block, and the merges and phis of its successors, to the
+    // visible definitions. Returns the variables whose stacks were pushed.
+    private List<Variable> linkBlock(BasicBlock block, Map<Variable, Deque<Object>> stacks) {
+        List<Variable> pushed = new ArrayList<>();
+        for (Merge merge : merges.getOrDefault(block, List.of())) {
+            stacks.computeIfAbsent(merge.variable, k -> new ArrayDeque<>()).push(merge);
+            pushed.add(merge.variable);
+        }
+        for (Instruction inst : block) {
+            if (!(inst instanceof Phi)) {
+                for (Operand operand : inst.getUses()) {
+                    if (operand instanceof Variable variable) {
+                        Object definition = visible(variable, stacks);
+                        reaching.computeIfAbsent(inst, k -> new HashMap<>()).put(variable, definition);
+                        addReader(definition, inst);
+                    }
+                }
+            }
+            Variable def = inst.getDefinition();
+            if (def != null) {
+                stacks.computeIfAbsent(def, k -> new ArrayDeque<>()).push(inst);
+                pushed.add(def);
+            }
+        }
+        for (BasicBlock successor : block.getSuccessors()) {
+            for (Merge merge : merges.getOrDefault(successor, List.of())) {
+                Object definition = visible(merge.variable, stacks);
+                merge.incoming.put(block, definition);
+                addReader(definition, merge);
+            }
+            for (Phi phi : successor.getPhis()) {
+                if (phi.getIncoming().get(block.getLabel()) instanceof Variable variable) {
+                    Object definition = visible(variable, stacks);
+                    incomingDefinitions.computeIfAbsent(phi, k -> new HashMap<>()).put(block, definition);
+                    addReader(definition, phi);
+                }
+            }
+        }
+        return pushed;
+    }
+
+    private static Object visible(Variable variable, Map<Variable, Deque<Object>> stacks) {
+        Deque<Object> stack = stacks.get(variable);
+        return stack == null || stack.isEmpty() ? ENTRY : stack.peek();
+    }
+
+    private void addReader(Object definition, Object reader) {
+        if (definition != ENTRY) {
+            readers.computeIfAbsent(definition, k -> new ArrayList<>()).add(reader);
+        }
+    }
+
+    // ---------------------------------------------------------------- solving
+
+    private void solve() {
+        executable = new HashSet<>();
+        executableEdges = new HashSet<>();
+        flowWorklist = new ArrayDeque<>();
+        ssaWorklist = new ArrayDeque<>();
+        queued = new HashSet<>();
+
+        executable.add(function.getEntryBlock());
+        flowWorklist.add(function.getEntryBlock());
+        while (!flowWorklist.isEmpty() || !ssaWorklist.isEmpty()) {
+            if (!flowWorklist.isEmpty()) {
+                BasicBlock block = flowWorklist.poll();
+                for (Merge merge : merges.getOrDefault(block, List.of())) {
+                    visit(merge);
+                }
+                for (Instruction inst : block) {
+                    visit(inst);
+                }
+            } else {
+                Object item = ssaWorklist.poll();
+                queued.remove(item);
+                if (item instanceof Merge merge) {
+                    if (executable.contains(merge.block)) {
+                        visit(merge);
+                    }
+                } else if (executable.contains(((Instruction) item).getBlock())) {
+                    visit((Instruction) item);
+                }
+            }
+        }
+    }
+
+    private void visit(Merge merge) {
+        // Control also enters the entry block from outside, with the entry values
+        Object value = merge.block == function.getEntryBlock() ? BOTTOM : null;
+        for (Map.Entry<BasicBlock, Object> incoming : merge.incoming.entrySet()) {
+            if (executableEdges.contains(new Edge(incoming.getKey(), merge.block))) {
+                value = meet(value, values.get(incoming.getValue()));
+            }
+        }
+        update(merge, value);
+    }
+
+    private void visit(Instruction inst) {
+        BasicBlock block = inst.getBlock();
+        if (inst instanceof ConditionalJump cj) {
+            Object condition = value(cj.getCondition(), cj);
+            if (condition instanceof IntConst c) {
+                markExecutable(block, function.getBlock(c.value() != 0 ? cj.getTrueTarget() : cj.getFalseTarget()));
+            } else if (condition != null) {
+                for (BasicBlock successor : block.getSuccessors()) {
+                    markExecutable(block, successor);
+                }
+            }
+        } else if (inst instanceof Jump) {
+            for (BasicBlock successor : block.getSuccessors()) {
+                markExecutable(block, successor);
+            }
+        }
+        if (inst.getDefinition() != null) {
+            update(inst, inst instanceof Phi phi ? evaluatePhi(phi) : evaluate(inst));
+        }
+    }
+
+    // Values only move down the lattice
+    private void update(Object definition, Object value) {
+        Object old = values.get(definition);
+        value = meet(old, value);
+        if (value != old) {
+            values.put(definition, value);
+            for (Object reader : readers.getOrDefault(definition, List.of())) {
+                if (queued.add(reader)) {
+                    ssaWorklist.add(reader);
+                }
+            }
+        }
+    }
+
+    private void markExecutable(BasicBlock from, BasicBlock to) {
+        if (!executableEdges.add(new Edge(from, to))) {
+            return;
+        }
+        if (executable.add(to)) {
+            flowWorklist.add(to);
+        } else {
+            // Only the phis and merges see which edges are executable
+            for (Merge merge : merges.getOrDefault(to, List.of())) {
+                visit(merge);
+            }
+            for (Phi phi : to.getPhis()) {
+                visit(phi);
+            }
+        }
+    }
+
+    // Constants are equal when their records are, so NaN and -0.0 behave
+    private static Object meet(Object a, Object b) {
+        if (a == null) {
+            return b;
+        }
+        if (b == null || a == BOTTOM || a.equals(b)) {
+            return a;
+        }
+        return BOTTOM;
+    }
+
+    // The value of an operand as `reader` sees it
+    private Object value(Operand operand, Instruction reader) {
+        if (operand instanceof IntConst || operand instanceof FloatConst) {
+            return operand;
+        }
+        if (operand instanceof Variable variable) {
+            return values.get(reaching.getOrDefault(reader, Map.of()).get(variable));
+        }
+        return BOTTOM;
+    }
+
+    // The value a phi reads from the end of a predecessor
+    private Object valueAtEnd(Phi phi, Operand operand, BasicBlock predecessor) {
+        if (operand instanceof Variable) {
+            return values.get(incomingDefinitions.getOrDefault(phi, Map.of()).get(predecessor));
+        }
+        return value(operand, phi);
+    }
+
+    private Object evaluatePhi(Phi phi) {
+        Object result = null;
+        for (Map.Entry<Label, Operand> incoming : phi.getIncoming().entrySet()) {
+            BasicBlock predecessor = function.getBlock(incoming.getKey());
+            if (predecessor != null && executableEdges.contains(new Edge(predecessor, phi.getBlock()))) {
+                result = meet(result, valueAtEnd(phi, incoming.getValue(), predecessor));
+            }
+        }
+        return result;
+    }
+
+    private Object evaluate(Instruction inst) {
+        Operand folded;
+        if (inst instanceof Copy copy) {
+            Object source = value(copy.getSource(), inst);
+            if (!(source instanceof Operand constant)) {
+                return source;
+            }
+            folded = constant;
+        } else if (inst instanceof BinaryOperation binOp) {
+            Object left = value(binOp.getLeft(), inst);
+            Object right = value(binOp.getRight(), inst);
+            // One known operand can decide a logical operator
+            String op = binOp.getOperator();
+            if (op.equals("&&") && (isInt(left, 0) || isInt(right, 0))) {
+                return new IntConst(0);
+            }
+            if (op.equals("||") && (isNonZeroInt(left) || isNonZeroInt(right))) {
+                return new IntConst(1);
+            }
+            if (left == BOTTOM || right == BOTTOM) {
+                return BOTTOM;
+            }
+            if (left == null || right == null) {
+                return null;
+            }
+            folded = fold((Operand) left, op, (Operand) right);
+        } else if (inst instanceof UnaryOperation unary) {
+            Object operand = value(unary.getOperand(), inst);
+            if (!(operand instanceof Operand constant)) {
+                return operand;
+            }
+            folded = fold(unary.getOperator(), constant);
+        } else if (inst instanceof Select select) {
+            Object condition = value(select.getCondition(), inst);
+            Object chosen;
+            if (condition instanceof IntConst c) {
+                chosen = value(c.value() != 0 ? select.getIfTrue() : select.getIfFalse(), inst);
+            } else if (condition == null) {
+                return null;
+            } else {
+                chosen = meet(value(select.getIfTrue(), inst), value(select.getIfFalse(), inst));
+            }
+            if (!(chosen instanceof Operand constant)) {
+                return chosen;
+            }
+            folded = constant;
+        } else {
+            return BOTTOM;
+        }
+        return folded != null && hasType(folded, inst.getDefinition()) ? folded : BOTTOM;
+    }
+
+    private static boolean isInt(Object value, int expected) {
+        return value instanceof IntConst c && c.value() == expected;
+    }
+
+    private static boolean isNonZeroInt(Object value) {
+        return value instanceof IntConst c && c.value() != 0;
+    }
+
+    // A constant only stands for a variable of the same machine type
+    private boolean hasType(Operand constant, Variable variable) {
+        String type = function.getType(variable);
+        return constant instanceof IntConst ? "int".equals(type) : "float".equals(type);
+    }
+
+    // ---------------------------------------------------------------- folding
+
+    // Mirrors the interpreter: an operation is done in float if either operand is float
+    private static Operand fold(Operand left, String op, Operand right) {
+        if (left instanceof IntConst l && right instanceof IntConst r) {
+            int a = l.value();
+            int b = r.value();
+            return switch (op) {
+                case "+" -> new IntConst(a + b);
+                case "-" -> new IntConst(a - b);
+                case "*" -> new IntConst(a * b);
+                case "/" -> b == 0 ? null : new IntConst(a / b);
+                case "==" -> bool(a == b);
+                case "!=" -> bool(a != b);
+                case "<" -> bool(a < b);
+                case ">" -> bool(a > b);
+                case "<=" -> bool(a <= b);
+                case ">=" -> bool(a >= b);
+                case "&&" -> bool(a != 0 && b != 0);
+                case "||" -> bool(a != 0 || b != 0);
+                default -> null;
+            };
+        }
+        float a = asFloat(left);
+        float b = asFloat(right);
+        return switch (op) {
+            case "+" -> finite(a + b);
+            case "-" -> finite(a - b);
+            case "*" -> finite(a * b);
+            case "/" -> finite(a / b);
+            case "==" -> bool(a == b);
+            case "!=" -> bool(a != b);
+            case "<" -> bool(a < b);
+            case ">" -> bool(a > b);
+            case "<=" -> bool(a <= b);
+            case ">=" -> bool(a >= b);
+            default -> null;
+        };
+    }
+
+    private static Operand fold(String op, Operand operand) {
+        if (operand instanceof IntConst c) {
+            return switch (op) {
+                case "-" -> new IntConst(-c.value());
+                case "!" -> bool(c.value() == 0);
+                case "(int)" -> c;
+                case "(float)" -> new FloatConst(c.value());
+                default -> null;
+            };
+        }
+        float value = asFloat(operand);
+        return switch (op) {
+            case "-" -> new FloatConst(-value);
+            case "(int)" -> new IntConst((int) value);
+            case "(float)" -> operand;
+            default -> null;
+        };
+    }
+
+    private static float asFloat(Operand constant) {
+        return constant instanceof IntConst c ? c.value() : ((FloatConst) constant).value();
+    }
+
+    private static IntConst bool(boolean value) {
+        return new IntConst(value ? 1 : 0);
+    }
+
+    private static FloatConst finite(float value) {
+        return Float.isFinite(value) ? new FloatConst(value) : null;
+    }
+
+    // ---------------------------------------------------------------- rewriting
+
+    private boolean rewrite(BasicBlock block) {
+        boolean changed = false;
+        for (Instruction inst : block) {
+            if (inst instanceof Phi phi) {
+                for (Map.Entry<Label, Operand> incoming : Map.copyOf(phi.getIncoming()).entrySet()) {
+                    BasicBlock predecessor = function.getBlock(incoming.getKey());
+                    if (predecessor != null && executable.contains(predecessor)
+                            && incoming.getValue() instanceof Variable
+                            && valueAtEnd(phi, incoming.getValue(), predecessor) instanceof Operand constant) {
+                        phi.setIncoming(incoming.getKey(), constant);
+                        changed = true;
+                    }
+                }
+            } else if (readsConstant(inst)) {
+                Instruction reader = inst;
+                inst.replaceUses(operand -> operand instanceof Variable
+                        && value(operand, reader) instanceof Operand constant ? constant : operand);
+                changed = true;
+            }
+            Object value = values.get(inst);
+            // A select with a known condition, or no choice to make, is a copy
+            if (inst instanceof Select select && (select.getCondition() instanceof IntConst
+                    || select.getIfTrue().equals(select.getIfFalse()))) {
+                Operand chosen = select.getCondition() instanceof IntConst c && c.value() == 0
+                        ? select.getIfFalse()
+                        : select.getIfTrue();
+                inst = new Copy(select.getResult(), chosen);
+                block.replaceInstruction(select, inst);
+                changed = true;
+            }
+
+            Variable def = inst.getDefinition();
+            if (def != null && value instanceof Operand constant && !(inst instanceof Phi)
+                    && !(inst instanceof FunctionCall)
+                    && !(inst instanceof Copy copy && copy.getSource().equals(constant))) {
+                block.replaceInstruction(inst, new Copy(def, constant));
+                changed = true;
+            }
+        }
+
+        if (block.getTerminator() instanceof ConditionalJump cj && cj.getCondition() instanceof IntConst condition) {
+            Label taken = condition.value() != 0 ? cj.getTrueTarget() : cj.getFalseTarget();
+            Label untaken = condition.value() != 0 ? cj.getFalseTarget() : cj.getTrueTarget();
+            if (!untaken.equals(taken)) {
+                for (Phi phi : function.getBlock(untaken).getPhis()) {
+                    phi.removeIncoming(block.getLabel());
+                }
+            }
+            block.setTerminator(new Jump(taken));
+            changed = true;
+        }
+        return changed;
+    }
+
+    private boolean readsConstant(Instruction inst) {
+        for (Operand operand : inst.getUses()) {
+            if (operand instanceof Variable && value(operand, inst) instanceof Operand) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
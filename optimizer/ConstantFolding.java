@@ -0,0 +1,101 @@
+package optimizer;
+
+import ir.Operand;
+import ir.Operand.*;
+import ir.ThreeAddressCode.*;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.UnaryOperator;
+
+// Block-local constant folding and propagation; facts do not flow across block boundaries
+public class ConstantFolding implements FunctionPass {
+
+    @Override
+    public String getName() {
+        return "fold";
+    }
+
+    @Override
+    public Set<Class<?>> getPreservedAnalyses() {
+        return AnalysisCache.CONTROL_FLOW;
+    }
+
+    @Override
+    public boolean run(Function func, AnalysisCache analyses) {
+        Map<Operand, IntConst> constants = new HashMap<>();
+        boolean changed = false;
+        for (BasicBlock block : func.getBlocks()) {
+            constants.clear();
+            changed |= foldBlock(block, constants);
+        }
+        return changed;
+    }
+
+    private boolean foldBlock(BasicBlock block, Map<Operand, IntConst> constants) {
+        UnaryOperator<Operand> propagate = operand -> {
+            IntConst constant = constants.get(operand);
+            return constant != null ? constant : operand;
+        };
+        boolean changed = false;
+
+        for (Instruction inst : block) {
+            if (!constants.isEmpty() && readsAny(inst, constants)) {
+                inst.replaceUses(propagate);
+                changed = true;
+            }
+
+            if (inst instanceof Copy copy) {
+                if (copy.getSource() instanceof IntConst constant) {
+                    constants.put(copy.getDestination(), constant);
+                } else {
+                    constants.remove(copy.getDestination());
+                }
+
+            } else if (inst instanceof BinaryOperation binOp && isFoldable(binOp)) {
+                IntConst l = (IntConst) binOp.getLeft();
+                IntConst r = (IntConst) binOp.getRight();
+                IntConst foldedValue = new IntConst(evaluate(l.value(), binOp.getOperator(), r.value()));
+                block.replaceInstruction(binOp, new Copy(binOp.getResult(), foldedValue));
+                constants.put(binOp.getResult(), foldedValue);
+                changed = true;
+
+            } else if (inst.getDefinition() != null) {
+                constants.remove(inst.getDefinition());
+            }
+        }
+        return changed;
+    }
+
+    private boolean readsAny(Instruction inst, Map<Operand, IntConst> constants) {
+        for (Operand operand : inst.getUses()) {
+            if (constants.containsKey(operand)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Integer arithmetic on two constants; division by zero is left for run time
+    private boolean isFoldable(BinaryOperation binOp) {
+        if (!(binOp.getLeft() instanceof IntConst) || !(binOp.getRight() instanceof IntConst r)) {
+            return false;
+        }
+        return switch (binOp.getOperator()) {
+            case "+", "-", "*" -> true;
+            case "/" -> r.value() != 0;
+            default -> false;
+        };
+    }
+
+    private int evaluate(int left, String op, int right) {
+        return switch (op) {
+            case "+" -> left + right;
+            case "-" -> left - right;
+            case "*" -> left * right;
+            case "/" -> left / right;
+            default -> throw new IllegalArgumentException("Cannot fold operator " + op);
+        };
+    }
+}
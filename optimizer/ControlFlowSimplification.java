@@ -0,0 +1,164 @@
+package optimizer;
+
+import ir.DominatorTree;
+import ir.Operand.*;
+import ir.SSA;
+import ir.ThreeAddressCode.*;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.function.UnaryOperator;
+
+// Control-flow simplification, repeated until nothing changes:
+//   - jumps to a block that only jumps on go straight to the final target, and a branch
+//     whose targets end up equal, or whose condition is a constant, becomes a jump;
+//   - a branch on a variable that a dominating branch on the same variable already
+//     decided takes the same edge, as long as the variable is not assigned in between;
+//   - a block that jumps to a block with no other predecessor absorbs it;
+//   - blocks that are no longer reachable are deleted.
+// Functions in SSA form are left alone, since edges carry phi inputs there.
+public class ControlFlowSimplification implements FunctionPass {
+
+    @Override
+    public String getName() {
+        return "simplifycfg";
+    }
+
+    @Override
+    public Set<Class<?>> getPreservedAnalyses() {
+        return Set.of();
+    }
+
+    @Override
+    public boolean run(Function func, AnalysisCache analyses) {
+        if (SSA.isInSSA(func)) {
+            return false;
+        }
+        boolean changed = false;
+        boolean progress = true;
+        while (progress) {
+            progress = threadJumps(func);
+            progress |= foldBranches(func, analyses.get(DominatorTree.class, func));
+            progress |= mergeBlocks(func);
+            int blocks = func.getBlocks().size();
+            SSA.removeUnreachableBlocks(func);
+            progress |= func.getBlocks().size() != blocks;
+            if (progress) {
+                analyses.invalidate(func, Set.of());
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    private static boolean threadJumps(Function func) {
+        boolean changed = false;
+        for (BasicBlock block : func.getBlocks()) {
+            Instruction terminator = block.getTerminator();
+            if (terminator instanceof Jump jump) {
+                Label target = forward(func, jump.getTarget());
+                if (!target.equals(jump.getTarget())) {
+                    block.setTerminator(new Jump(target));
+                    changed = true;
+                }
+            } else if (terminator instanceof ConditionalJump branch) {
+                Label onTrue = forward(func, branch.getTrueTarget());
+                Label onFalse = forward(func, branch.getFalseTarget());
+                if (branch.getCondition() instanceof IntConst c) {
+                    block.setTerminator(new Jump(c.value() != 0 ? onTrue : onFalse));
+                    changed = true;
+                } else if (onTrue.equals(onFalse)) {
+                    block.setTerminator(new Jump(onTrue));
+                    changed = true;
+                } else if (!onTrue.equals(branch.getTrueTarget()) || !onFalse.equals(branch.getFalseTarget())) {
+                    block.setTerminator(new ConditionalJump(branch.getCondition(), onTrue, onFalse));
+                    changed = true;
+                }
+            }
+        }
+        return changed;
+    }
+
+    // Where control ends up after the chain of jump-only blocks starting at `label`
+    private static Label forward(Function func, Label label) {
+        Set<Label> seen = new HashSet<>();
+        BasicBlock block = func.getBlock(label);
+        while (block.getInstructionCount() == 1 && block.getTerminator() instanceof Jump jump && seen.add(label)) {
+            label = jump.getTarget();
+            block = func.getBlock(label);
+        }
+        return label;
+    }
+
+    private static boolean foldBranches(Function func, DominatorTree dominators) {
+        boolean changed = false;
+        for (BasicBlock block : func.getBlocks()) {
+            if (block.getTerminator() instanceof ConditionalJump branch
+                    && branch.getCondition() instanceof Variable condition) {
+                Boolean known = knownValue(func, dominators, block, condition);
+                if (known != null) {
+                    block.setTerminator(new Jump(known ? branch.getTrueTarget() : branch.getFalseTarget()));
+                    changed = true;
+                }
+            }
+        }
+        return changed;
+    }
+
+    // The value of `condition` at the end of `block` if a dominating branch on it decided
+    // it: the block lies under an edge out of that branch that is the only way into the
+    // edge's target, and nothing under that target assigns the condition. Any path from
+    // the target to the block then stays under the target, so the value still holds.
+    private static Boolean knownValue(Function func, DominatorTree dominators, BasicBlock block,
+            Variable condition) {
+        BasicBlock child = block;
+        for (BasicBlock parent = dominators.getImmediateDominator(child); parent != null;
+                child = parent, parent = dominators.getImmediateDominator(parent)) {
+            if (!(parent.getTerminator() instanceof ConditionalJump guard)
+                    || !guard.getCondition().equals(condition)
+                    || guard.getTrueTarget().equals(guard.getFalseTarget())
+                    || child.getPredecessors().size() != 1) {
+                continue;
+            }
+            boolean onTrue = guard.getTrueTarget().equals(child.getLabel());
+            if (!onTrue && !guard.getFalseTarget().equals(child.getLabel())) {
+                continue;
+            }
+            for (Instruction def : func.getDefinitions(condition)) {
+                if (dominators.dominates(child, def.getBlock())) {
+                    return null;
+                }
+            }
+            return onTrue;
+        }
+        return null;
+    }
+
+    private static boolean mergeBlocks(Function func) {
+        boolean changed = false;
+        for (BasicBlock block : new ArrayList<>(func.getBlocks())) {
+            if (func.getBlock(block.getLabel()) != block) {
+                continue;
+            }
+            while (block.getTerminator() instanceof Jump jump) {
+                BasicBlock successor = func.getBlock(jump.getTarget());
+                if (successor == block || successor == func.getEntryBlock()
+                        || successor.getPredecessors().size() != 1) {
+                    break;
+                }
+                for (Instruction inst : successor) {
+                    Instruction copy = inst.copy(UnaryOperator.identity(), UnaryOperator.identity());
+                    if (inst.isTerminator()) {
+                        block.setTerminator(copy);
+                    } else {
+                        block.insertBeforeTerminator(copy);
+                    }
+                }
+                func.removeBlock(successor);
+                changed = true;
+            }
+        }
+        return changed;
+    }
+}
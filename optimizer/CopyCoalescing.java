@@ -0,0 +1,177 @@
+package optimizer;
+
+import ir.Operand;
+import ir.Operand.*;
+import ir.ThreeAddressCode.*;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+// Aggressive coalescing of copy-related variables: a temporary that is copied to or from
+// another variable of the same type is renamed to that variable when the two never
+// hold different live values at once, and the copy, now `x = x`, disappears. Two
+// variables interfere if one is live right after an assignment to the other, except
+// that the source of a copy does not interfere with its destination. Only the
+// variables that appear in such copies are put in the interference graph.
+//
+// Named variables are never merged with each other, so the source names survive in the
+// output; each group keeps at most one of them and temporaries take its name.
+public class CopyCoalescing implements FunctionPass {
+    private Map<Variable, Variable> parent;
+    private Map<Variable, Set<Variable>> interference;
+
+    @Override
+    public String getName() {
+        return "coalesce";
+    }
+
+    @Override
+    public Set<Class<?>> getPreservedAnalyses() {
+        return AnalysisCache.CONTROL_FLOW;
+    }
+
+    @Override
+    public boolean run(Function func, AnalysisCache analyses) {
+        List<Copy> candidates = new ArrayList<>();
+        Set<Variable> related = new HashSet<>();
+        for (BasicBlock block : func.getBlocks()) {
+            for (Instruction inst : block) {
+                if (inst instanceof Copy copy && isCandidate(func, copy)) {
+                    candidates.add(copy);
+                    related.add(copy.getDestination());
+                    related.add((Variable) copy.getSource());
+                }
+            }
+        }
+        if (candidates.isEmpty()) {
+            return false;
+        }
+
+        buildInterference(func, analyses.get(Liveness.class, func), related);
+        parent = new HashMap<>();
+        boolean merged = false;
+        for (Copy copy : candidates) {
+            merged |= union(copy.getDestination(), (Variable) copy.getSource());
+        }
+        if (!merged) {
+            return false;
+        }
+
+        for (BasicBlock block : func.getBlocks()) {
+            for (Instruction inst : block) {
+                rename(inst);
+                if (inst instanceof Copy copy && copy.getDestination().equals(copy.getSource())) {
+                    block.removeInstruction(inst);
+                }
+            }
+        }
+        func.removeUnusedVariables();
+        return true;
+    }
+
+    private static boolean isCandidate(Function func, Copy copy) {
+        return copy.getSource() instanceof Variable source
+                && !source.equals(copy.getDestination())
+                && (source instanceof Temp || copy.getDestination() instanceof Temp)
+                && Objects.equals(func.getType(source), func.getType(copy.getDestination()));
+    }
+
+    private void buildInterference(Function func, Liveness liveness, Set<Variable> related) {
+        interference = new HashMap<>();
+        for (BasicBlock block : func.getBlocks()) {
+            Set<Variable> live = new HashSet<>(liveness.getLiveOut(block));
+            for (BasicBlock successor : block.getSuccessors()) {
+                for (Phi phi : successor.getPhis()) {
+                    if (phi.getIncoming(block.getLabel()) instanceof Variable variable) {
+                        live.add(variable);
+                    }
+                }
+            }
+            for (Instruction inst = block.getLastInstruction(); inst != null; inst = inst.getPrevious()) {
+                Variable def = inst.getDefinition();
+                if (def != null) {
+                    live.remove(def);
+                    if (related.contains(def)) {
+                        Operand copied = inst instanceof Copy copy ? copy.getSource() : null;
+                        for (Variable other : live) {
+                            if (related.contains(other) && !other.equals(copied)) {
+                                addInterference(def, other);
+                            }
+                        }
+                    }
+                }
+                if (!(inst instanceof Phi)) {
+                    for (Operand operand : inst.getUses()) {
+                        if (operand instanceof Variable used) {
+                            live.add(used);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private void addInterference(Variable a, Variable b) {
+        interference.computeIfAbsent(a, v -> new HashSet<>()).add(b);
+        interference.computeIfAbsent(b, v -> new HashSet<>()).add(a);
+    }
+
+    // ---------------------------------------------------------------- union-find
+
+    private Variable find(Variable variable) {
+        Variable root = variable;
+        while (parent.containsKey(root)) {
+            root = parent.get(root);
+        }
+        return root;
+    }
+
+    // Merges the groups of a and b unless they interfere or would hold two named
+    // variables; the named variable, if any, represents the group
+    private boolean union(Variable a, Variable b) {
+        Variable rootA = find(a);
+        Variable rootB = find(b);
+        if (rootA.equals(rootB) || neighbours(rootA).contains(rootB)) {
+            return false;
+        }
+        if (!(rootA instanceof Temp) && !(rootB instanceof Temp)) {
+            return false;
+        }
+        Variable root = rootA instanceof Temp ? rootB : rootA;
+        Variable child = root == rootA ? rootB : rootA;
+        parent.put(child, root);
+        for (Variable neighbour : neighbours(child)) {
+            Set<Variable> theirs = neighbours(neighbour);
+            theirs.remove(child);
+            theirs.add(root);
+            neighbours(root).add(neighbour);
+        }
+        interference.remove(child);
+        return true;
+    }
+
+    private Set<Variable> neighbours(Variable variable) {
+        return interference.computeIfAbsent(variable, v -> new HashSet<>());
+    }
+
+    private void rename(Instruction inst) {
+        boolean readsMerged = false;
+        for (Operand operand : inst.getUses()) {
+            if (operand instanceof Variable variable && parent.containsKey(variable)) {
+                readsMerged = true;
+            }
+        }
+        if (readsMerged) {
+            inst.replaceUses(operand -> operand instanceof Variable variable ? find(variable) : operand);
+        }
+        Variable def = inst.getDefinition();
+        if (def != null && parent.containsKey(def)) {
+            inst.setDefinition(find(def));
+        }
+    }
+}
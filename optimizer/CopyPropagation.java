@@ -0,0 +1,96 @@
+package optimizer;
+
+import ir.Operand;
+import ir.Operand.Variable;
+import ir.ThreeAddressCode.*;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+// Global copy propagation: every read of d where the copy `d = s` is available (see
+// AvailableCopies) reads s instead, following chains like `t1 = a; t2 = t1` back to
+// their origin. The copies themselves are left for dce once nothing reads them;
+// copies that end up assigning a variable to itself are deleted here.
+public class CopyPropagation implements FunctionPass {
+
+    @Override
+    public String getName() {
+        return "copyprop";
+    }
+
+    @Override
+    public Set<Class<?>> getPreservedAnalyses() {
+        return AnalysisCache.CONTROL_FLOW;
+    }
+
+    @Override
+    public boolean run(Function func, AnalysisCache analyses) {
+        AvailableCopies copies = analyses.get(AvailableCopies.class, func);
+        boolean changed = false;
+        for (BasicBlock block : func.getBlocks()) {
+            changed |= propagate(block, new HashMap<>(copies.getAvailableIn(block)));
+        }
+        return changed;
+    }
+
+    private boolean propagate(BasicBlock block, Map<Variable, Operand> available) {
+        // Source to the destinations currently copied from it, so kills stay cheap
+        Map<Variable, Set<Variable>> copiesOf = new HashMap<>();
+        for (Map.Entry<Variable, Operand> entry : available.entrySet()) {
+            if (entry.getValue() instanceof Variable source) {
+                copiesOf.computeIfAbsent(source, v -> new HashSet<>()).add(entry.getKey());
+            }
+        }
+        boolean changed = false;
+        for (Instruction inst : block) {
+            // Phi operands are read in the predecessors, where other copies apply
+            if (!(inst instanceof Phi) && readsCopy(inst, available)) {
+                inst.replaceUses(operand -> resolve(operand, available));
+                changed = true;
+            }
+            if (inst instanceof Copy copy && copy.getDestination().equals(copy.getSource())) {
+                block.removeInstruction(inst);
+                changed = true;
+                continue;
+            }
+
+            Variable def = inst.getDefinition();
+            if (def != null) {
+                if (available.remove(def) instanceof Variable source && copiesOf.containsKey(source)) {
+                    copiesOf.get(source).remove(def);
+                }
+                for (Variable copy : copiesOf.getOrDefault(def, Set.of())) {
+                    available.remove(copy);
+                }
+                copiesOf.remove(def);
+            }
+            AvailableCopies.Assignment assignment = AvailableCopies.Assignment.of(inst);
+            if (assignment != null) {
+                available.put(assignment.destination(), assignment.source());
+                if (assignment.source() instanceof Variable source) {
+                    copiesOf.computeIfAbsent(source, v -> new HashSet<>()).add(assignment.destination());
+                }
+            }
+        }
+        return changed;
+    }
+
+    private static boolean readsCopy(Instruction inst, Map<Variable, Operand> available) {
+        for (Operand operand : inst.getUses()) {
+            if (available.containsKey(operand)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Available copies never form a cycle: `b = a` kills an earlier `a = b`
+    private static Operand resolve(Operand operand, Map<Variable, Operand> available) {
+        while (operand instanceof Variable variable && available.containsKey(variable)) {
+            operand = available.get(variable);
+        }
+        return operand;
+    }
+}
@@ -0,0 +1,204 @@
+package optimizer;
+
+import ir.ThreeAddressCode.*;
+
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Iterative worklist solver for bit-vector dataflow problems over a function's CFG.
+// Facts are long[] bitsets over a dense universe (variables, definitions, expressions)
+// numbered by the subclass. The subclass picks the direction and meet, and describes
+// each block's transfer function as out = gen | (in & ~kill), so an update costs
+// O(universe / 64). Blocks are visited in reverse postorder (postorder for backward
+// problems), which reaches the fixed point in a few passes for reducible CFGs.
+public abstract class DataflowAnalysis {
+    public enum Direction { FORWARD, BACKWARD }
+
+    public enum Meet { UNION, INTERSECTION }
+
+    protected final Function function;
+    private final Direction direction;
+    private final Meet meet;
+    private List<BasicBlock> order;             // reverse postorder of reachable blocks
+    private Map<BasicBlock, Integer> index;
+    private int words;
+    private long[][] in;                        // indexed like `order`
+    private long[][] out;
+    private long[][] gen;
+    private long[][] kill;
+
+    protected DataflowAnalysis(Function function, Direction direction, Meet meet) {
+        this.function = function;
+        this.direction = direction;
+        this.meet = meet;
+    }
+
+    // Number of bits in the universe; called once, before any gen/kill set is built
+    protected abstract int universeSize();
+
+    // Fills the block's gen and kill sets (both start empty)
+    protected abstract void initializeBlock(BasicBlock block, long[] gen, long[] kill);
+
+    // Fact at the entry (forward) or exit (backward) of the function; empty by default
+    protected void initializeBoundary(long[] boundary) {
+    }
+
+    // Subclasses call this from their constructor once their universe is numbered
+    protected final void solve() {
+        order = function.computeReversePostOrder();
+        int n = order.size();
+        index = new HashMap<>();
+        for (int i = 0; i < n; i++) {
+            index.put(order.get(i), i);
+        }
+        words = (universeSize() + 63) >>> 6;
+        in = new long[n][words];
+        out = new long[n][words];
+        gen = new long[n][words];
+        kill = new long[n][words];
+        for (int i = 0; i < n; i++) {
+            initializeBlock(order.get(i), gen[i], kill[i]);
+        }
+
+        // Intersection problems start from "everything" so the first meet is not pessimistic
+        long[] top = new long[words];
+        if (meet == Meet.INTERSECTION) {
+            fill(top, universeSize());
+        }
+        long[] boundary = new long[words];
+        initializeBoundary(boundary);
+        for (int i = 0; i < n; i++) {
+            long[] result = direction == Direction.FORWARD ? out[i] : in[i];
+            System.arraycopy(top, 0, result, 0, words);
+        }
+
+        // Worklist of positions in visiting order; always take the earliest pending one
+        boolean forward = direction == Direction.FORWARD;
+        BitSet pending = new BitSet(n);
+        pending.set(0, n);
+        long[] scratch = new long[words];
+        int cursor = 0;
+        while (!pending.isEmpty()) {
+            int position = pending.nextSetBit(cursor);
+            if (position < 0) {
+                position = pending.nextSetBit(0);
+            }
+            pending.clear(position);
+            cursor = position + 1;
+            int b = forward ? position : n - 1 - position;
+            BasicBlock block = order.get(b);
+
+            List<BasicBlock> sources = forward ? block.getPredecessors() : block.getSuccessors();
+            long[] input = forward ? in[b] : out[b];
+            boolean first = true;
+            boolean atBoundary = forward ? b == 0 : sources.isEmpty();
+            if (atBoundary) {
+                System.arraycopy(boundary, 0, input, 0, words);
+                first = false;
+            }
+            for (BasicBlock source : sources) {
+                Integer s = index.get(source);
+                if (s == null) {
+                    continue; // unreachable predecessor
+                }
+                long[] fact = forward ? out[s] : in[s];
+                if (first) {
+                    System.arraycopy(fact, 0, input, 0, words);
+                    first = false;
+                } else if (meet == Meet.UNION) {
+                    for (int w = 0; w < words; w++) {
+                        input[w] |= fact[w];
+                    }
+                } else {
+                    for (int w = 0; w < words; w++) {
+                        input[w] &= fact[w];
+                    }
+                }
+            }
+            if (first) {
+                System.arraycopy(top, 0, input, 0, words);
+            }
+
+            long[] output = forward ? out[b] : in[b];
+            boolean changed = false;
+            for (int w = 0; w < words; w++) {
+                scratch[w] = gen[b][w] | (input[w] & ~kill[b][w]);
+                changed |= scratch[w] != output[w];
+            }
+            if (changed) {
+                System.arraycopy(scratch, 0, output, 0, words);
+                List<BasicBlock> targets = forward ? block.getSuccessors() : block.getPredecessors();
+                for (BasicBlock target : targets) {
+                    Integer t = index.get(target);
+                    if (t != null) {
+                        pending.set(forward ? t : n - 1 - t);
+                    }
+                }
+            }
+        }
+    }
+
+    public Function getFunction() {
+        return function;
+    }
+
+    public boolean isReachable(BasicBlock block) {
+        return index.containsKey(block);
+    }
+
+    // Fact at the start of the block, or null for an unreachable block. Callers must not modify it.
+    protected long[] blockIn(BasicBlock block) {
+        Integer i = index.get(block);
+        return i == null ? null : in[i];
+    }
+
+    // Fact at the end of the block, or null for an unreachable block. Callers must not modify it.
+    protected long[] blockOut(BasicBlock block) {
+        Integer i = index.get(block);
+        return i == null ? null : out[i];
+    }
+
+    // Empty set sized for the universe
+    protected long[] newSet() {
+        return new long[(universeSize() + 63) >>> 6];
+    }
+
+    static boolean get(long[] set, int bit) {
+        return (set[bit >>> 6] & (1L << bit)) != 0;
+    }
+
+    static void set(long[] set, int bit) {
+        set[bit >>> 6] |= 1L << bit;
+    }
+
+    static void clear(long[] set, int bit) {
+        set[bit >>> 6] &= ~(1L << bit);
+    }
+
+    // Sets bits [0, size)
+    static void fill(long[] set, int size) {
+        for (int w = 0; w < set.length; w++) {
+            int remaining = size - (w << 6);
+            set[w] = remaining >= 64 ? -1L : remaining <= 0 ? 0L : (1L << remaining) - 1;
+        }
+    }
+
+    static int nextSetBit(long[] set, int from) {
+        int w = from >>> 6;
+        if (w >= set.length) {
+            return -1;
+        }
+        long word = set[w] & (-1L << from);
+        while (true) {
+            if (word != 0) {
+                return (w << 6) + Long.numberOfTrailingZeros(word);
+            }
+            if (++w == set.length) {
+                return -1;
+            }
+            word = set[w];
+        }
+    }
+}
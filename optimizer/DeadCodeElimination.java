@@ -0,0 +1,113 @@
+package optimizer;
+
+import ir.Operand;
+import ir.Operand.Variable;
+import ir.SSA;
+import ir.ThreeAddressCode.*;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Set;
+
+// Removes blocks unreachable from the entry, then sweeps each block backwards from its
+// live-out set, deleting every instruction whose result is not live afterwards. That
+// covers dead temporaries and dead stores to locals and parameters alike. Definitions
+// whose last reader was deleted go through a def-use worklist, and finally variables
+// nothing refers to any more are dropped from the function so the backends do not
+// allocate slots for them. Calls stay for their side effects.
+public class DeadCodeElimination implements FunctionPass {
+    // Whether the last run removed blocks; nothing is preserved before the first run
+    private boolean removedBlocks = true;
+
+    @Override
+    public String getName() {
+        return "dce";
+    }
+
+    @Override
+    public Set<Class<?>> getPreservedAnalyses() {
+        return removedBlocks ? Set.of() : AnalysisCache.CONTROL_FLOW;
+    }
+
+    @Override
+    public boolean run(Function func, AnalysisCache analyses) {
+        int blockCount = func.getBlocks().size();
+        SSA.removeUnreachableBlocks(func);
+        removedBlocks = func.getBlocks().size() != blockCount;
+        if (removedBlocks) {
+            analyses.invalidate(func, Set.of());
+        }
+        Liveness liveness = analyses.get(Liveness.class, func);
+
+        Deque<Variable> worklist = new ArrayDeque<>();
+        boolean changed = removedBlocks;
+        for (BasicBlock block : func.getBlocks()) {
+            changed |= sweep(block, liveness, worklist);
+        }
+
+        while (!worklist.isEmpty()) {
+            Variable var = worklist.pop();
+            if (func.isUsed(var)) {
+                continue;
+            }
+            for (Instruction def : new ArrayList<>(func.getDefinitions(var))) {
+                if (def instanceof FunctionCall) {
+                    continue;
+                }
+                remove(def, worklist);
+                changed = true;
+            }
+        }
+
+        if (changed) {
+            func.removeUnusedVariables();
+        }
+        return changed;
+    }
+
+    private boolean sweep(BasicBlock block, Liveness liveness, Deque<Variable> worklist) {
+        Set<Variable> live = new HashSet<>(liveness.getLiveOut(block));
+        // Phi operands are read on the edge out of this block
+        for (BasicBlock successor : block.getSuccessors()) {
+            for (Phi phi : successor.getPhis()) {
+                if (phi.getIncoming(block.getLabel()) instanceof Variable variable) {
+                    live.add(variable);
+                }
+            }
+        }
+
+        boolean changed = false;
+        for (Instruction inst = block.getLastInstruction(); inst != null; ) {
+            Instruction previous = inst.getPrevious();
+            Variable def = inst.getDefinition();
+            if (def != null && !live.contains(def) && !(inst instanceof FunctionCall)) {
+                remove(inst, worklist);
+                changed = true;
+            } else {
+                if (def != null) {
+                    live.remove(def);
+                }
+                if (!(inst instanceof Phi)) {
+                    for (Operand operand : inst.getUses()) {
+                        if (operand instanceof Variable used) {
+                            live.add(used);
+                        }
+                    }
+                }
+            }
+            inst = previous;
+        }
+        return changed;
+    }
+
+    private void remove(Instruction inst, Deque<Variable> worklist) {
+        inst.getBlock().removeInstruction(inst);
+        for (Operand operand : inst.getUses()) {
+            if (operand instanceof Variable used) {
+                worklist.add(used);
+            }
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package optimizer;
+
+import ir.ThreeAddressCode.Function;
+
+import java.util.Set;
+
+// A transformation applied to one function at a time
+public interface FunctionPass {
+    String getName();
+
+    // Returns true if the function changed
+    boolean run(Function function, AnalysisCache analyses);
+
+    // Analyses that stay valid when the pass changes a function (see AnalysisCache.CONTROL_FLOW).
+    // The answer may depend on what the last run did, so the pass manager asks right after
+    // run returns, for the same function; passes answer conservatively before any run.
+    default Set<Class<?>> getPreservedAnalyses() {
+        return Set.of();
+    }
+}
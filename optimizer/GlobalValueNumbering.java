@@ -0,0 +1,239 @@
+package optimizer;
+
+import ir.DominatorTree;
+import ir.Operand;
+import ir.Operand.*;
+import ir.ThreeAddressCode.*;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// Dominator-based value numbering (Briggs, Cooper and Simpson). Blocks are visited in a
+// preorder walk of the dominator tree with a scoped table from (operator, operand value
+// numbers, type) to the variable already holding that value, so a computation is
+// replaced by a copy whenever an equal one dominates it. Operands of commutative
+// operators are put in a canonical order and a > b is keyed as b < a.
+//
+// The function is not in SSA form, so only variables that behave like SSA values keep
+// one value number everywhere: those never assigned, and those with a single
+// definition that dominates every use. Any other variable gets a fresh number at the
+// start of each block and whenever it is assigned, which limits reuse through it to
+// the block.
+public class GlobalValueNumbering implements FunctionPass {
+    private static final Set<String> COMMUTATIVE = Set.of("+", "*", "==", "!=", "&&", "||");
+
+    // condition is the value number of a select's condition, -1 for operators
+    private record Key(String operator, int left, int right, int condition, String type) {
+    }
+
+    private record Entry(int value, Variable holder) {
+    }
+
+    // Table entry to restore when leaving a dominator subtree; previous is null if absent
+    private record Shadowed(Key key, Entry previous) {
+    }
+
+    // Entering a block, or leaving it when shadowed is set
+    private record Visit(BasicBlock block, List<Shadowed> shadowed) {
+    }
+
+    private Function function;
+    private Set<Variable> stable;
+    private Map<Operand, Integer> numbers;      // constants and stable variables
+    private Map<Variable, Integer> localNumbers; // other variables, reset per block
+    private Map<Key, Entry> table;
+    private int nextNumber;
+
+    @Override
+    public String getName() {
+        return "gvn";
+    }
+
+    @Override
+    public Set<Class<?>> getPreservedAnalyses() {
+        return AnalysisCache.CONTROL_FLOW;
+    }
+
+    @Override
+    public boolean run(Function func, AnalysisCache analyses) {
+        if (func.getEntryBlock() == null) {
+            return false;
+        }
+        DominatorTree dominators = analyses.get(DominatorTree.class, func);
+        function = func;
+        stable = findStableVariables(dominators);
+        numbers = new HashMap<>();
+        table = new HashMap<>();
+        nextNumber = 0;
+
+        // Preorder walk; a block's exit visit undoes its table entries once the blocks it
+        // dominates are done
+        boolean changed = false;
+        Deque<Visit> stack = new ArrayDeque<>();
+        stack.push(new Visit(func.getEntryBlock(), null));
+        while (!stack.isEmpty()) {
+            Visit visit = stack.pop();
+            if (visit.shadowed() != null) {
+                for (int i = visit.shadowed().size() - 1; i >= 0; i--) {
+                    Shadowed entry = visit.shadowed().get(i);
+                    if (entry.previous() == null) {
+                        table.remove(entry.key());
+                    } else {
+                        table.put(entry.key(), entry.previous());
+                    }
+                }
+                continue;
+            }
+            List<Shadowed> shadowed = new ArrayList<>();
+            changed |= numberBlock(visit.block(), shadowed);
+            stack.push(new Visit(visit.block(), shadowed));
+            for (BasicBlock child : dominators.getChildren(visit.block())) {
+                stack.push(new Visit(child, null));
+            }
+        }
+        return changed;
+    }
+
+    private Set<Variable> findStableVariables(DominatorTree dominators) {
+        Set<Variable> result = new HashSet<>();
+        Set<Variable> seen = new HashSet<>();
+        for (BasicBlock block : function.getBlocks()) {
+            for (Instruction inst : block) {
+                List<Variable> variables = new ArrayList<>();
+                if (inst.getDefinition() != null) {
+                    variables.add(inst.getDefinition());
+                }
+                for (Operand operand : inst.getUses()) {
+                    if (operand instanceof Variable variable) {
+                        variables.add(variable);
+                    }
+                }
+                for (Variable variable : variables) {
+                    if (seen.add(variable) && isStable(variable, dominators)) {
+                        result.add(variable);
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    private boolean isStable(Variable variable, DominatorTree dominators) {
+        Set<Instruction> definitions = function.getDefinitions(variable);
+        if (definitions.isEmpty()) {
+            return true;
+        }
+        Instruction def = function.getUniqueDefinition(variable);
+        if (def == null) {
+            return false;
+        }
+        for (Instruction use : function.getUses(variable)) {
+            if (use instanceof Phi phi) {
+                // A phi operand is read at the end of its predecessor
+                for (Map.Entry<Label, Operand> incoming : phi.getIncoming().entrySet()) {
+                    if (variable.equals(incoming.getValue())
+                            && !dominators.dominates(def.getBlock(), function.getBlock(incoming.getKey()))) {
+                        return false;
+                    }
+                }
+            } else if (!precedes(def, use, dominators)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean precedes(Instruction def, Instruction use, DominatorTree dominators) {
+        if (def.getBlock() != use.getBlock()) {
+            return dominators.strictlyDominates(def.getBlock(), use.getBlock());
+        }
+        for (Instruction inst = def.getNext(); inst != null; inst = inst.getNext()) {
+            if (inst == use) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // ---------------------------------------------------------------- numbering
+
+    private boolean numberBlock(BasicBlock block, List<Shadowed> shadowed) {
+        localNumbers = new HashMap<>();
+        boolean changed = false;
+        for (Instruction inst : block) {
+            Variable def = inst.getDefinition();
+            if (def == null) {
+                continue;
+            }
+            if (inst instanceof Copy copy) {
+                assign(def, number(copy.getSource()));
+                continue;
+            }
+            Key key = key(inst);
+            if (key == null) {
+                assign(def, nextNumber++);
+                continue;
+            }
+            Entry entry = table.get(key);
+            if (entry != null && number(entry.holder()) == entry.value()) {
+                block.replaceInstruction(inst, new Copy(def, entry.holder()));
+                assign(def, entry.value());
+                changed = true;
+            } else {
+                int value = nextNumber++;
+                assign(def, value);
+                shadowed.add(new Shadowed(key, entry));
+                table.put(key, new Entry(value, def));
+            }
+        }
+        return changed;
+    }
+
+    private Key key(Instruction inst) {
+        String type = function.getType(inst.getDefinition());
+        if (inst instanceof BinaryOperation binOp) {
+            String operator = binOp.getOperator();
+            int left = number(binOp.getLeft());
+            int right = number(binOp.getRight());
+            if (left > right && COMMUTATIVE.contains(operator)) {
+                return new Key(operator, right, left, -1, type);
+            }
+            String mirrored = switch (operator) {
+                case ">" -> "<";
+                case ">=" -> "<=";
+                default -> null;
+            };
+            if (mirrored != null) {
+                return new Key(mirrored, right, left, -1, type);
+            }
+            return new Key(operator, left, right, -1, type);
+        } else if (inst instanceof UnaryOperation unary) {
+            return new Key(unary.getOperator(), number(unary.getOperand()), -1, -1, type);
+        } else if (inst instanceof Select select) {
+            return new Key("?", number(select.getIfTrue()), number(select.getIfFalse()),
+                    number(select.getCondition()), type);
+        }
+        return null;
+    }
+
+    private int number(Operand operand) {
+        if (operand instanceof Variable variable && !stable.contains(variable)) {
+            return localNumbers.computeIfAbsent(variable, v -> nextNumber++);
+        }
+        return numbers.computeIfAbsent(operand, o -> nextNumber++);
+    }
+
+    private void assign(Variable variable, int value) {
+        if (stable.contains(variable)) {
+            numbers.put(variable, value);
+        } else {
+            localNumbers.put(variable, value);
+        }
+    }
+}
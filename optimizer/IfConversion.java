@@ -0,0 +1,181 @@
+package optimizer;
+
+import ir.Operand;
+import ir.Operand.*;
+import ir.SSA;
+import ir.ThreeAddressCode.*;
+
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+// If-conversion. A branch to one or two arms that only compute values and meet again
+// right after, a diamond or a triangle, becomes straight-line code: both arms run in
+// the branching block, writing fresh temporaries, and every variable an arm assigns
+// that is read elsewhere takes its value from a select on the branch condition. This
+// trades a branch that may mispredict for doing the work of both arms.
+//
+// Arms may only hold copies and arithmetic that cannot fail, so integer division needs
+// a constant divisor other than 0 and -1. Both arms together may hold at most `limit`
+// instructions, which defaults to the system property compiler.ifconvert.limit.
+// Functions in SSA form are left alone.
+public class IfConversion implements FunctionPass {
+    public static final int DEFAULT_LIMIT = 4;
+
+    private final int limit;
+
+    public IfConversion() {
+        this(Integer.getInteger("compiler.ifconvert.limit", DEFAULT_LIMIT));
+    }
+
+    public IfConversion(int limit) {
+        this.limit = limit;
+    }
+
+    @Override
+    public String getName() {
+        return "ifconvert";
+    }
+
+    @Override
+    public Set<Class<?>> getPreservedAnalyses() {
+        return Set.of();
+    }
+
+    @Override
+    public boolean run(Function func, AnalysisCache analyses) {
+        if (SSA.isInSSA(func)) {
+            return false;
+        }
+        // Converting an inner diamond can turn the one around it into a candidate
+        boolean changed = false;
+        boolean progress = true;
+        while (progress) {
+            progress = false;
+            for (BasicBlock block : func.getBlocks()) {
+                if (convert(func, block)) {
+                    progress = true;
+                    changed = true;
+                    break;
+                }
+            }
+        }
+        return changed;
+    }
+
+    private boolean convert(Function func, BasicBlock head) {
+        if (!(head.getTerminator() instanceof ConditionalJump branch)
+                || branch.getTrueTarget().equals(branch.getFalseTarget())) {
+            return false;
+        }
+        BasicBlock onTrue = func.getBlock(branch.getTrueTarget());
+        BasicBlock onFalse = func.getBlock(branch.getFalseTarget());
+        BasicBlock join;
+        if (isArm(func, head, onTrue) && isArm(func, head, onFalse)
+                && jumpTarget(onTrue).equals(jumpTarget(onFalse))) {
+            join = func.getBlock(jumpTarget(onTrue));
+        } else if (isArm(func, head, onTrue) && jumpTarget(onTrue).equals(onFalse.getLabel())) {
+            join = onFalse;
+            onFalse = null;
+        } else if (isArm(func, head, onFalse) && jumpTarget(onFalse).equals(onTrue.getLabel())) {
+            join = onTrue;
+            onTrue = null;
+        } else {
+            return false;
+        }
+        if (join == head || size(onTrue) + size(onFalse) > limit) {
+            return false;
+        }
+
+        Map<Variable, Temp> trueValues = speculate(func, head, onTrue);
+        Map<Variable, Temp> falseValues = speculate(func, head, onFalse);
+        head.setTerminator(new Jump(join.getLabel()));
+        if (onTrue != null) {
+            func.removeBlock(onTrue);
+        }
+        if (onFalse != null) {
+            func.removeBlock(onFalse);
+        }
+
+        // With the arms gone, a variable they assign that nothing reads needs no select
+        Set<Variable> assigned = new LinkedHashSet<>(trueValues.keySet());
+        assigned.addAll(falseValues.keySet());
+        Operand condition = branch.getCondition();
+        Select last = null;
+        for (Variable variable : assigned) {
+            if (func.getUses(variable).isEmpty()) {
+                continue;
+            }
+            Select select = new Select(variable, condition, renamed(variable, trueValues),
+                    renamed(variable, falseValues));
+            // Every select reads the condition, so the one assigning it goes last
+            if (variable.equals(condition)) {
+                last = select;
+            } else {
+                head.insertBeforeTerminator(select);
+            }
+        }
+        if (last != null) {
+            head.insertBeforeTerminator(last);
+        }
+        return true;
+    }
+
+    // A block only `head` leads to that computes values and jumps on
+    private static boolean isArm(Function func, BasicBlock head, BasicBlock block) {
+        if (block == head || block == func.getEntryBlock() || block.getPredecessors().size() != 1
+                || !(block.getTerminator() instanceof Jump)) {
+            return false;
+        }
+        for (Instruction inst : block) {
+            if (!inst.isTerminator() && !isSpeculatable(func, inst)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isSpeculatable(Function func, Instruction inst) {
+        if (inst instanceof BinaryOperation binOp) {
+            // Only integer division can fail
+            return !binOp.getOperator().equals("/") || "float".equals(func.getType(binOp.getLeft()))
+                    || "float".equals(func.getType(binOp.getRight()))
+                    || binOp.getRight() instanceof IntConst divisor && divisor.value() != 0 && divisor.value() != -1;
+        }
+        return inst instanceof UnaryOperation || inst instanceof Copy || inst instanceof Select;
+    }
+
+    private static Label jumpTarget(BasicBlock arm) {
+        return ((Jump) arm.getTerminator()).getTarget();
+    }
+
+    private static int size(BasicBlock arm) {
+        return arm == null ? 0 : arm.getInstructionCount() - 1;
+    }
+
+    // Copies an arm's instructions to the end of `head`, each writing a fresh temporary.
+    // Returns what each variable the arm assigns holds at its end.
+    private static Map<Variable, Temp> speculate(Function func, BasicBlock head, BasicBlock arm) {
+        Map<Variable, Temp> values = new LinkedHashMap<>();
+        if (arm == null) {
+            return values;
+        }
+        for (Instruction inst : arm) {
+            if (inst.isTerminator()) {
+                break;
+            }
+            Variable def = inst.getDefinition();
+            Instruction copy = inst.copy(operand -> renamed(operand, values), label -> label);
+            Temp temp = func.generateTemp(func.getType(def));
+            copy.setDefinition(temp);
+            head.insertBeforeTerminator(copy);
+            values.put(def, temp);
+        }
+        return values;
+    }
+
+    private static Operand renamed(Operand operand, Map<Variable, Temp> values) {
+        return operand instanceof Variable variable && values.containsKey(variable) ? values.get(variable) : operand;
+    }
+}
@@ -0,0 +1,240 @@
+package optimizer;
+
+import ir.Operand;
+import ir.Operand.*;
+import ir.SSA;
+import ir.ThreeAddressCode;
+import ir.ThreeAddressCode.*;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.UnaryOperator;
+
+// Function inlining. A call is replaced by a copy of the callee's body with every
+// variable renamed to a fresh temporary: the arguments are copied into the parameters,
+// and each return copies its value into the call's result and jumps to the rest of the
+// caller. Callers are visited over the strongly connected components of the call graph,
+// callees first, so a body is copied with its own calls already inlined.
+//
+// A call is inlined if the callee's size, less a bonus for every constant argument, is
+// at most `threshold`, and only while the caller stays within twice its original size
+// plus the threshold. Calls to recursive functions are inlined at most `depth` levels
+// deep. Both default to the system properties compiler.inline.threshold and
+// compiler.inline.depth. Functions in SSA form are left alone.
+public class Inliner implements ModulePass {
+    public static final int DEFAULT_THRESHOLD = 24;
+    public static final int DEFAULT_DEPTH = 1;
+    // Folding is likely to shrink the copy wherever a parameter is a constant
+    public static final int CONSTANT_ARGUMENT_BONUS = 4;
+
+    // A call waiting to be considered, and how many inlined bodies it was copied through
+    private record Site(FunctionCall call, int depth) {
+    }
+
+    private final int threshold;
+    private final int depth;
+
+    public Inliner() {
+        this(Integer.getInteger("compiler.inline.threshold", DEFAULT_THRESHOLD),
+                Integer.getInteger("compiler.inline.depth", DEFAULT_DEPTH));
+    }
+
+    public Inliner(int threshold, int depth) {
+        this.threshold = threshold;
+        this.depth = depth;
+    }
+
+    @Override
+    public String getName() {
+        return "inline";
+    }
+
+    @Override
+    public boolean run(ThreeAddressCode module, AnalysisCache analyses) {
+        CallGraph graph = new CallGraph(module);
+        Set<Function> recursive = new HashSet<>();
+        for (Function function : module.getFunctions()) {
+            if (graph.isRecursive(function)) {
+                recursive.add(function);
+            }
+        }
+        Map<Function, Set<Variable>> entryReads = new HashMap<>();
+        boolean changed = false;
+        for (List<Function> component : graph.getStronglyConnectedComponents()) {
+            for (Function caller : component) {
+                if (!SSA.isInSSA(caller)) {
+                    changed |= inlineCalls(caller, graph, recursive, entryReads);
+                }
+            }
+        }
+        return changed;
+    }
+
+    private boolean inlineCalls(Function caller, CallGraph graph, Set<Function> recursive,
+            Map<Function, Set<Variable>> entryReads) {
+        int limit = 2 * caller.getInstructionCount() + threshold;
+        Deque<Site> sites = new ArrayDeque<>();
+        for (BasicBlock block : caller.getBlocks()) {
+            for (Instruction inst : block) {
+                if (inst instanceof FunctionCall call) {
+                    sites.add(new Site(call, 0));
+                }
+            }
+        }
+        boolean changed = false;
+        while (!sites.isEmpty()) {
+            Site site = sites.poll();
+            FunctionCall call = site.call();
+            Function callee = graph.getFunction(call.getFunction());
+            if (callee == null || SSA.isInSSA(callee) || callee.getEntryBlock() == null
+                    || recursive.contains(callee) && site.depth() >= depth
+                    || cost(callee, call) > threshold
+                    || caller.getInstructionCount() + callee.getInstructionCount() > limit) {
+                continue;
+            }
+            Set<Variable> reads = entryReads.computeIfAbsent(callee, Inliner::readBeforeAssignment);
+            if (!canInline(caller, callee, call, reads)) {
+                continue;
+            }
+            for (FunctionCall copied : inline(caller, call, callee, reads)) {
+                sites.add(new Site(copied, site.depth() + 1));
+            }
+            entryReads.remove(caller);
+            changed = true;
+        }
+        return changed;
+    }
+
+    private static int cost(Function callee, FunctionCall call) {
+        int cost = callee.getInstructionCount();
+        for (Operand argument : call.getArguments()) {
+            if (argument instanceof Constant) {
+                cost -= CONSTANT_ARGUMENT_BONUS;
+            }
+        }
+        return cost;
+    }
+
+    // Variables other than parameters that the callee may read before assigning them;
+    // they start out as zero in a call, so the copy has to set them
+    private static Set<Variable> readBeforeAssignment(Function callee) {
+        Set<Variable> reads = new HashSet<>(new Liveness(callee).getLiveIn(callee.getEntryBlock()));
+        reads.removeIf(variable -> variable instanceof Param);
+        return reads;
+    }
+
+    private static boolean canInline(Function caller, Function callee, FunctionCall call, Set<Variable> reads) {
+        if (!CallGraph.matchesParameters(caller, callee, call)) {
+            return false;
+        }
+        for (Variable variable : reads) {
+            if (zero(callee.getType(variable)) == null) {
+                return false;
+            }
+        }
+        // A bare return in a function with a result yields zero
+        if (call.getResult() != null && zero(callee.getReturnType()) == null) {
+            for (BasicBlock block : callee.getBlocks()) {
+                if (block.getTerminator() instanceof Return ret && ret.getValue() == null) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    // The value a variable of the type starts out with, or null for strings
+    static Constant zero(String type) {
+        return switch (type) {
+            case "int" -> new IntConst(0);
+            case "float" -> new FloatConst(0);
+            default -> null;
+        };
+    }
+
+    // Replaces the call by a copy of the callee and returns the calls in the copy
+    private static List<FunctionCall> inline(Function caller, FunctionCall call, Function callee,
+            Set<Variable> reads) {
+        // The callee may be the caller itself, so its body is taken before anything changes
+        Map<Label, List<Instruction>> body = new LinkedHashMap<>();
+        for (BasicBlock block : callee.getBlocks()) {
+            body.put(block.getLabel(), block.getInstructions());
+        }
+        Label entry = callee.getEntryBlock().getLabel();
+        List<String> parameters = new ArrayList<>(callee.getParameters());
+
+        BasicBlock block = call.getBlock();
+        BasicBlock rest = split(caller, block, call);
+        Map<Label, Label> layout = new HashMap<>();
+        for (Label label : body.keySet()) {
+            layout.put(label, caller.createBlockBefore(rest).getLabel());
+        }
+        Map<Variable, Temp> renamed = new HashMap<>();
+        UnaryOperator<Operand> operands = operand -> operand instanceof Variable variable
+                ? renamed.computeIfAbsent(variable, v -> caller.generateTemp(callee.getType(v)))
+                : operand;
+
+        for (int i = 0; i < parameters.size(); i++) {
+            block.insertBeforeTerminator(new Copy((Variable) operands.apply(new Param(parameters.get(i))),
+                    call.getArguments().get(i)));
+        }
+        for (Variable variable : reads) {
+            block.insertBeforeTerminator(new Copy((Variable) operands.apply(variable), zero(callee.getType(variable))));
+        }
+        block.setTerminator(new Jump(layout.get(entry)));
+
+        List<FunctionCall> calls = new ArrayList<>();
+        for (Map.Entry<Label, List<Instruction>> original : body.entrySet()) {
+            BasicBlock copy = caller.getBlock(layout.get(original.getKey()));
+            for (Instruction inst : original.getValue()) {
+                if (inst instanceof Return ret) {
+                    if (call.getResult() != null) {
+                        copy.addInstruction(new Copy(call.getResult(), ret.getValue() == null
+                                ? zero(callee.getReturnType())
+                                : operands.apply(ret.getValue())));
+                    }
+                    copy.addInstruction(new Jump(rest.getLabel()));
+                    continue;
+                }
+                Instruction copied = inst.copy(operands, layout::get);
+                copy.addInstruction(copied);
+                if (copied instanceof FunctionCall inner) {
+                    calls.add(inner);
+                }
+            }
+        }
+        return calls;
+    }
+
+    // Moves everything after the call into a new block laid out next and removes the
+    // call. The block keeps its old terminator for the caller to replace.
+    private static BasicBlock split(Function function, BasicBlock block, FunctionCall call) {
+        List<BasicBlock> blocks = function.getBlocks();
+        int position = blocks.indexOf(block);
+        BasicBlock rest = position + 1 < blocks.size()
+                ? function.createBlockBefore(blocks.get(position + 1))
+                : function.createBlock();
+        List<Instruction> moved = new ArrayList<>();
+        for (Instruction inst = call.getNext(); inst != null; inst = inst.getNext()) {
+            moved.add(inst);
+        }
+        for (Instruction inst : moved) {
+            if (inst.isTerminator()) {
+                rest.addInstruction(inst.copy(UnaryOperator.identity(), UnaryOperator.identity()));
+            } else {
+                // Moved rather than copied, so calls waiting to be inlined stay valid
+                block.removeInstruction(inst);
+                rest.addInstruction(inst);
+            }
+        }
+        block.removeInstruction(call);
+        return rest;
+    }
+}
@@ -0,0 +1,156 @@
+package optimizer;
+
+import ir.Operand;
+import ir.Operand.*;
+import ir.SSA;
+import ir.ThreeAddressCode;
+import ir.ThreeAddressCode.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+// Interprocedural cleanup over the call graph rooted at main. Functions main cannot reach
+// are dropped. For every other function, whose calls are then all known:
+//  - a parameter every call passes the same constant for takes that constant inside,
+//  - a parameter the function never reads or writes is dropped from it and its calls,
+//  - a result no call reads is dropped, and the function returns nothing.
+// The constants and dropped values leave work for ccp and dce in the callers and callee.
+//
+// A module without main is left alone, as is main itself. Functions in SSA form, or
+// with a call that does not match their parameters, keep their signature.
+public class InterproceduralOptimization implements ModulePass {
+    public static final String ROOT = "main";
+
+    @Override
+    public String getName() {
+        return "ipo";
+    }
+
+    @Override
+    public boolean run(ThreeAddressCode module, AnalysisCache analyses) {
+        CallGraph graph = new CallGraph(module);
+        Function root = graph.getFunction(ROOT);
+        if (root == null) {
+            return false;
+        }
+        boolean changed = false;
+        Set<Function> reachable = graph.getReachable(root);
+        for (Function function : new ArrayList<>(module.getFunctions())) {
+            if (!reachable.contains(function)) {
+                module.removeFunction(function);
+                changed = true;
+            }
+        }
+        if (changed) {
+            graph = new CallGraph(module);
+        }
+
+        for (Function function : module.getFunctions()) {
+            List<FunctionCall> calls = graph.getCallSites(function);
+            if (function != root && !calls.isEmpty() && !SSA.isInSSA(function)
+                    && function.getEntryBlock() != null && matchesParameters(function, calls)) {
+                changed |= propagateConstants(function, calls);
+                changed |= rewriteSignature(function, calls);
+            }
+        }
+        return changed;
+    }
+
+    private static boolean matchesParameters(Function callee, List<FunctionCall> calls) {
+        for (FunctionCall call : calls) {
+            if (!CallGraph.matchesParameters(call.getBlock().getFunction(), callee, call)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean propagateConstants(Function function, List<FunctionCall> calls) {
+        boolean changed = false;
+        BasicBlock entry = null;
+        List<String> parameters = function.getParameters();
+        for (int i = 0; i < parameters.size(); i++) {
+            Constant constant = commonConstant(calls, i);
+            Param param = new Param(parameters.get(i));
+            if (constant == null || !function.isUsed(param)) {
+                continue;
+            }
+            if (function.getDefinitions(param).isEmpty()) {
+                function.replaceAllUsesWith(param, constant);
+            } else {
+                // The body assigns it too, so the constant is only its starting value
+                if (entry == null) {
+                    entry = function.createEntryBlock();
+                }
+                entry.insertBeforeTerminator(new Copy(param, constant));
+            }
+            changed = true;
+        }
+        return changed;
+    }
+
+    // The constant every call passes as argument `index`, or null
+    private static Constant commonConstant(List<FunctionCall> calls, int index) {
+        Operand first = calls.get(0).getArguments().get(index);
+        if (!(first instanceof Constant constant)) {
+            return null;
+        }
+        for (FunctionCall call : calls) {
+            if (!call.getArguments().get(index).equals(constant)) {
+                return null;
+            }
+        }
+        return constant;
+    }
+
+    // Drops unused parameters and an unused result, rewriting every call
+    private static boolean rewriteSignature(Function function, List<FunctionCall> calls) {
+        List<String> parameters = function.getParameters();
+        List<Integer> kept = new ArrayList<>();
+        for (int i = 0; i < parameters.size(); i++) {
+            Param param = new Param(parameters.get(i));
+            if (function.isUsed(param) || !function.getDefinitions(param).isEmpty()) {
+                kept.add(i);
+            }
+        }
+        boolean dropResult = !function.getReturnType().equals("void") && !isResultUsed(calls);
+        if (kept.size() == parameters.size() && !dropResult) {
+            return false;
+        }
+
+        List<String> unused = new ArrayList<>(parameters);
+        for (int i : kept) {
+            unused.remove(parameters.get(i));
+        }
+        for (String parameter : unused) {
+            function.removeParameter(parameter);
+        }
+        if (dropResult) {
+            function.setReturnType("void");
+            for (BasicBlock block : function.getBlocks()) {
+                if (block.getTerminator() instanceof Return ret && ret.getValue() != null) {
+                    block.setTerminator(new Return(null));
+                }
+            }
+        }
+        for (FunctionCall call : calls) {
+            List<Operand> arguments = new ArrayList<>();
+            for (int i : kept) {
+                arguments.add(call.getArguments().get(i));
+            }
+            call.getBlock().replaceInstruction(call,
+                    new FunctionCall(dropResult ? null : call.getResult(), call.getFunction(), arguments));
+        }
+        return true;
+    }
+
+    private static boolean isResultUsed(List<FunctionCall> calls) {
+        for (FunctionCall call : calls) {
+            if (call.getResult() != null && call.getBlock().getFunction().isUsed(call.getResult())) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,112 @@
+package optimizer;
+
+import ir.Operand;
+import ir.Operand.Variable;
+import ir.ThreeAddressCode.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// Live variables: a variable is live at a point if some path from there reads it before
+// redefining it. Backward, union. A phi's incoming value counts as a use at the end of
+// the corresponding predecessor, not at the start of the phi's block.
+public class Liveness extends DataflowAnalysis {
+    private final List<Variable> variables;
+    private final Map<Variable, Integer> variableIndex;
+
+    public Liveness(Function function) {
+        super(function, Direction.BACKWARD, Meet.UNION);
+        this.variables = new ArrayList<>();
+        this.variableIndex = new HashMap<>();
+        for (BasicBlock block : function.getBlocks()) {
+            for (Instruction instruction : block) {
+                if (instruction.getDefinition() != null) {
+                    number(instruction.getDefinition());
+                }
+                for (Operand use : instruction.getUses()) {
+                    if (use instanceof Variable variable) {
+                        number(variable);
+                    }
+                }
+            }
+        }
+        solve();
+    }
+
+    private void number(Variable variable) {
+        if (!variableIndex.containsKey(variable)) {
+            variableIndex.put(variable, variables.size());
+            variables.add(variable);
+        }
+    }
+
+    @Override
+    protected int universeSize() {
+        return variables.size();
+    }
+
+    @Override
+    protected void initializeBlock(BasicBlock block, long[] gen, long[] kill) {
+        for (BasicBlock successor : block.getSuccessors()) {
+            for (Phi phi : successor.getPhis()) {
+                if (phi.getIncoming(block.getLabel()) instanceof Variable variable) {
+                    set(gen, variableIndex.get(variable));
+                }
+            }
+        }
+        for (Instruction instruction = block.getLastInstruction(); instruction != null;
+                instruction = instruction.getPrevious()) {
+            Variable def = instruction.getDefinition();
+            if (def != null) {
+                int d = variableIndex.get(def);
+                clear(gen, d);
+                set(kill, d);
+            }
+            if (instruction instanceof Phi) {
+                continue;
+            }
+            for (Operand use : instruction.getUses()) {
+                if (use instanceof Variable variable) {
+                    set(gen, variableIndex.get(variable));
+                }
+            }
+        }
+    }
+
+    public Set<Variable> getLiveIn(BasicBlock block) {
+        return toSet(blockIn(block));
+    }
+
+    public Set<Variable> getLiveOut(BasicBlock block) {
+        return toSet(blockOut(block));
+    }
+
+    public boolean isLiveIn(BasicBlock block, Variable variable) {
+        return contains(blockIn(block), variable);
+    }
+
+    public boolean isLiveOut(BasicBlock block, Variable variable) {
+        return contains(blockOut(block), variable);
+    }
+
+    private boolean contains(long[] facts, Variable variable) {
+        Integer i = variableIndex.get(variable);
+        return facts != null && i != null && get(facts, i);
+    }
+
+    private Set<Variable> toSet(long[] facts) {
+        if (facts == null) {
+            return Set.of();
+        }
+        Set<Variable> result = new LinkedHashSet<>();
+        for (int i = nextSetBit(facts, 0); i >= 0; i = nextSetBit(facts, i + 1)) {
+            result.add(variables.get(i));
+        }
+        return Collections.unmodifiableSet(result);
+    }
+}
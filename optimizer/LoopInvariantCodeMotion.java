@@ -0,0 +1,184 @@
+package optimizer;
+
+import ir.DominatorTree;
+import ir.LoopInfo;
+import ir.LoopInfo.Loop;
+import ir.Operand;
+import ir.Operand.*;
+import ir.ThreeAddressCode.*;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// Loop-invariant code motion. Every natural loop first gets a preheader, a block that
+// only jumps to the header and is the header's only predecessor from outside the loop.
+// Then, innermost loops first, an arithmetic instruction or copy `d = ...` moves to the
+// end of the preheader when
+//   - each operand is a constant or has no assignment left inside the loop,
+//   - it is the only assignment to d inside the loop,
+//   - d is not live into the header, so no read in the loop sees an older d, and
+//   - d is not live into an exit block, or the instruction runs on every iteration.
+// Hoisted code runs even when the loop body does not, so division by anything but a
+// nonzero constant is only hoisted when its block runs on every iteration; otherwise
+// a loop that never runs could trap. Calls are never moved.
+public class LoopInvariantCodeMotion implements FunctionPass {
+    // Whether the last run added preheaders; nothing is preserved before the first run
+    private boolean createdPreheaders = true;
+
+    @Override
+    public String getName() {
+        return "licm";
+    }
+
+    @Override
+    public Set<Class<?>> getPreservedAnalyses() {
+        return createdPreheaders ? Set.of() : AnalysisCache.CONTROL_FLOW;
+    }
+
+    @Override
+    public boolean run(Function func, AnalysisCache analyses) {
+        createdPreheaders = false;
+        for (Loop loop : analyses.get(LoopInfo.class, func).getLoops()) {
+            createdPreheaders |= ensurePreheader(func, loop);
+        }
+        if (createdPreheaders) {
+            analyses.invalidate(func, Set.of());
+        }
+
+        DominatorTree dominators = analyses.get(DominatorTree.class, func);
+        boolean changed = createdPreheaders;
+        for (Loop loop : analyses.get(LoopInfo.class, func).getLoops()) {
+            BasicBlock preheader = loop.getPreheader();
+            if (preheader == null) {
+                continue;
+            }
+            // Hoisting from an inner loop changes liveness around the outer one
+            Liveness liveness = new Liveness(func);
+            changed |= hoist(func, loop, preheader, dominators, liveness);
+        }
+        if (changed) {
+            analyses.invalidate(func, getPreservedAnalyses());
+        }
+        return changed;
+    }
+
+    // Also used by the other loop passes
+    static boolean ensurePreheader(Function func, Loop loop) {
+        BasicBlock header = loop.getHeader();
+        if (loop.getPreheader() != null || !header.getPhis().isEmpty()) {
+            return false;
+        }
+        if (header == func.getEntryBlock()) {
+            func.createEntryBlock();
+            return true;
+        }
+        List<BasicBlock> outside = new ArrayList<>();
+        for (BasicBlock pred : header.getPredecessors()) {
+            if (!loop.contains(pred)) {
+                outside.add(pred);
+            }
+        }
+        if (outside.isEmpty()) {
+            return false;
+        }
+        BasicBlock preheader = func.createBlockBefore(header);
+        preheader.addInstruction(new Jump(header.getLabel()));
+        for (BasicBlock pred : outside) {
+            pred.replaceSuccessor(header, preheader);
+        }
+        return true;
+    }
+
+    private boolean hoist(Function func, Loop loop, BasicBlock preheader, DominatorTree dominators,
+            Liveness liveness) {
+        Map<Variable, Integer> assignments = new HashMap<>();
+        List<BasicBlock> exiting = new ArrayList<>();
+        for (BasicBlock block : loop.getBlocks()) {
+            for (Instruction inst : block) {
+                if (inst.getDefinition() != null) {
+                    assignments.merge(inst.getDefinition(), 1, Integer::sum);
+                }
+            }
+            for (BasicBlock successor : block.getSuccessors()) {
+                if (!loop.contains(successor)) {
+                    exiting.add(block);
+                    break;
+                }
+            }
+        }
+
+        // Dominator order, so an invariant definition moves before the code reading it
+        List<BasicBlock> order = new ArrayList<>();
+        for (BasicBlock block : dominators.getReversePostOrder()) {
+            if (loop.contains(block)) {
+                order.add(block);
+            }
+        }
+
+        boolean changed = false;
+        boolean progress = true;
+        while (progress) {
+            progress = false;
+            for (BasicBlock block : order) {
+                boolean everyIteration = dominatesAll(dominators, block, exiting);
+                for (Instruction inst : block) {
+                    if (isHoistable(inst, loop, assignments, liveness, everyIteration)) {
+                        block.removeInstruction(inst);
+                        preheader.insertBeforeTerminator(inst);
+                        assignments.remove(inst.getDefinition());
+                        progress = true;
+                        changed = true;
+                    }
+                }
+            }
+        }
+        return changed;
+    }
+
+    private boolean isHoistable(Instruction inst, Loop loop, Map<Variable, Integer> assignments,
+            Liveness liveness, boolean everyIteration) {
+        if (!(inst instanceof BinaryOperation || inst instanceof UnaryOperation || inst instanceof Copy
+                || inst instanceof Select)) {
+            return false;
+        }
+        Variable def = inst.getDefinition();
+        if (assignments.getOrDefault(def, 0) != 1 || liveness.isLiveIn(loop.getHeader(), def)) {
+            return false;
+        }
+        for (Operand operand : inst.getUses()) {
+            if (operand instanceof Variable variable && assignments.containsKey(variable)) {
+                return false;
+            }
+        }
+        if (!everyIteration) {
+            for (BasicBlock exit : loop.getExitBlocks()) {
+                if (liveness.isLiveIn(exit, def)) {
+                    return false;
+                }
+            }
+            if (inst instanceof BinaryOperation binOp && binOp.getOperator().equals("/")
+                    && !isFloat(inst, binOp) && !(binOp.getRight() instanceof IntConst c && c.value() != 0)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Float division never traps
+    private static boolean isFloat(Instruction inst, BinaryOperation binOp) {
+        Function func = inst.getBlock().getFunction();
+        return "float".equals(func.getType(binOp.getLeft())) || "float".equals(func.getType(binOp.getRight()));
+    }
+
+    private static boolean dominatesAll(DominatorTree dominators, BasicBlock block, List<BasicBlock> blocks) {
+        for (BasicBlock other : blocks) {
+            if (!dominators.dominates(block, other)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,95 @@
+package optimizer;
+
+import ir.LoopInfo;
+import ir.LoopInfo.Loop;
+import ir.ThreeAddressCode.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.function.UnaryOperator;
+
+// Loop rotation: a loop whose header tests and exits, like the ones `while` produces,
+// becomes a guarded do-while. The preheader gets a copy of the header as the guard,
+// and every latch ends with its own copy instead of jumping back to the header, which
+// then disappears. An iteration now ends in one conditional branch back to the body
+// instead of a jump to the test followed by the branch.
+//
+// Headers are copied once per latch, so only headers of at most MAX_HEADER_SIZE
+// instructions are rotated. Loops whose body is their header are already in this form.
+public class LoopRotation implements FunctionPass {
+    public static final int MAX_HEADER_SIZE = 8;
+
+    @Override
+    public String getName() {
+        return "rotate";
+    }
+
+    @Override
+    public Set<Class<?>> getPreservedAnalyses() {
+        return Set.of();
+    }
+
+    @Override
+    public boolean run(Function func, AnalysisCache analyses) {
+        boolean changed = false;
+        for (Loop loop : analyses.get(LoopInfo.class, func).getLoops()) {
+            changed |= LoopInvariantCodeMotion.ensurePreheader(func, loop);
+        }
+        if (changed) {
+            analyses.invalidate(func, Set.of());
+        }
+        // Rotating a loop changes the blocks of the loops around it, so the loops are
+        // found again after every rotation; each one removes a block, so this ends
+        while (rotateOne(func, analyses.get(LoopInfo.class, func))) {
+            analyses.invalidate(func, Set.of());
+            changed = true;
+        }
+        return changed;
+    }
+
+    private static boolean rotateOne(Function func, LoopInfo loops) {
+        for (Loop loop : loops.getLoops()) {
+            if (rotate(func, loop)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean rotate(Function func, Loop loop) {
+        BasicBlock header = loop.getHeader();
+        BasicBlock preheader = loop.getPreheader();
+        if (preheader == null || header.getInstructionCount() > MAX_HEADER_SIZE
+                || !(header.getTerminator() instanceof ConditionalJump branch)
+                || !header.getPhis().isEmpty()) {
+            return false;
+        }
+        BasicBlock onTrue = func.getBlock(branch.getTrueTarget());
+        BasicBlock onFalse = func.getBlock(branch.getFalseTarget());
+        if (loop.contains(onTrue) == loop.contains(onFalse) || onTrue == header || onFalse == header
+                || !onTrue.getPhis().isEmpty() || !onFalse.getPhis().isEmpty()) {
+            return false;
+        }
+        List<BasicBlock> entries = new ArrayList<>();
+        for (BasicBlock pred : header.getPredecessors()) {
+            if (pred != preheader && !(pred.getTerminator() instanceof Jump)) {
+                return false;
+            }
+            entries.add(pred);
+        }
+
+        for (BasicBlock pred : entries) {
+            for (Instruction inst : header) {
+                Instruction copy = inst.copy(UnaryOperator.identity(), UnaryOperator.identity());
+                if (inst.isTerminator()) {
+                    pred.setTerminator(copy);
+                } else {
+                    pred.insertBeforeTerminator(copy);
+                }
+            }
+        }
+        func.removeBlock(header);
+        return true;
+    }
+}
@@ -0,0 +1,311 @@
+package optimizer;
+
+import ir.DominatorTree;
+import ir.LoopInfo;
+import ir.LoopInfo.Loop;
+import ir.Operand;
+import ir.Operand.*;
+import ir.ThreeAddressCode.*;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.UnaryOperator;
+
+// Unrolls counted loops: innermost loops whose header only evaluates `i < n` (or <=, or
+// > and >= when counting down) and branches on it, where i is a basic induction variable
+// updated once on every iteration and n is a constant or not assigned in the loop.
+//
+// With constant start and bound the trip count is known, and a loop whose whole
+// execution fits the budget is replaced by that many copies of its body. Otherwise the
+// body is copied `factor` times into a new loop in front of the original, guarded by
+// `i < n - (factor - 1) * step` so every copy would have passed the original test; the
+// original loop stays behind it to run the remaining iterations. The factor shrinks
+// until the copies fit the budget. Temporaries that do not carry a value from one
+// iteration to the next get fresh names in every copy.
+//
+// The factor and budget default to the system properties compiler.unroll.factor and
+// compiler.unroll.budget.
+public class LoopUnrolling implements FunctionPass {
+    public static final int DEFAULT_FACTOR = 4;
+    public static final int DEFAULT_BUDGET = 64;
+
+    private record CountedLoop(Loop loop, BasicBlock preheader, BasicBlock header, BasicBlock entry,
+            BasicBlock exit, List<BasicBlock> body, int size, Variable counter, int step, String operator,
+            Operand bound) {
+    }
+
+    private final int factor;
+    private final int budget;
+
+    public LoopUnrolling() {
+        this(Integer.getInteger("compiler.unroll.factor", DEFAULT_FACTOR),
+                Integer.getInteger("compiler.unroll.budget", DEFAULT_BUDGET));
+    }
+
+    // At most `factor` copies of a body, and at most `budget` instructions of copies per loop
+    public LoopUnrolling(int factor, int budget) {
+        this.factor = factor;
+        this.budget = budget;
+    }
+
+    @Override
+    public String getName() {
+        return "unroll";
+    }
+
+    @Override
+    public Set<Class<?>> getPreservedAnalyses() {
+        return Set.of();
+    }
+
+    @Override
+    public boolean run(Function func, AnalysisCache analyses) {
+        boolean changed = false;
+        for (Loop loop : analyses.get(LoopInfo.class, func).getLoops()) {
+            changed |= LoopInvariantCodeMotion.ensurePreheader(func, loop);
+        }
+        if (changed) {
+            analyses.invalidate(func, Set.of());
+        }
+
+        // Only innermost loops are unrolled, so one loop's copies never touch another
+        DominatorTree dominators = analyses.get(DominatorTree.class, func);
+        LoopInfo loops = analyses.get(LoopInfo.class, func);
+        List<CountedLoop> candidates = new ArrayList<>();
+        for (Loop loop : loops.getLoops()) {
+            CountedLoop counted = match(func, loop, dominators);
+            if (counted != null) {
+                candidates.add(counted);
+            }
+        }
+        Liveness liveness = candidates.isEmpty() ? null : new Liveness(func);
+        for (CountedLoop counted : candidates) {
+            Set<Temp> local = iterationTemps(counted, liveness);
+            Integer trips = tripCount(func, counted, loops, dominators);
+            if (trips != null) {
+                fullyUnroll(func, counted, trips, local);
+                changed = true;
+            } else {
+                changed |= unroll(func, counted, local);
+            }
+        }
+        return changed;
+    }
+
+    private CountedLoop match(Function func, Loop loop, DominatorTree dominators) {
+        BasicBlock header = loop.getHeader();
+        BasicBlock preheader = loop.getPreheader();
+        if (!loop.getChildren().isEmpty() || loop.getLatches().size() != 1 || preheader == null
+                || header.getInstructionCount() != 2
+                || !(header.getFirstInstruction() instanceof BinaryOperation test)
+                || !(header.getTerminator() instanceof ConditionalJump branch)
+                || !branch.getCondition().equals(test.getResult())
+                || func.getUses(test.getResult()).size() != 1) {
+            return null;
+        }
+        BasicBlock onTrue = func.getBlock(branch.getTrueTarget());
+        BasicBlock onFalse = func.getBlock(branch.getFalseTarget());
+        boolean staysOnTrue = loop.contains(onTrue);
+        if (staysOnTrue == loop.contains(onFalse)) {
+            return null;
+        }
+
+        // The header is the only way out, so an iteration runs the whole body
+        List<BasicBlock> body = new ArrayList<>();
+        int size = 0;
+        for (BasicBlock block : func.getBlocks()) {
+            if (loop.contains(block) && block != header) {
+                if (!block.getPhis().isEmpty() || !loop.getBlocks().containsAll(block.getSuccessors())) {
+                    return null;
+                }
+                body.add(block);
+                size += block.getInstructionCount();
+            }
+        }
+
+        Variable counter;
+        Operand bound;
+        String operator;
+        if (test.getLeft() instanceof Variable left) {
+            counter = left;
+            bound = test.getRight();
+            operator = test.getOperator();
+        } else if (test.getRight() instanceof Variable right) {
+            counter = right;
+            bound = test.getLeft();
+            operator = StrengthReduction.mirror(test.getOperator());
+        } else {
+            return null;
+        }
+        BinaryOperation update = null;
+        for (Instruction def : func.getDefinitions(counter)) {
+            if (loop.contains(def.getBlock())) {
+                if (update != null || !(def instanceof BinaryOperation binOp)) {
+                    return null;
+                }
+                update = binOp;
+            }
+        }
+        Integer step = update == null ? null : StrengthReduction.step(func, update);
+        if (step == null || step == 0 || operator == null
+                || !dominators.dominates(update.getBlock(), loop.getLatches().get(0))
+                || !isInvariant(func, loop, bound)) {
+            return null;
+        }
+        String stay = staysOnTrue ? operator : StrengthReduction.negate(operator);
+        if (stay == null) {
+            return null;
+        }
+        boolean up = stay.equals("<") || stay.equals("<=");
+        boolean down = stay.equals(">") || stay.equals(">=");
+        if (step > 0 ? !up : !down) {
+            return null;
+        }
+        return new CountedLoop(loop, preheader, header, staysOnTrue ? onTrue : onFalse,
+                staysOnTrue ? onFalse : onTrue, body, size, counter, step, stay, bound);
+    }
+
+    private static boolean isInvariant(Function func, Loop loop, Operand operand) {
+        if (operand instanceof IntConst) {
+            return true;
+        }
+        if (!(operand instanceof Variable variable) || !"int".equals(func.getType(variable))) {
+            return false;
+        }
+        for (Instruction def : func.getDefinitions(variable)) {
+            if (loop.contains(def.getBlock())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Temporaries assigned in the body that are dead at the header: every read of one
+    // follows an assignment in the same iteration, so each copy may use its own
+    private static Set<Temp> iterationTemps(CountedLoop counted, Liveness liveness) {
+        Set<Temp> local = new HashSet<>();
+        for (BasicBlock block : counted.body()) {
+            for (Instruction inst : block) {
+                if (inst.getDefinition() instanceof Temp temp && !liveness.isLiveIn(counted.header(), temp)) {
+                    local.add(temp);
+                }
+            }
+        }
+        return local;
+    }
+
+    // The exact number of iterations if it is known and all of them fit the budget
+    private Integer tripCount(Function func, CountedLoop counted, LoopInfo loops, DominatorTree dominators) {
+        if (!(counted.bound() instanceof IntConst n)) {
+            return null;
+        }
+        Integer start = StrengthReduction.startValue(func, counted.loop(), loops, dominators, counted.counter());
+        if (start == null) {
+            return null;
+        }
+        long value = start;
+        int trips = 0;
+        while (holds(value, counted.operator(), n.value())) {
+            trips++;
+            value += counted.step();
+            if ((long) trips * counted.size() > budget || !StrengthReduction.fits(value)) {
+                return null;
+            }
+        }
+        return trips;
+    }
+
+    private static boolean holds(long value, String operator, long bound) {
+        return switch (operator) {
+            case "<" -> value < bound;
+            case "<=" -> value <= bound;
+            case ">" -> value > bound;
+            default -> value >= bound;
+        };
+    }
+
+    private static void fullyUnroll(Function func, CountedLoop counted, int trips, Set<Temp> local) {
+        Label first = trips == 0 ? counted.exit().getLabel() : copyBody(func, counted, trips, counted.exit(), local);
+        counted.preheader().setTerminator(new Jump(first));
+        for (BasicBlock block : counted.loop().getBlocks()) {
+            func.removeBlock(block);
+        }
+    }
+
+    private boolean unroll(Function func, CountedLoop counted, Set<Temp> local) {
+        int copies = Math.min(factor, budget / counted.size());
+        if (copies < 2) {
+            return false;
+        }
+        // The guard checks the value the counter has at the test of the last copy
+        long skipped = (long) (copies - 1) * counted.step();
+        if (!StrengthReduction.fits(skipped)) {
+            return false;
+        }
+        BasicBlock preheader = counted.preheader();
+        BasicBlock header = counted.header();
+        Operand limit;
+        BasicBlock guard = func.createBlockBefore(header);
+        if (counted.bound() instanceof IntConst n) {
+            long value = n.value() - skipped;
+            if (!StrengthReduction.fits(value)) {
+                return false;
+            }
+            limit = new IntConst((int) value);
+            preheader.setTerminator(new Jump(guard.getLabel()));
+        } else {
+            // n - skipped wraps around for n near the end of the int range counted
+            // towards; such loops only take the original version
+            Temp limitTemp = func.generateTemp("int");
+            Temp inRange = func.generateTemp("int");
+            preheader.insertBeforeTerminator(new BinaryOperation(limitTemp, counted.bound(), "-",
+                    new IntConst((int) skipped)));
+            preheader.insertBeforeTerminator(counted.step() > 0
+                    ? new BinaryOperation(inRange, counted.bound(), ">=", new IntConst((int) (Integer.MIN_VALUE + skipped)))
+                    : new BinaryOperation(inRange, counted.bound(), "<=", new IntConst((int) (Integer.MAX_VALUE + skipped))));
+            preheader.setTerminator(new ConditionalJump(inRange, guard.getLabel(), header.getLabel()));
+            limit = limitTemp;
+        }
+        Temp more = func.generateTemp(func.getType(header.getFirstInstruction().getDefinition()));
+        guard.addInstruction(new BinaryOperation(more, counted.counter(), counted.operator(), limit));
+        Label first = copyBody(func, counted, copies, guard, local);
+        guard.addInstruction(new ConditionalJump(more, first, header.getLabel()));
+        return true;
+    }
+
+    // Lays out `copies` copies of the body in front of the header, each continuing into
+    // the next where the original returns to the header and the last one going to
+    // `after`. Returns the label of the first copy's entry.
+    private static Label copyBody(Function func, CountedLoop counted, int copies, BasicBlock after,
+            Set<Temp> local) {
+        List<Map<Label, Label>> layouts = new ArrayList<>();
+        for (int i = 0; i < copies; i++) {
+            Map<Label, Label> layout = new HashMap<>();
+            for (BasicBlock block : counted.body()) {
+                layout.put(block.getLabel(), func.createBlockBefore(counted.header()).getLabel());
+            }
+            layouts.add(layout);
+        }
+        Label header = counted.header().getLabel();
+        for (int i = 0; i < copies; i++) {
+            Map<Label, Label> layout = layouts.get(i);
+            Label next = i + 1 < copies ? layouts.get(i + 1).get(counted.entry().getLabel()) : after.getLabel();
+            Map<Temp, Temp> renamed = new HashMap<>();
+            UnaryOperator<Operand> operands = operand -> operand instanceof Temp temp && local.contains(temp)
+                    ? renamed.computeIfAbsent(temp, t -> func.generateTemp(func.getType(t)))
+                    : operand;
+            UnaryOperator<Label> labels = label -> label.equals(header) ? next : layout.get(label);
+            for (BasicBlock block : counted.body()) {
+                BasicBlock copy = func.getBlock(layout.get(block.getLabel()));
+                for (Instruction inst : block) {
+                    copy.addInstruction(inst.copy(operands, labels));
+                }
+            }
+        }
+        return layouts.get(0).get(counted.entry().getLabel());
+    }
+}
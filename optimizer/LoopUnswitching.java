@@ -0,0 +1,184 @@
+package optimizer;
+
+import ir.LoopInfo;
+import ir.LoopInfo.Loop;
+import ir.Operand;
+import ir.Operand.*;
+import ir.SSA;
+import ir.ThreeAddressCode.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.UnaryOperator;
+
+// Loop unswitching. A branch inside a loop on a variable the loop never assigns goes the
+// same way on every iteration, so the test moves to the preheader, which picks one of
+// two copies of the loop: the original, where the branch always takes its true edge,
+// and a copy, where it always takes the false edge. Both copies assign the same
+// variables, so code after the loop is unaffected. The outermost loop the condition is
+// invariant in is the one copied.
+//
+// Every unswitch duplicates a whole loop, so a loop is only copied if it has at most
+// `limit` instructions, and the copies made in one function add up to at most `limit`
+// as well. The limit defaults to the system property compiler.unswitch.limit.
+public class LoopUnswitching implements FunctionPass {
+    public static final int DEFAULT_LIMIT = 64;
+
+    private final int limit;
+
+    public LoopUnswitching() {
+        this(Integer.getInteger("compiler.unswitch.limit", DEFAULT_LIMIT));
+    }
+
+    public LoopUnswitching(int limit) {
+        this.limit = limit;
+    }
+
+    @Override
+    public String getName() {
+        return "unswitch";
+    }
+
+    @Override
+    public Set<Class<?>> getPreservedAnalyses() {
+        return Set.of();
+    }
+
+    @Override
+    public boolean run(Function func, AnalysisCache analyses) {
+        boolean changed = false;
+        int growth = 0;
+        while (true) {
+            boolean createdPreheaders = false;
+            for (Loop loop : analyses.get(LoopInfo.class, func).getLoops()) {
+                createdPreheaders |= LoopInvariantCodeMotion.ensurePreheader(func, loop);
+            }
+            if (createdPreheaders) {
+                analyses.invalidate(func, Set.of());
+                changed = true;
+            }
+
+            List<Loop> outermostFirst = new ArrayList<>(analyses.get(LoopInfo.class, func).getLoops());
+            Collections.reverse(outermostFirst);
+            Loop chosen = null;
+            BasicBlock branchBlock = null;
+            int size = 0;
+            for (Loop loop : outermostFirst) {
+                size = size(loop);
+                if (loop.getPreheader() == null || growth + size > limit) {
+                    continue;
+                }
+                branchBlock = findInvariantBranch(func, loop);
+                if (branchBlock != null) {
+                    chosen = loop;
+                    break;
+                }
+            }
+            if (chosen == null) {
+                return changed;
+            }
+            unswitch(func, chosen, branchBlock);
+            growth += size;
+            changed = true;
+            analyses.invalidate(func, Set.of());
+        }
+    }
+
+    private static int size(Loop loop) {
+        int size = 0;
+        for (BasicBlock block : loop.getBlocks()) {
+            size += block.getInstructionCount();
+        }
+        return size;
+    }
+
+    // A block of the loop ending in a branch that stays in the loop either way and
+    // tests a variable with no assignment in the loop
+    private static BasicBlock findInvariantBranch(Function func, Loop loop) {
+        for (BasicBlock block : func.getBlocks()) {
+            if (!loop.contains(block)) {
+                continue;
+            }
+            if (!block.getPhis().isEmpty()) {
+                return null;
+            }
+            if (block.getTerminator() instanceof ConditionalJump branch
+                    && branch.getCondition() instanceof Variable condition
+                    && loop.contains(func.getBlock(branch.getTrueTarget()))
+                    && loop.contains(func.getBlock(branch.getFalseTarget()))
+                    && isInvariant(func, loop, condition)) {
+                return block;
+            }
+        }
+        return null;
+    }
+
+    private static boolean isInvariant(Function func, Loop loop, Variable variable) {
+        for (Instruction def : func.getDefinitions(variable)) {
+            if (loop.contains(def.getBlock())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void unswitch(Function func, Loop loop, BasicBlock branchBlock) {
+        List<BasicBlock> blocks = new ArrayList<>();
+        for (BasicBlock block : func.getBlocks()) {
+            if (loop.contains(block)) {
+                blocks.add(block);
+            }
+        }
+        Map<Label, Label> layout = new HashMap<>();
+        for (BasicBlock block : blocks) {
+            layout.put(block.getLabel(), func.createBlock().getLabel());
+        }
+        UnaryOperator<Label> labels = label -> layout.getOrDefault(label, label);
+        // Temporaries that live only within one iteration get their own names in the copy,
+        // so later passes still see one definition each
+        Liveness liveness = new Liveness(func);
+        Map<Temp, Temp> renamed = new HashMap<>();
+        for (BasicBlock block : blocks) {
+            for (Instruction inst : block) {
+                if (inst.getDefinition() instanceof Temp temp && !isLiveAround(liveness, loop, temp)) {
+                    renamed.computeIfAbsent(temp, t -> func.generateTemp(func.getType(t)));
+                }
+            }
+        }
+        UnaryOperator<Operand> operands = operand -> operand instanceof Temp temp && renamed.containsKey(temp)
+                ? renamed.get(temp)
+                : operand;
+        for (BasicBlock block : blocks) {
+            BasicBlock copy = func.getBlock(layout.get(block.getLabel()));
+            for (Instruction inst : block) {
+                copy.addInstruction(inst.copy(operands, labels));
+            }
+        }
+
+        ConditionalJump branch = (ConditionalJump) branchBlock.getTerminator();
+        Operand condition = branch.getCondition();
+        branchBlock.setTerminator(new Jump(branch.getTrueTarget()));
+        func.getBlock(layout.get(branchBlock.getLabel())).setTerminator(new Jump(labels.apply(branch.getFalseTarget())));
+        Label header = loop.getHeader().getLabel();
+        loop.getPreheader().setTerminator(new ConditionalJump(condition, header, layout.get(header)));
+        // Each copy loses the blocks only the other edge led to
+        SSA.removeUnreachableBlocks(func);
+    }
+
+    // Live into the header or out of the loop
+    private static boolean isLiveAround(Liveness liveness, Loop loop, Variable variable) {
+        if (liveness.isLiveIn(loop.getHeader(), variable)) {
+            return true;
+        }
+        for (BasicBlock exit : loop.getExitBlocks()) {
+            if (liveness.isLiveIn(exit, variable)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,12 @@
+package optimizer;
+
+import ir.ThreeAddressCode;
+
+// A transformation that looks across functions (call graph, inlining). A module pass that
+// reports a change invalidates every cached analysis.
+public interface ModulePass {
+    String getName();
+
+    // Returns true if the module changed
+    boolean run(ThreeAddressCode module, AnalysisCache analyses);
+}
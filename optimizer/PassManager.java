@@ -0,0 +1,242 @@
+package optimizer;
+
+import ir.ThreeAddressCode;
+import ir.ThreeAddressCode.Function;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+// Runs a pipeline of registered passes over a module. A pipeline is a comma-separated list
+// of pass names; a parenthesized group is repeated until none of its passes changes
+// anything, up to the iteration limit. For example "fold,(dce,fold),dce".
+public class PassManager {
+    public static final int DEFAULT_MAX_ITERATIONS = 10;
+
+    private final Map<String, Supplier<FunctionPass>> functionPasses;
+    private final Map<String, Supplier<ModulePass>> modulePasses;
+    private final Map<String, PassStatistics> statistics;
+    private final AnalysisCache analyses;
+    private int maxIterations;
+
+    // Accumulated over every run of one pass
+    public static class PassStatistics {
+        private final String name;
+        private int runs;
+        private int changes;
+        private long nanos;
+        private int instructionDelta;
+
+        private PassStatistics(String name) {
+            this.name = name;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int getRuns() {
+            return runs;
+        }
+
+        // Runs that changed the IR
+        public int getChanges() {
+            return changes;
+        }
+
+        public long getNanos() {
+            return nanos;
+        }
+
+        // Instructions after minus instructions before, summed over all runs
+        public int getInstructionDelta() {
+            return instructionDelta;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%-11s %4d runs %4d changed %9.3f ms %+7d instructions",
+                    name, runs, changes, nanos / 1e6, instructionDelta);
+        }
+    }
+
+    private abstract static class Step {
+        abstract boolean run(ThreeAddressCode module);
+    }
+
+    private class PassStep extends Step {
+        private final String name;
+
+        PassStep(String name) {
+            this.name = name;
+        }
+
+        @Override
+        boolean run(ThreeAddressCode module) {
+            PassStatistics stats = statistics.computeIfAbsent(name, PassStatistics::new);
+            int before = countInstructions(module);
+            long start = System.nanoTime();
+            boolean changed;
+            if (functionPasses.containsKey(name)) {
+                FunctionPass pass = functionPasses.get(name).get();
+                changed = false;
+                for (Function function : module.getFunctions()) {
+                    if (pass.run(function, analyses)) {
+                        analyses.invalidate(function, pass.getPreservedAnalyses());
+                        changed = true;
+                    }
+                }
+            } else {
+                changed = modulePasses.get(name).get().run(module, analyses);
+                if (changed) {
+                    analyses.invalidateAll();
+                }
+            }
+            stats.nanos += System.nanoTime() - start;
+            stats.runs++;
+            if (changed) {
+                stats.changes++;
+            }
+            stats.instructionDelta += countInstructions(module) - before;
+            return changed;
+        }
+    }
+
+    private class GroupStep extends Step {
+        private final List<Step> steps;
+        private final boolean repeat;
+
+        GroupStep(List<Step> steps, boolean repeat) {
+            this.steps = steps;
+            this.repeat = repeat;
+        }
+
+        @Override
+        boolean run(ThreeAddressCode module) {
+            boolean changedAny = false;
+            for (int iteration = 0; iteration < (repeat ? maxIterations : 1); iteration++) {
+                boolean changed = false;
+                for (Step step : steps) {
+                    changed |= step.run(module);
+                }
+                changedAny |= changed;
+                if (!changed) {
+                    break;
+                }
+            }
+            return changedAny;
+        }
+    }
+
+    public PassManager() {
+        this.functionPasses = new LinkedHashMap<>();
+        this.modulePasses = new LinkedHashMap<>();
+        this.statistics = new LinkedHashMap<>();
+        this.analyses = new AnalysisCache();
+        this.maxIterations = DEFAULT_MAX_ITERATIONS;
+        registerFunctionPass("fold", ConstantFolding::new);
+        registerFunctionPass("dce", DeadCodeElimination::new);
+        registerFunctionPass("ccp", ConditionalConstantPropagation::new);
+        registerFunctionPass("gvn", GlobalValueNumbering::new);
+        registerFunctionPass("copyprop", CopyPropagation::new);
+        registerFunctionPass("coalesce", CopyCoalescing::new);
+        registerFunctionPass("licm", LoopInvariantCodeMotion::new);
+        registerFunctionPass("strength", StrengthReduction::new);
+        registerFunctionPass("unroll", LoopUnrolling::new);
+        registerFunctionPass("unswitch", LoopUnswitching::new);
+        registerFunctionPass("rotate", LoopRotation::new);
+        registerFunctionPass("simplifycfg", ControlFlowSimplification::new);
+        registerFunctionPass("ifconvert", IfConversion::new);
+        registerFunctionPass("tailcall", TailCallElimination::new);
+        registerFunctionPass("ssa", SSAConstruction::new);
+        registerFunctionPass("unssa", SSADestruction::new);
+        registerModulePass("inline", Inliner::new);
+        registerModulePass("evalcalls", CallEvaluation::new);
+        registerModulePass("ipo", InterproceduralOptimization::new);
+    }
+
+    public void registerFunctionPass(String name, Supplier<FunctionPass> pass) {
+        functionPasses.put(name, pass);
+    }
+
+    public void registerModulePass(String name, Supplier<ModulePass> pass) {
+        modulePasses.put(name, pass);
+    }
+
+    // Cap on the rounds of each parenthesized group
+    public void setMaxIterations(int maxIterations) {
+        this.maxIterations = maxIterations;
+    }
+
+    public AnalysisCache getAnalyses() {
+        return analyses;
+    }
+
+    // Runs the pipeline; returns true if any pass changed the module
+    public boolean run(ThreeAddressCode module, String pipeline) {
+        return parse(pipeline).run(module);
+    }
+
+    public List<PassStatistics> getStatistics() {
+        return new ArrayList<>(statistics.values());
+    }
+
+    public void printReport() {
+        System.out.println("[PASS] Optimization report (" + analyses.getComputations() + " analyses computed)");
+        for (PassStatistics stats : statistics.values()) {
+            System.out.println("[PASS]   " + stats);
+        }
+    }
+
+    // ---------------------------------------------------------------- pipeline parsing
+
+    private Step parse(String pipeline) {
+        int[] position = { 0 };
+        String text = pipeline.replaceAll("\\s+", "");
+        GroupStep root = new GroupStep(parseList(text, position), false);
+        if (position[0] != text.length()) {
+            throw new IllegalArgumentException("Unexpected '" + text.charAt(position[0])
+                    + "' in pipeline \"" + pipeline + "\"");
+        }
+        return root;
+    }
+
+    private List<Step> parseList(String text, int[] position) {
+        List<Step> steps = new ArrayList<>();
+        while (position[0] < text.length() && text.charAt(position[0]) != ')') {
+            if (text.charAt(position[0]) == '(') {
+                position[0]++;
+                steps.add(new GroupStep(parseList(text, position), true));
+                if (position[0] >= text.length() || text.charAt(position[0]) != ')') {
+                    throw new IllegalArgumentException("Unclosed group in pipeline \"" + text + "\"");
+                }
+                position[0]++;
+            } else {
+                int start = position[0];
+                while (position[0] < text.length() && ",()".indexOf(text.charAt(position[0])) < 0) {
+                    position[0]++;
+                }
+                String name = text.substring(start, position[0]);
+                if (!functionPasses.containsKey(name) && !modulePasses.containsKey(name)) {
+                    throw new IllegalArgumentException("Unknown pass \"" + name + "\"; available: "
+                            + functionPasses.keySet() + " " + modulePasses.keySet());
+                }
+                steps.add(new PassStep(name));
+            }
+            if (position[0] < text.length() && text.charAt(position[0]) == ',') {
+                position[0]++;
+            }
+        }
+        return steps;
+    }
+
+    private static int countInstructions(ThreeAddressCode module) {
+        int count = 0;
+        for (Function function : module.getFunctions()) {
+            count += function.getInstructionCount();
+        }
+        return count;
+    }
+}
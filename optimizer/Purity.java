@@ -0,0 +1,66 @@
+package optimizer;
+
+import ir.Operand;
+import ir.Operand.*;
+import ir.SSA;
+import ir.ThreeAddressCode.*;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+// Functions whose result depends on nothing but their arguments and that do nothing
+// else, as of construction. A function is pure if it touches no strings, so it does no
+// string I/O, and only calls pure functions of the module; a call to a name the module
+// does not define, such as println, makes it impure. Functions in SSA form count as
+// impure, since the interpreter cannot run them.
+//
+// Purity says nothing about termination: a pure function may still loop forever or
+// divide by zero.
+public class Purity {
+    private final Set<Function> pure;
+
+    public Purity(CallGraph graph) {
+        this.pure = new HashSet<>();
+        // Callees come first, so every call out of a component meets a decided function
+        for (List<Function> component : graph.getStronglyConnectedComponents()) {
+            if (isPure(component, graph)) {
+                pure.addAll(component);
+            }
+        }
+    }
+
+    public boolean isPure(Function function) {
+        return pure.contains(function);
+    }
+
+    private boolean isPure(List<Function> component, CallGraph graph) {
+        for (Function function : component) {
+            if (SSA.isInSSA(function) || function.getEntryBlock() == null
+                    || function.getVariables().values().stream().anyMatch(Purity::isString)
+                    || isString(function.getReturnType())) {
+                return false;
+            }
+            for (BasicBlock block : function.getBlocks()) {
+                for (Instruction inst : block) {
+                    for (Operand operand : inst.getUses()) {
+                        if (operand instanceof StringRef) {
+                            return false;
+                        }
+                    }
+                    if (inst instanceof FunctionCall call) {
+                        Function callee = graph.getFunction(call.getFunction());
+                        if (callee == null || !component.contains(callee) && !pure.contains(callee)) {
+                            return false;
+                        }
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
+    private static boolean isString(String type) {
+        return type.equals("string") || type.equals("String");
+    }
+}
@@ -0,0 +1,109 @@
+package optimizer;
+
+import ir.Operand.Variable;
+import ir.ThreeAddressCode.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Reaching definitions: which defining instructions may have produced the value of a
+// variable at a point. Forward, union. A use reached by no definition reads the
+// variable's initial value (a parameter, or an uninitialized local).
+public class ReachingDefinitions extends DataflowAnalysis {
+    private final List<Instruction> definitions;
+    private final Map<Instruction, Integer> definitionIndex;
+    private final Map<Variable, long[]> definitionsOf;   // all definitions of each variable
+
+    public ReachingDefinitions(Function function) {
+        super(function, Direction.FORWARD, Meet.UNION);
+        this.definitions = new ArrayList<>();
+        this.definitionIndex = new IdentityHashMap<>();
+        this.definitionsOf = new HashMap<>();
+        for (BasicBlock block : function.getBlocks()) {
+            for (Instruction instruction : block) {
+                if (instruction.getDefinition() != null) {
+                    definitionIndex.put(instruction, definitions.size());
+                    definitions.add(instruction);
+                }
+            }
+        }
+        for (int i = 0; i < definitions.size(); i++) {
+            set(definitionsOf.computeIfAbsent(definitions.get(i).getDefinition(), v -> newSet()), i);
+        }
+        solve();
+    }
+
+    @Override
+    protected int universeSize() {
+        return definitions.size();
+    }
+
+    @Override
+    protected void initializeBlock(BasicBlock block, long[] gen, long[] kill) {
+        for (Instruction instruction : block) {
+            Variable def = instruction.getDefinition();
+            if (def == null) {
+                continue;
+            }
+            long[] others = definitionsOf.get(def);
+            for (int w = 0; w < gen.length; w++) {
+                gen[w] &= ~others[w];
+                kill[w] |= others[w];
+            }
+            set(gen, definitionIndex.get(instruction));
+        }
+    }
+
+    // Definitions reaching the start of the block
+    public List<Instruction> getReachingIn(BasicBlock block) {
+        return toList(blockIn(block));
+    }
+
+    public List<Instruction> getReachingOut(BasicBlock block) {
+        return toList(blockOut(block));
+    }
+
+    // Definitions of `variable` that may reach the point just before `instruction`
+    public List<Instruction> getReachingDefinitions(BasicBlock block, Instruction instruction, Variable variable) {
+        long[] facts = blockIn(block);
+        if (facts == null) {
+            return List.of();
+        }
+        Instruction latest = null;
+        for (Instruction current : block) {
+            if (current == instruction) {
+                break;
+            }
+            if (variable.equals(current.getDefinition())) {
+                latest = current;
+            }
+        }
+        if (latest != null) {
+            return List.of(latest);
+        }
+        long[] mine = definitionsOf.get(variable);
+        if (mine == null) {
+            return List.of();
+        }
+        long[] reaching = facts.clone();
+        for (int w = 0; w < reaching.length; w++) {
+            reaching[w] &= mine[w];
+        }
+        return toList(reaching);
+    }
+
+    private List<Instruction> toList(long[] facts) {
+        if (facts == null) {
+            return List.of();
+        }
+        List<Instruction> result = new ArrayList<>();
+        for (int i = nextSetBit(facts, 0); i >= 0; i = nextSetBit(facts, i + 1)) {
+            result.add(definitions.get(i));
+        }
+        return Collections.unmodifiableList(result);
+    }
+}
@@ -0,0 +1,34 @@
+package optimizer;
+
+import ir.SSA;
+import ir.ThreeAddressCode.Function;
+
+import java.util.Set;
+
+// Puts a function into SSA form (see SSA.construct), so the passes after it up to the
+// matching "unssa" see one definition per variable. Passes that only work on ordinary
+// three-address code skip functions with phis.
+public class SSAConstruction implements FunctionPass {
+
+    @Override
+    public String getName() {
+        return "ssa";
+    }
+
+    @Override
+    public Set<Class<?>> getPreservedAnalyses() {
+        return Set.of();
+    }
+
+    @Override
+    public boolean run(Function func, AnalysisCache analyses) {
+        if (func.getEntryBlock() == null || SSA.isInSSA(func)) {
+            return false;
+        }
+        int blocks = func.getBlocks().size();
+        int variables = func.getVariables().size();
+        SSA.construct(func);
+        // Renaming adds a variable for every extra version
+        return SSA.isInSSA(func) || func.getBlocks().size() != blocks || func.getVariables().size() != variables;
+    }
+}
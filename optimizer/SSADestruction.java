@@ -0,0 +1,30 @@
+package optimizer;
+
+import ir.SSA;
+import ir.ThreeAddressCode.Function;
+
+import java.util.Set;
+
+// Takes a function out of SSA form (see SSA.destruct), replacing its phis with copies.
+// The versions stay as separate variables; coalesce merges them again where it can.
+public class SSADestruction implements FunctionPass {
+
+    @Override
+    public String getName() {
+        return "unssa";
+    }
+
+    @Override
+    public Set<Class<?>> getPreservedAnalyses() {
+        return Set.of();
+    }
+
+    @Override
+    public boolean run(Function func, AnalysisCache analyses) {
+        if (!SSA.isInSSA(func)) {
+            return false;
+        }
+        SSA.destruct(func);
+        return true;
+    }
+}
@@ -0,0 +1,325 @@
+package optimizer;
+
+import ir.DominatorTree;
+import ir.LoopInfo;
+import ir.LoopInfo.Loop;
+import ir.Operand;
+import ir.Operand.*;
+import ir.ThreeAddressCode.*;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// Induction-variable strength reduction. A basic induction variable of a loop is an int
+// variable i whose only assignment inside the loop is `i = i + c` or `i = i - c` for a
+// constant c. A product `j = i * k`, with k a constant or not assigned in the loop, is a
+// derived induction variable: it becomes `j = r`, where r starts as `i * k` in the
+// preheader and grows by `c * k` right after each update of i, so the loop adds instead
+// of multiplying.
+//
+// Afterwards a basic induction variable that the loop only reads in its own update and
+// in the exit test, and that nobody reads after the loop, is removed. The exit test
+// `i < n` is rewritten as `r < n * k` first (linear-function test replacement), which
+// needs a positive constant k and constant start and bound for i, so that no value
+// of r compared along the way can overflow.
+public class StrengthReduction implements FunctionPass {
+    private record Product(Variable base, Operand factor) {
+    }
+
+    // Whether the last run added preheaders; nothing is preserved before the first run
+    private boolean createdPreheaders = true;
+
+    @Override
+    public String getName() {
+        return "strength";
+    }
+
+    @Override
+    public Set<Class<?>> getPreservedAnalyses() {
+        return createdPreheaders ? Set.of() : AnalysisCache.CONTROL_FLOW;
+    }
+
+    @Override
+    public boolean run(Function func, AnalysisCache analyses) {
+        createdPreheaders = false;
+        for (Loop loop : analyses.get(LoopInfo.class, func).getLoops()) {
+            createdPreheaders |= LoopInvariantCodeMotion.ensurePreheader(func, loop);
+        }
+        if (createdPreheaders) {
+            analyses.invalidate(func, Set.of());
+        }
+
+        DominatorTree dominators = analyses.get(DominatorTree.class, func);
+        LoopInfo loops = analyses.get(LoopInfo.class, func);
+        boolean changed = createdPreheaders;
+        for (Loop loop : loops.getLoops()) {
+            if (loop.getPreheader() != null) {
+                changed |= reduce(func, loop, loops, dominators);
+            }
+        }
+        if (changed) {
+            analyses.invalidate(func, getPreservedAnalyses());
+        }
+        return changed;
+    }
+
+    private boolean reduce(Function func, Loop loop, LoopInfo loops, DominatorTree dominators) {
+        Map<Variable, Integer> assignments = new HashMap<>();
+        Map<Variable, BinaryOperation> updates = new LinkedHashMap<>();
+        List<BasicBlock> order = new ArrayList<>();
+        for (BasicBlock block : dominators.getReversePostOrder()) {
+            if (!loop.contains(block)) {
+                continue;
+            }
+            order.add(block);
+            for (Instruction inst : block) {
+                Variable def = inst.getDefinition();
+                if (def != null && assignments.merge(def, 1, Integer::sum) == 1
+                        && inst instanceof BinaryOperation update && step(func, update) != null) {
+                    updates.put(def, update);
+                }
+            }
+        }
+        updates.keySet().removeIf(variable -> assignments.get(variable) != 1);
+        if (updates.isEmpty()) {
+            return false;
+        }
+
+        boolean changed = false;
+        Map<Product, Variable> reduced = new LinkedHashMap<>();
+        for (BasicBlock block : order) {
+            for (Instruction inst : block) {
+                if (inst instanceof BinaryOperation mul && mul.getOperator().equals("*")
+                        && "int".equals(func.getType(mul.getResult()))) {
+                    Product product = product(func, mul, updates, assignments);
+                    if (product != null) {
+                        Variable sum = reduced.computeIfAbsent(product,
+                                p -> introduce(func, loop.getPreheader(), p, updates.get(p.base())));
+                        block.replaceInstruction(mul, new Copy(mul.getResult(), sum));
+                        changed = true;
+                    }
+                }
+            }
+        }
+
+        // Liveness is only needed once some induction variable looks removable
+        Liveness liveness = null;
+        for (Map.Entry<Variable, BinaryOperation> entry : updates.entrySet()) {
+            Variable variable = entry.getKey();
+            BinaryOperation update = entry.getValue();
+            List<Instruction> reads = new ArrayList<>();
+            for (Instruction use : func.getUses(variable)) {
+                if (use != update && loop.contains(use.getBlock())) {
+                    reads.add(use);
+                }
+            }
+            if (reads.size() > 1) {
+                continue;
+            }
+            if (liveness == null) {
+                liveness = new Liveness(func);
+            }
+            if (isLiveAfter(liveness, loop, variable)) {
+                continue;
+            }
+            if (!reads.isEmpty() && !replaceTest(func, loop, loops, dominators, update, reads.get(0), reduced)) {
+                continue;
+            }
+            update.getBlock().removeInstruction(update);
+            changed = true;
+        }
+        return changed;
+    }
+
+    // The step of `i = i + c`, `i = c + i` or `i = i - c` on an int, or null
+    static Integer step(Function func, BinaryOperation update) {
+        Variable variable = update.getResult();
+        if (!"int".equals(func.getType(variable))) {
+            return null;
+        }
+        if (update.getOperator().equals("+")) {
+            if (update.getLeft().equals(variable) && update.getRight() instanceof IntConst c) {
+                return c.value();
+            }
+            if (update.getRight().equals(variable) && update.getLeft() instanceof IntConst c) {
+                return c.value();
+            }
+        } else if (update.getOperator().equals("-")
+                && update.getLeft().equals(variable) && update.getRight() instanceof IntConst c) {
+            return -c.value();
+        }
+        return null;
+    }
+
+    private static Product product(Function func, BinaryOperation mul, Map<Variable, BinaryOperation> updates,
+            Map<Variable, Integer> assignments) {
+        if (mul.getLeft() instanceof Variable base && updates.containsKey(base)
+                && isInvariant(func, mul.getRight(), assignments)) {
+            return new Product(base, mul.getRight());
+        }
+        if (mul.getRight() instanceof Variable base && updates.containsKey(base)
+                && isInvariant(func, mul.getLeft(), assignments)) {
+            return new Product(base, mul.getLeft());
+        }
+        return null;
+    }
+
+    private static boolean isInvariant(Function func, Operand operand, Map<Variable, Integer> assignments) {
+        return operand instanceof IntConst
+                || operand instanceof Variable variable && !assignments.containsKey(variable)
+                        && "int".equals(func.getType(variable));
+    }
+
+    // Creates the variable that tracks base * factor through the loop. Int arithmetic
+    // wraps, so (i + c) * k and i * k + c * k agree even when they overflow.
+    private static Variable introduce(Function func, BasicBlock preheader, Product product,
+            BinaryOperation update) {
+        Temp sum = func.generateTemp("int");
+        preheader.insertBeforeTerminator(new BinaryOperation(sum, product.base(), "*", product.factor()));
+        int step = step(func, update);
+        Operand increment;
+        if (product.factor() instanceof IntConst k) {
+            increment = new IntConst(step * k.value());
+        } else if (step == 1) {
+            increment = product.factor();
+        } else {
+            Temp scaled = func.generateTemp("int");
+            preheader.insertBeforeTerminator(new BinaryOperation(scaled, product.factor(), "*", new IntConst(step)));
+            increment = scaled;
+        }
+        update.getBlock().insertAfter(update, new BinaryOperation(sum, sum, "+", increment));
+        return sum;
+    }
+
+    private static boolean isLiveAfter(Liveness liveness, Loop loop, Variable variable) {
+        for (BasicBlock exit : loop.getExitBlocks()) {
+            if (liveness.isLiveIn(exit, variable)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Rewrites the exit test `i < n` or `i <= n` as a comparison of i * k against n * k.
+    // The test must be the loop's only exit and run on every iteration, with i counting
+    // up from a constant, so i stays within [start, n + step] at the test and the
+    // products there can be checked for overflow up front.
+    private static boolean replaceTest(Function func, Loop loop, LoopInfo loops, DominatorTree dominators,
+            BinaryOperation update, Instruction read, Map<Product, Variable> reduced) {
+        Variable variable = update.getResult();
+        int step = step(func, update);
+        if (step <= 0 || !(read instanceof BinaryOperation test)) {
+            return false;
+        }
+        BasicBlock block = test.getBlock();
+        if (loops.getLoopFor(block) != loop || loops.getLoopFor(update.getBlock()) != loop
+                || !(block.getTerminator() instanceof ConditionalJump branch)
+                || !branch.getCondition().equals(test.getResult())) {
+            return false;
+        }
+        for (BasicBlock latch : loop.getLatches()) {
+            if (!dominators.dominates(block, latch)) {
+                return false;
+            }
+        }
+        for (BasicBlock other : loop.getBlocks()) {
+            if (other != block && !loop.getBlocks().containsAll(other.getSuccessors())) {
+                return false;
+            }
+        }
+        boolean staysOnTrue = loop.contains(func.getBlock(branch.getTrueTarget()));
+        if (staysOnTrue == loop.contains(func.getBlock(branch.getFalseTarget()))) {
+            return false;
+        }
+
+        String operator;
+        Operand bound;
+        if (test.getLeft().equals(variable)) {
+            operator = test.getOperator();
+            bound = test.getRight();
+        } else {
+            operator = mirror(test.getOperator());
+            bound = test.getLeft();
+        }
+        if (operator == null || !(bound instanceof IntConst n)) {
+            return false;
+        }
+        String stay = staysOnTrue ? operator : negate(operator);
+        long last;
+        if ("<".equals(stay)) {
+            last = (long) n.value() - 1 + step;
+        } else if ("<=".equals(stay)) {
+            last = (long) n.value() + step;
+        } else {
+            return false;
+        }
+
+        Integer start = startValue(func, loop, loops, dominators, variable);
+        if (start == null) {
+            return false;
+        }
+        for (Map.Entry<Product, Variable> entry : reduced.entrySet()) {
+            if (entry.getKey().base().equals(variable) && entry.getKey().factor() instanceof IntConst k
+                    && k.value() > 0 && fits((long) start * k.value()) && fits(Math.max(start, last) * k.value())
+                    && fits((long) n.value() * k.value())) {
+                block.replaceInstruction(test, new BinaryOperation(test.getResult(), entry.getValue(), operator,
+                        new IntConst(n.value() * k.value())));
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // The constant i holds on entry to the loop: its only assignment outside the loop is
+    // `i = c`, and every path into the preheader, including one coming back around an
+    // enclosing loop, passes that assignment
+    static Integer startValue(Function func, Loop loop, LoopInfo loops, DominatorTree dominators,
+            Variable variable) {
+        Instruction init = null;
+        for (Instruction def : func.getDefinitions(variable)) {
+            if (loop.contains(def.getBlock())) {
+                continue;
+            }
+            if (init != null) {
+                return null;
+            }
+            init = def;
+        }
+        BasicBlock preheader = loop.getPreheader();
+        if (variable instanceof Param || !(init instanceof Copy copy && copy.getSource() instanceof IntConst c)
+                || !dominators.dominates(init.getBlock(), preheader)
+                || loops.getLoopFor(init.getBlock()) != loops.getLoopFor(preheader)) {
+            return null;
+        }
+        return c.value();
+    }
+
+    static boolean fits(long value) {
+        return value >= Integer.MIN_VALUE && value <= Integer.MAX_VALUE;
+    }
+
+    // `n op i` as `i op' n`
+    static String mirror(String operator) {
+        return switch (operator) {
+            case "<" -> ">";
+            case "<=" -> ">=";
+            case ">" -> "<";
+            case ">=" -> "<=";
+            default -> null;
+        };
+    }
+
+    static String negate(String operator) {
+        return switch (operator) {
+            case "<" -> ">=";
+            case "<=" -> ">";
+            case ">" -> "<=";
+            case ">=" -> "<";
+            default -> null;
+        };
+    }
+}
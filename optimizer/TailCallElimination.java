@@ -0,0 +1,87 @@
+package optimizer;
+
+import ir.Operand;
+import ir.Operand.*;
+import ir.SSA;
+import ir.ThreeAddressCode.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+// Tail recursion elimination. A call of a function to itself whose result is returned
+// right away becomes a loop: the arguments are assigned to the parameters and control
+// jumps back to the start of the body, which gets a new entry block in front of it.
+// The arguments go through temporaries first, since each may read any parameter.
+// Variables the body may read before assigning them start out as zero in a call, so
+// they are reset on the way back as well. Functions in SSA form are left alone.
+public class TailCallElimination implements FunctionPass {
+
+    @Override
+    public String getName() {
+        return "tailcall";
+    }
+
+    @Override
+    public Set<Class<?>> getPreservedAnalyses() {
+        return Set.of();
+    }
+
+    @Override
+    public boolean run(Function func, AnalysisCache analyses) {
+        if (SSA.isInSSA(func) || func.getEntryBlock() == null) {
+            return false;
+        }
+        List<FunctionCall> calls = new ArrayList<>();
+        for (BasicBlock block : func.getBlocks()) {
+            for (Instruction inst : block) {
+                if (inst instanceof FunctionCall call && isTailCall(call)
+                        && call.getFunction().equals(func.getName())
+                        && CallGraph.matchesParameters(func, func, call)) {
+                    calls.add(call);
+                }
+            }
+        }
+        if (calls.isEmpty()) {
+            return false;
+        }
+        List<Variable> reads = new ArrayList<>();
+        for (Variable variable : new Liveness(func).getLiveIn(func.getEntryBlock())) {
+            if (!(variable instanceof Param)) {
+                if (Inliner.zero(func.getType(variable)) == null) {
+                    return false;
+                }
+                reads.add(variable);
+            }
+        }
+
+        Label body = func.getEntryBlock().getLabel();
+        func.createEntryBlock();
+        List<String> parameters = func.getParameters();
+        for (FunctionCall call : calls) {
+            BasicBlock block = call.getBlock();
+            List<Temp> values = new ArrayList<>();
+            for (int i = 0; i < parameters.size(); i++) {
+                Operand argument = call.getArguments().get(i);
+                Temp value = func.generateTemp(func.getType(argument));
+                block.insertBefore(call, new Copy(value, argument));
+                values.add(value);
+            }
+            for (int i = 0; i < parameters.size(); i++) {
+                block.insertBefore(call, new Copy(new Param(parameters.get(i)), values.get(i)));
+            }
+            for (Variable variable : reads) {
+                block.insertBefore(call, new Copy(variable, Inliner.zero(func.getType(variable))));
+            }
+            block.removeInstruction(call);
+            block.setTerminator(new Jump(body));
+        }
+        return true;
+    }
+
+    // A call followed by a return of its result, or by a bare return if it has none
+    private static boolean isTailCall(FunctionCall call) {
+        return call.getNext() instanceof Return ret
+                && (ret.getValue() == null ? call.getResult() == null : ret.getValue().equals(call.getResult()));
+    }
+}
@@ -24,6 +24,9 @@ const COMPILER_CONFIG = {
         '-XX:+UseG1GC'   // Use G1 garbage collector for better performance
     ],
     
+    // Optimizer pipeline passed to the compiler, e.g. "fold,(dce,fold)"; unset uses the default
+    PIPELINE: process.env.COMPILER_PIPELINE,
+    
     // Execution settings
     TIMEOUT: 45000,      // 45 seconds timeout
     MAX_BUFFER: 1024 * 1024 * 20, // 20MB buffer
@@ -249,7 +252,11 @@ function generateUniqueFilename() {
 // Build compiler command
 function buildCompilerCommand(javaFilePath) {
     if (COMPILER_CONFIG.USE_JAVA_DIRECT) {
-        const javaOptions = COMPILER_CONFIG.JAVA_OPTIONS.join(' ');
+        const options = [...COMPILER_CONFIG.JAVA_OPTIONS];
+        if (COMPILER_CONFIG.PIPELINE) {
+            options.push(`"-Dcompiler.pipeline=${COMPILER_CONFIG.PIPELINE}"`);
+        }
+        const javaOptions = options.join(' ');
         return `java ${javaOptions} -jar "${COMPILER_CONFIG.JAR_PATH}" "${javaFilePath}"`;
     } else {
         return `"${COMPILER_CONFIG.EXE_PATH}" "${javaFilePath}"`;
@@ -0,0 +1,473 @@
+package tests;
+
+import codegen.JvmCodeGenerator;
+import ir.IRGenerator;
+import ir.Interpreter;
+import ir.ThreeAddressCode;
+import lexer.Lexer;
+import optimizer.Optimizer;
+import parser.Parser;
+
+import java.util.Objects;
+import java.util.function.Supplier;
+
+// Runs programs before and after a pipeline that transforms them and checks that the
+// interpreter computes the expected value both times, as does the JVM backend on the
+// optimized program. A program may instead be expected to fail before the pipeline,
+// such as recursion the pipeline removes. Exits with status 1 on a mismatch
+// or a run that does not finish. Run with `java tests.PassTest`.
+public class PassTest {
+    private static final long TIMEOUT_MILLIS = 10_000;
+    // What a run that exceeds the interpreter's call depth limit gives
+    private static final String DEPTH_EXCEEDED = "call depth limit exceeded";
+
+    // int arguments to float parameters, and a String local, whose initializer the
+    // generator casts from the literal's type
+    private static final String CONVERSIONS = """
+            public class Conversions {
+                static float avg(float a, float b) {
+                    return (a + b) / 2;
+                }
+                public static float main(String[] args) {
+                    String s = "x";
+                    String t = s;
+                    return avg(3, 1.5);
+                }
+            }
+            """;
+
+    // A branch on a constant, a loop bound that is constant on the only executable
+    // path, and a float comparison that folds
+    private static final String CONSTANTS = """
+            public class Constants {
+                public static int main(String[] args) {
+                    int debug = 0;
+                    int x = 10;
+                    if (debug == 1) {
+                        x = x * 100;
+                    }
+                    float f = 1.5;
+                    int s = 0;
+                    int i = 0;
+                    while (i < x) {
+                        s = s + i;
+                        i = i + 1;
+                    }
+                    if (f * 2.0 > 2.5) {
+                        s = s + 7;
+                    }
+                    return s;
+                }
+            }
+            """;
+
+    // a * b on every path, and a * b + c computed again on one arm
+    private static final String REDUNDANT = """
+            public class Redundant {
+                static int f(int a, int b, int c) {
+                    int x = a * b + c;
+                    int y = 0;
+                    if (c > 0) {
+                        y = a * b - c;
+                    } else {
+                        y = a * b + c;
+                    }
+                    return x + y + a * b;
+                }
+                public static int main(String[] args) {
+                    return f(3, 4, 5) + f(2, 6, 0 - 1);
+                }
+            }
+            """;
+
+    // Chains of copies through locals, which copyprop and coalesce remove
+    private static final String COPIES = """
+            public class Copies {
+                static int f(int a) {
+                    int b = a;
+                    int c = b;
+                    int d = c + 1;
+                    int e = d;
+                    return e * c;
+                }
+                public static int main(String[] args) {
+                    int s = 0;
+                    int i = 0;
+                    while (i < 5) {
+                        int j = i;
+                        s = s + f(j);
+                        i = i + 1;
+                    }
+                    return s;
+                }
+            }
+            """;
+
+    // A loop-invariant product, hoisted by licm, and a call that runs the loop zero times
+    private static final String INVARIANT = """
+            public class Invariant {
+                static int f(int a, int b, int n) {
+                    int s = 0;
+                    int i = 0;
+                    while (i < n) {
+                        int k = a * b + 1;
+                        s = s + k + i;
+                        i = i + 1;
+                    }
+                    return s;
+                }
+                public static int main(String[] args) {
+                    return f(7, 3, 20) + f(7, 3, 0);
+                }
+            }
+            """;
+
+    // Products of induction variables, and a loop whose counter only feeds a product
+    // and the exit test, which strength rewrites against the product
+    private static final String STRENGTH = """
+            public class Strength {
+                static int f(int n, int c) {
+                    int s = 0;
+                    int i = 0;
+                    while (i < n) {
+                        s = s + i * 4 + c * i;
+                        i = i + 1;
+                    }
+                    return s;
+                }
+                static int g() {
+                    int s = 0;
+                    int i = 0;
+                    while (i < 8) {
+                        s = s + i * 3;
+                        i = i + 1;
+                    }
+                    return s;
+                }
+                public static int main(String[] args) {
+                    return f(10, 3) + g();
+                }
+            }
+            """;
+
+    // A loop with a run-time bound, which unroll gives a remainder loop, called for trip
+    // counts above, below and at zero, and a loop with constant bounds it unrolls fully
+    private static final String UNROLLED = """
+            public class Unrolled {
+                static int f(int n) {
+                    int s = 0;
+                    int i = 0;
+                    while (i < n) {
+                        s = s + i * i;
+                        i = i + 1;
+                    }
+                    return s;
+                }
+                static int g() {
+                    int s = 1;
+                    int i = 0;
+                    while (i < 6) {
+                        s = s * 2 + i;
+                        i = i + 1;
+                    }
+                    return s;
+                }
+                public static int main(String[] args) {
+                    return f(10) + f(3) + f(0) + g();
+                }
+            }
+            """;
+
+    // A branch on a parameter inside a loop, whose test licm hoists so unswitch can move
+    // it out, taken both ways
+    private static final String UNSWITCHED = """
+            public class Unswitched {
+                static int f(int n, int mode) {
+                    int s = 0;
+                    int i = 0;
+                    while (i < n) {
+                        if (mode > 0) {
+                            s = s + i;
+                        } else {
+                            s = s - i;
+                        }
+                        i = i + 1;
+                    }
+                    return s;
+                }
+                public static int main(String[] args) {
+                    return f(10, 1) - f(5, 0);
+                }
+            }
+            """;
+
+    // Nested while loops, which rotate turns into guarded do-whiles, with an inner loop
+    // that runs zero times on the first iteration and an outer loop that runs zero times
+    private static final String ROTATED = """
+            public class Rotated {
+                static int f(int n) {
+                    int s = 0;
+                    int i = 0;
+                    while (i < n) {
+                        int j = 0;
+                        while (j < i) {
+                            s = s + j;
+                            j = j + 1;
+                        }
+                        i = i + 1;
+                    }
+                    return s;
+                }
+                public static int main(String[] args) {
+                    return f(6) + f(0);
+                }
+            }
+            """;
+
+    // Branches on a variable that an enclosing branch on it already decided, which
+    // simplifycfg threads and merges away
+    private static final String BRANCHES = """
+            public class Branches {
+                static int f(int a) {
+                    int s = 0;
+                    int big = a > 3;
+                    if (big) {
+                        s = 10;
+                        if (big) {
+                            s = s + 1;
+                        } else {
+                            s = s + 2;
+                        }
+                    } else {
+                        s = 5;
+                        if (big) {
+                            s = s * 3;
+                        }
+                    }
+                    return s;
+                }
+                public static int main(String[] args) {
+                    return f(5) + f(1);
+                }
+            }
+            """;
+
+    // Diamonds on an int and on a float comparison, which ifconvert turns into selects
+    private static final String SELECTS = """
+            public class Selects {
+                static int clamp(int x, int lo) {
+                    int r = x;
+                    if (x < lo) {
+                        r = lo;
+                    }
+                    return r;
+                }
+                static float larger(float a, float b) {
+                    float r = b;
+                    if (a > b) {
+                        r = a;
+                    }
+                    return r;
+                }
+                public static int main(String[] args) {
+                    int s = 0;
+                    int i = 0;
+                    while (i < 10) {
+                        s = s + clamp(i, 4);
+                        i = i + 1;
+                    }
+                    if (larger(2.5, 1.5) > 2.0) {
+                        s = s + 100;
+                    }
+                    return s;
+                }
+            }
+            """;
+
+    // Small functions called in a loop, one with several returns, and a recursive one
+    // that inline copies into main once
+    private static final String INLINED = """
+            public class Inlined {
+                static int square(int x) {
+                    return x * x;
+                }
+                static int sign(int x) {
+                    if (x < 0) {
+                        return 0 - 1;
+                    }
+                    if (x > 0) {
+                        return 1;
+                    }
+                    return 0;
+                }
+                static int fact(int n) {
+                    if (n < 2) {
+                        return 1;
+                    }
+                    return n * fact(n - 1);
+                }
+                public static int main(String[] args) {
+                    int s = 0;
+                    int i = 0;
+                    while (i < 5) {
+                        s = s + square(i) + sign(i - 2);
+                        i = i + 1;
+                    }
+                    return s + fact(5);
+                }
+            }
+            """;
+
+    // Tail recursion deeper than the interpreter's call depth limit, which tailcall turns
+    // into a loop
+    private static final String TAIL = """
+            public class Tail {
+                static int sum(int n, int acc) {
+                    if (n == 0) {
+                        return acc;
+                    }
+                    return sum(n - 1, acc + n);
+                }
+                public static int main(String[] args) {
+                    return sum(50000, 0);
+                }
+            }
+            """;
+
+    // Calls to pure functions with constant arguments, which evalcalls runs at compile
+    // time, except for one that needs more than its fuel
+    private static final String EVALUATED = """
+            public class Evaluated {
+                static int fib(int n) {
+                    if (n < 2) {
+                        return n;
+                    }
+                    return fib(n - 1) + fib(n - 2);
+                }
+                static float half(float x) {
+                    return x / 2;
+                }
+                public static int main(String[] args) {
+                    int a = fib(10);
+                    int b = fib(25);
+                    float h = half(5.0);
+                    if (h > 2.0) {
+                        a = a + 1;
+                    }
+                    return a + b;
+                }
+            }
+            """;
+
+    // A function main never calls, a parameter every call passes the same constant, one
+    // nobody reads, and a result no call uses, all of which ipo removes
+    private static final String INTERPROCEDURAL = """
+            public class Interprocedural {
+                static int unused(int x) {
+                    return x + 1;
+                }
+                static int scale(int x, int factor, int ignored) {
+                    return x * factor;
+                }
+                static int touch(int x) {
+                    int y = x * 2;
+                    return y;
+                }
+                public static int main(String[] args) {
+                    int s = 0;
+                    int i = 0;
+                    while (i < 4) {
+                        s = s + scale(i, 3, i * 2);
+                        touch(s);
+                        i = i + 1;
+                    }
+                    return s;
+                }
+            }
+            """;
+
+    private static int failures;
+
+    public static void main(String[] args) {
+        check(CONVERSIONS, "simplifycfg", 2.25f);
+        check(CONVERSIONS, Optimizer.DEFAULT_PIPELINE, 2.25f);
+        check(CONSTANTS, "ccp", 52);
+        check(REDUNDANT, "gvn", 70);
+        check(COPIES, "copyprop,dce,coalesce", 40);
+        check(INVARIANT, "licm", 630);
+        check(STRENGTH, "copyprop,dce,coalesce,strength", 399);
+        check(UNROLLED, "copyprop,dce,coalesce,unroll", 411);
+        check(UNSWITCHED, "licm,unswitch", 55);
+        check(ROTATED, "rotate", 20);
+        check(BRANCHES, "simplifycfg", 16);
+        check(SELECTS, "simplifycfg,ifconvert", 155);
+        check(INLINED, "inline", 150);
+        check(TAIL, "tailcall", DEPTH_EXCEEDED, 1250025000);
+        check(EVALUATED, "copyprop,evalcalls", 75081);
+        check(INTERPROCEDURAL, "copyprop,ipo", 18);
+        if (failures > 0) {
+            System.err.println(failures + " failed");
+            System.exit(1);
+        }
+        System.err.println("all passed");
+    }
+
+    private static void check(String source, String pipeline, Object expected) {
+        check(source, pipeline, expected, expected);
+    }
+
+    // `unoptimized` is what the program gives before the pipeline, when that differs
+    private static void check(String source, String pipeline, Object unoptimized, Object expected) {
+        String name = source.substring(source.indexOf("class ") + 6, source.indexOf(" {"));
+        Object[] result = new Object[3];
+        Thread runner = new Thread(() -> {
+            result[0] = run(() -> new Interpreter(generate(source)).invoke("main"));
+            result[1] = run(() -> new Interpreter(optimize(source, pipeline)).invoke("main"));
+            result[2] = run(() -> JvmCodeGenerator.invoke(
+                    new JvmCodeGenerator().load(optimize(source, pipeline)), "main"));
+        });
+        runner.setDaemon(true);
+        runner.start();
+        try {
+            runner.join(TIMEOUT_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        String outcome;
+        if (runner.isAlive()) {
+            outcome = "did not finish in " + TIMEOUT_MILLIS + " ms";
+        } else if (!Objects.equals(unoptimized, result[0])) {
+            outcome = "expected " + unoptimized + " unoptimized but got " + result[0];
+        } else if (!Objects.equals(expected, result[1])) {
+            outcome = "expected " + expected + " but got " + result[1];
+        } else if (!Objects.equals(expected, result[2])) {
+            outcome = "expected " + expected + " from the JVM backend but got " + result[2];
+        } else {
+            outcome = null;
+        }
+        if (outcome != null) {
+            failures++;
+        }
+        System.err.println((outcome == null ? "PASS " : "FAIL ") + name + " [" + pipeline + "]"
+                + (outcome == null ? "" : ": " + outcome));
+    }
+
+    // The result of main, or a description of the failure
+    private static Object run(Supplier<Object> main) {
+        try {
+            return main.get();
+        } catch (Interpreter.ExecutionException e) {
+            return e.getMessage().startsWith("Call depth limit") ? DEPTH_EXCEEDED : e.toString();
+        } catch (RuntimeException e) {
+            return e.toString();
+        }
+    }
+
+    private static ThreeAddressCode optimize(String source, String pipeline) {
+        return new Optimizer(pipeline).optimize(generate(source));
+    }
+
+    private static ThreeAddressCode generate(String source) {
+        return new IRGenerator().generate(new Parser(new Lexer(source).tokenize()).parseProgram());
+    }
+}
@@ -0,0 +1,142 @@
+package tests;
+
+import ir.IRGenerator;
+import ir.Interpreter;
+import ir.ThreeAddressCode;
+import lexer.Lexer;
+import optimizer.Optimizer;
+import parser.Parser;
+
+import java.util.Objects;
+
+// Runs programs through pipelines that build and destroy SSA form, with and without ccp
+// in between, and checks that the interpreter still computes what the unoptimized
+// program does. Exits with status 1 on a mismatch or a pass that does not finish. Run with `java tests.SSATest`.
+public class SSATest {
+    private static final long TIMEOUT_MILLIS = 10_000;
+
+    private static final String NESTED_LOOPS = """
+            public class Nested {
+                public static int main(String[] args) {
+                    int total = 0;
+                    int i = 0;
+                    while (i < 6) {
+                        int j = 0;
+                        while (j < i) {
+                            total = total + i * j;
+                            j = j + 1;
+                        }
+                        i = i + 1;
+                    }
+                    return total;
+                }
+            }
+            """;
+
+    private static final String SWAP = """
+            public class Swap {
+                public static int main(String[] args) {
+                    int a = 1;
+                    int b = 2;
+                    int n = 0;
+                    while (n < 7) {
+                        int t = a;
+                        a = b;
+                        b = t;
+                        n = n + 1;
+                    }
+                    return a * 10 + b;
+                }
+            }
+            """;
+
+    private static final String CALLS = """
+            public class Calls {
+                static int pick(int x, int y) {
+                    int r = y;
+                    if (x > y) {
+                        r = x;
+                    }
+                    return r;
+                }
+                static float half(float f) {
+                    return f / 2.0;
+                }
+                public static int main(String[] args) {
+                    int s = 0;
+                    int k = 0;
+                    while (k < 10) {
+                        s = s + pick(k, 5);
+                        k = k + 1;
+                    }
+                    float h = half(s);
+                    int hi = h;
+                    return s + hi;
+                }
+            }
+            """;
+
+    // Two loop headers with phis that branch to each other
+    private static final String LOOP_PAIR = """
+            public class LoopPair {
+                public static int main(String[] args) {
+                    int i = 0;
+                    while (i < 5) {
+                        while (i < 10) {
+                            i = i + 1;
+                        }
+                    }
+                    return i;
+                }
+            }
+            """;
+
+    private static int failures;
+
+    public static void main(String[] args) {
+        for (String source : new String[] {NESTED_LOOPS, SWAP, CALLS, LOOP_PAIR}) {
+            check(source, "ssa,unssa");
+            check(source, "simplifycfg,ssa,unssa,coalesce");
+            check(source, "simplifycfg,ssa,ccp,unssa");
+        }
+        if (failures > 0) {
+            System.err.println(failures + " failed");
+            System.exit(1);
+        }
+        System.err.println("all passed");
+    }
+
+    private static void check(String source, String pipeline) {
+        String name = source.substring(source.indexOf("class ") + 6, source.indexOf(" {"));
+        Object[] result = new Object[2];
+        Thread runner = new Thread(() -> {
+            result[0] = new Interpreter(generate(source)).invoke("main");
+            ThreeAddressCode optimized = new Optimizer(pipeline).optimize(generate(source));
+            result[1] = new Interpreter(optimized).invoke("main");
+        });
+        runner.setDaemon(true);
+        runner.start();
+        try {
+            runner.join(TIMEOUT_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        String outcome;
+        if (runner.isAlive()) {
+            outcome = "did not finish in " + TIMEOUT_MILLIS + " ms";
+        } else if (result[0] == null || !Objects.equals(result[0], result[1])) {
+            outcome = "expected " + result[0] + " but got " + result[1];
+        } else {
+            outcome = null;
+        }
+        if (outcome != null) {
+            failures++;
+        }
+        System.err.println((outcome == null ? "PASS " : "FAIL ") + name + " [" + pipeline + "]"
+                + (outcome == null ? "" : ": " + outcome));
+    }
+
+    private static ThreeAddressCode generate(String source) {
+        return new IRGenerator().generate(new Parser(new Lexer(source).tokenize()).parseProgram());
+    }
+}